@@ -0,0 +1,657 @@
+package nokori.clear_dialogue.cli;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import nokori.clear_dialogue.io.BatchTransform;
+import nokori.clear_dialogue.io.ClearDialogueAutoIO;
+import nokori.clear_dialogue.io.ClearDialogueBinaryIO;
+import nokori.clear_dialogue.io.ClearDialogueIO;
+import nokori.clear_dialogue.io.ClearDialogueIndexedIO;
+import nokori.clear_dialogue.io.ClearDialogueJournalIO;
+import nokori.clear_dialogue.io.ClearDialogueJsonIO;
+import nokori.clear_dialogue.io.DialogueConstantsGenerator;
+import nokori.clear_dialogue.io.ProjectFileUtils;
+import nokori.clear_dialogue.project.Connection;
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+import nokori.clear_dialogue.project.ProjectDiff;
+import nokori.clear_dialogue.project.ProjectMerge;
+import nokori.clear_dialogue.project.ProjectValidator;
+
+/**
+ * A headless command-line tool for working with project files outside of the editor (I.E. in a build pipeline or CI job). Every command takes a project
+ * file or a directory of them, and processes the files in parallel.
+ *
+ * <pre>
+ * validate &lt;input&gt; [--entry-tag TAG]... [--strict]
+ * convert  &lt;input&gt; &lt;output directory&gt; &lt;json|cdb|cdi|cdj&gt; [--report FILE]
+ * minify   &lt;input&gt; [output directory] [--report FILE]
+ * stats    &lt;input&gt;
+ * constants &lt;input&gt; &lt;source directory&gt; &lt;package&gt; [--no-titles]
+ * diff     &lt;old file&gt; &lt;new file&gt;
+ * merge    &lt;base file&gt; &lt;our file&gt; &lt;their file&gt; [--output FILE]
+ *
+ * Every command also takes --threads N (defaults to the number of processors).
+ * </pre>
+ *
+ * The exit code is 0 on success, 1 if any file failed (or had validation errors, or warnings with --strict, or merge conflicts), and 2 if the arguments
+ * were wrong.
+ *
+ * <br><br>diff and merge read files without a known extension as JSON, so that they can be used as git's diff and merge drivers, which pass temporary
+ * files. I.E. in <code>.git/config</code>: <code>driver = java -jar clear-dialogue.jar merge %O %A %B</code>, which writes the merge into %A.
+ */
+public class ClearDialogueCLI {
+
+	public static final int EXIT_SUCCESS = 0;
+	public static final int EXIT_FAILURE = 1;
+	public static final int EXIT_USAGE = 2;
+
+	private static final String USAGE =
+			"Usage: <command> <input> [arguments] [options]\n"
+			+ "\n"
+			+ "Commands:\n"
+			+ "  validate <input> [--entry-tag TAG]... [--strict]\n"
+			+ "      Checks for dangling connections, duplicate UIDs, and nodes that can't be reached from an entry node\n"
+			+ "      (tagged " + ProjectValidator.DEFAULT_ENTRY_TAG + " by default). --strict fails on warnings too.\n"
+			+ "  convert <input> <output directory> <json|" + ClearDialogueBinaryIO.FILE_EXTENSION + "|" + ClearDialogueIndexedIO.FILE_EXTENSION + "|"
+			+ ClearDialogueJournalIO.FILE_EXTENSION + "> [--report FILE]\n"
+			+ "      Converts the files into another format, keeping the directory structure.\n"
+			+ "  minify <input> [output directory] [--report FILE]\n"
+			+ "      Re-exports JSON files without whitespace (in place unless an output directory is given).\n"
+			+ "  stats <input>\n"
+			+ "      Prints node, connection, and word counts for each file and in total.\n"
+			+ "  constants <input> <source directory> <package> [--no-titles]\n"
+			+ "      Generates a Java class of tag and title ID constants for each file (see DialogueConstantsGenerator).\n"
+			+ "  diff <old file> <new file>\n"
+			+ "      Lists the nodes and connections that were added, removed, or changed, matched by UID.\n"
+			+ "  merge <base file> <our file> <their file> [--output FILE]\n"
+			+ "      Three-way merges the changes of both files into our file (or --output), keeping our side of conflicts.\n"
+			+ "\n"
+			+ "<input> is a project file, or a directory that's searched for them.\n"
+			+ "Every command also takes --threads N (defaults to the number of processors).\n"
+			+ "\n"
+			+ "Exit codes: " + EXIT_SUCCESS + " = success, " + EXIT_FAILURE + " = a file failed or had problems, " + EXIT_USAGE + " = invalid arguments";
+
+	public static void main(String[] args) {
+		System.exit(run(args, System.out, System.err));
+	}
+
+	/**
+	 * Runs a command without exiting, so that the tool can also be used from other Java programs (I.E. build plugins).
+	 *
+	 * @return the exit code
+	 */
+	public static int run(String[] args, PrintStream out, PrintStream err) {
+		Arguments arguments;
+
+		try {
+			arguments = new Arguments(args);
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			err.println();
+			err.println(USAGE);
+			return EXIT_USAGE;
+		}
+
+		if (arguments.command == null || arguments.command.equals("help")) {
+			out.println(USAGE);
+			return (arguments.command == null ? EXIT_USAGE : EXIT_SUCCESS);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(arguments.threads);
+
+		try {
+			switch (arguments.command) {
+			case "validate":
+				return validate(arguments, pool, out);
+			case "convert":
+				return convert(arguments, pool, out, err);
+			case "minify":
+				return minify(arguments, pool, out, err);
+			case "stats":
+				return stats(arguments, pool, out);
+			case "constants":
+				return constants(arguments, pool, out);
+			case "diff":
+				return diff(arguments, out);
+			case "merge":
+				return merge(arguments, out);
+			default:
+				err.println("Unknown command \"" + arguments.command + "\"");
+				err.println();
+				err.println(USAGE);
+				return EXIT_USAGE;
+			}
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			return EXIT_USAGE;
+		} catch (Exception e) {
+			e.printStackTrace(err);
+			return EXIT_FAILURE;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/*
+	 *
+	 * Commands
+	 *
+	 */
+
+	private static int validate(Arguments arguments, ForkJoinPool pool, PrintStream out) throws Exception {
+		Input input = new Input(arguments.getPositional(0, "input"));
+		arguments.expectPositionals(1);
+
+		ProjectValidator validator = (arguments.entryTags.isEmpty() ? new ProjectValidator() : new ProjectValidator(arguments.entryTags.toArray(new String[0])));
+		ClearDialogueIO io = new ClearDialogueAutoIO();
+
+		List<Future<List<ProjectValidator.Problem>>> results = runAll(input.files, pool, new FileTask<List<ProjectValidator.Problem>>() {
+
+			@Override
+			public List<ProjectValidator.Problem> call(File f) throws Exception {
+				return validator.validate(io.importProject(f));
+			}
+		});
+
+		int errors = 0, warnings = 0;
+
+		for (int i = 0; i < results.size(); i++) {
+			String name = input.getName(input.files.get(i));
+
+			try {
+				List<ProjectValidator.Problem> problems = results.get(i).get();
+
+				for (int j = 0; j < problems.size(); j++) {
+					ProjectValidator.Problem problem = problems.get(j);
+
+					if (problem.getSeverity() == ProjectValidator.Severity.ERROR) {
+						errors++;
+					} else {
+						warnings++;
+					}
+
+					out.println(name + ": " + problem);
+				}
+			} catch (ExecutionException e) {
+				//Files that can't be imported (I.E. connections to connector UIDs that no node has) are errors
+				errors++;
+				out.println(name + ": " + ProjectValidator.Severity.ERROR + ": " + e.getCause());
+			}
+		}
+
+		out.println(input.files.size() + " files: " + errors + " errors, " + warnings + " warnings");
+
+		return (errors > 0 || (arguments.strict && warnings > 0) ? EXIT_FAILURE : EXIT_SUCCESS);
+	}
+
+	private static int convert(Arguments arguments, ForkJoinPool pool, PrintStream out, PrintStream err) throws Exception {
+		Input input = new Input(arguments.getPositional(0, "input"));
+		File outputDirectory = new File(arguments.getPositional(1, "output directory"));
+		String format = arguments.getPositional(2, "format").toLowerCase(Locale.ENGLISH);
+		arguments.expectPositionals(3);
+
+		if (!ClearDialogueAutoIO.isSupportedFile(new File("project." + format))) {
+			throw new IllegalArgumentException("Unknown format \"" + format + "\"");
+		}
+
+		BatchTransform batch = new BatchTransform(NO_CHANGES, new ClearDialogueAutoIO());
+		batch.setOutput(outputDirectory, format);
+
+		return runBatch(batch, input, input.files, pool, arguments, out, err);
+	}
+
+	private static int minify(Arguments arguments, ForkJoinPool pool, PrintStream out, PrintStream err) throws Exception {
+		Input input = new Input(arguments.getPositional(0, "input"));
+		String outputDirectory = arguments.getOptionalPositional(1);
+		arguments.expectPositionals(2);
+
+		ArrayList<File> files = new ArrayList<File>();
+
+		for (int i = 0; i < input.files.size(); i++) {
+			if (input.files.get(i).getName().toLowerCase(Locale.ENGLISH).endsWith(".json")) {
+				files.add(input.files.get(i));
+			}
+		}
+
+		BatchTransform batch = new BatchTransform(NO_CHANGES, new ClearDialogueJsonIO(false));
+		batch.setOutput((outputDirectory != null ? new File(outputDirectory) : null), null);
+
+		return runBatch(batch, input, files, pool, arguments, out, err);
+	}
+
+	private static int runBatch(BatchTransform batch, Input input, List<File> files, ForkJoinPool pool, Arguments arguments, PrintStream out,
+			PrintStream err) throws Exception {
+
+		BatchTransform.Report report = batch.run(input.directory, files, pool);
+
+		for (int i = 0; i < report.getResults().size(); i++) {
+			BatchTransform.Result result = report.getResults().get(i);
+
+			if (result.getStatus() == BatchTransform.Status.FAILED) {
+				err.println(input.getName(result.getFile()) + ": " + result.getException());
+			}
+		}
+
+		out.println(report.getSummary());
+
+		if (arguments.report != null) {
+			report.save(new File(arguments.report));
+		}
+
+		return (report.hasFailures() ? EXIT_FAILURE : EXIT_SUCCESS);
+	}
+
+	private static int stats(Arguments arguments, ForkJoinPool pool, PrintStream out) throws Exception {
+		Input input = new Input(arguments.getPositional(0, "input"));
+		arguments.expectPositionals(1);
+
+		ClearDialogueIO io = new ClearDialogueAutoIO();
+
+		List<Future<Stats>> results = runAll(input.files, pool, new FileTask<Stats>() {
+
+			@Override
+			public Stats call(File f) throws Exception {
+				Stats stats = new Stats();
+				stats.add(io.importProject(f), f.length());
+				return stats;
+			}
+		});
+
+		Stats total = new Stats();
+		int failures = 0;
+
+		out.println(Stats.HEADER + "\tFile");
+
+		for (int i = 0; i < results.size(); i++) {
+			String name = input.getName(input.files.get(i));
+
+			try {
+				Stats stats = results.get(i).get();
+				total.add(stats);
+				out.println(stats + "\t" + name);
+			} catch (ExecutionException e) {
+				failures++;
+				out.println("FAILED\t" + name + ": " + e.getCause());
+			}
+		}
+
+		out.println(total + "\t(total of " + (input.files.size() - failures) + " files)");
+
+		return (failures > 0 ? EXIT_FAILURE : EXIT_SUCCESS);
+	}
+
+	private static int constants(Arguments arguments, ForkJoinPool pool, PrintStream out) throws Exception {
+		Input input = new Input(arguments.getPositional(0, "input"));
+		File sourceDirectory = new File(arguments.getPositional(1, "source directory"));
+		String packageName = arguments.getPositional(2, "package");
+		arguments.expectPositionals(3);
+
+		//Files that generate the same class would overwrite each other (at the same time, since they're written in parallel)
+		try {
+			DialogueConstantsGenerator.checkClassNames(input.directory, input.files);
+		} catch (IllegalArgumentException e) {
+			out.println(e.getMessage());
+			return EXIT_FAILURE;
+		}
+
+		DialogueConstantsGenerator generator = new DialogueConstantsGenerator();
+		generator.setIncludeTitles(!arguments.noTitles);
+
+		List<Future<Boolean>> results = runAll(input.files, pool, new FileTask<Boolean>() {
+
+			@Override
+			public Boolean call(File f) throws Exception {
+				return generator.write(input.directory, f, packageName, sourceDirectory);
+			}
+		});
+
+		int written = 0, failures = 0;
+
+		for (int i = 0; i < results.size(); i++) {
+			String name = input.getName(input.files.get(i));
+
+			try {
+				if (results.get(i).get()) {
+					written++;
+				}
+			} catch (ExecutionException e) {
+				failures++;
+				out.println(name + ": " + e.getCause());
+			}
+		}
+
+		out.println(input.files.size() + " files: " + written + " generated, " + (input.files.size() - written - failures) + " unchanged, " + failures + " failed");
+
+		return (failures > 0 ? EXIT_FAILURE : EXIT_SUCCESS);
+	}
+
+	private static int diff(Arguments arguments, PrintStream out) throws Exception {
+		File oldFile = getFile(arguments.getPositional(0, "old file"));
+		File newFile = getFile(arguments.getPositional(1, "new file"));
+		arguments.expectPositionals(2);
+
+		ProjectDiff diff = ProjectDiff.diff(importRevision(oldFile), importRevision(newFile));
+
+		printNodes(out, "+", diff.getAddedNodes());
+		printNodes(out, "-", diff.getRemovedNodes());
+		printNodes(out, "~", diff.getChangedNodes());
+		printConnections(out, "+", diff.getAddedConnections());
+		printConnections(out, "-", diff.getRemovedConnections());
+
+		out.println(diff);
+
+		return EXIT_SUCCESS;
+	}
+
+	private static void printNodes(PrintStream out, String prefix, List<Dialogue> nodes) {
+		for (int i = 0; i < nodes.size(); i++) {
+			out.println(prefix + " node \"" + nodes.get(i).getTitle() + "\" (" + nodes.get(i).getUID() + ")");
+		}
+	}
+
+	private static void printConnections(PrintStream out, String prefix, List<Connection> connections) {
+		for (int i = 0; i < connections.size(); i++) {
+			Connection c = connections.get(i);
+			out.println(prefix + " connection \"" + c.getConnector1().getParent().getTitle() + "\" -> \"" + c.getConnector2().getParent().getTitle() + "\" ("
+					+ c.getConnector1().getUID() + ", " + c.getConnector2().getUID() + ")");
+		}
+	}
+
+	private static int merge(Arguments arguments, PrintStream out) throws Exception {
+		File baseFile = getFile(arguments.getPositional(0, "base file"));
+		File ourFile = getFile(arguments.getPositional(1, "our file"));
+		File theirFile = getFile(arguments.getPositional(2, "their file"));
+		arguments.expectPositionals(3);
+
+		ProjectMerge merge = ProjectMerge.merge(importRevision(baseFile), importRevision(ourFile), importRevision(theirFile));
+		List<ProjectMerge.Conflict> conflicts = merge.getConflicts();
+
+		for (int i = 0; i < conflicts.size(); i++) {
+			out.println(ourFile.getName() + ": " + conflicts.get(i));
+		}
+
+		File outputFile = (arguments.output != null ? new File(arguments.output) : ourFile);
+		getRevisionIO(outputFile).exportProject(merge.getProject(), outputFile);
+
+		out.println("Merged into " + outputFile + " with " + conflicts.size() + " conflicts");
+
+		return (merge.hasConflicts() ? EXIT_FAILURE : EXIT_SUCCESS);
+	}
+
+	private static File getFile(String path) {
+		File f = new File(path);
+
+		if (!f.isFile()) {
+			throw new IllegalArgumentException("\"" + path + "\" doesn't exist");
+		}
+
+		return f;
+	}
+
+	private static Project importRevision(File f) throws Exception {
+		return getRevisionIO(f).importProject(f);
+	}
+
+	/**
+	 * Files without a known extension are treated as JSON, since that's what gets committed and what git's temporary files hold.
+	 */
+	private static ClearDialogueIO getRevisionIO(File f) {
+		return (ClearDialogueAutoIO.isSupportedFile(f) ? new ClearDialogueAutoIO() : new ClearDialogueJsonIO());
+	}
+
+	private static final BatchTransform.Transform NO_CHANGES = new BatchTransform.Transform() {
+
+		@Override
+		public void apply(Project project) {
+
+		}
+	};
+
+	/*
+	 *
+	 * Parallel processing
+	 *
+	 */
+
+	private interface FileTask<T> {
+		public T call(File f) throws Exception;
+	}
+
+	/**
+	 * Runs the task on every file on the pool and waits for all of them. The futures are in the same order as the files.
+	 */
+	private static <T> List<Future<T>> runAll(List<File> files, ForkJoinPool pool, FileTask<T> task) throws InterruptedException {
+		ArrayList<Callable<T>> tasks = new ArrayList<Callable<T>>(files.size());
+
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
+
+			tasks.add(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					return task.call(f);
+				}
+			});
+		}
+
+		return pool.invokeAll(tasks);
+	}
+
+	/*
+	 *
+	 * Arguments
+	 *
+	 */
+
+	private static class Arguments {
+		private String command = null;
+		private final ArrayList<String> positionals = new ArrayList<String>();
+
+		private int threads = Runtime.getRuntime().availableProcessors();
+		private final ArrayList<String> entryTags = new ArrayList<String>();
+		private boolean strict = false;
+		private String report = null;
+		private boolean noTitles = false;
+		private String output = null;
+
+		private Arguments(String[] args) {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+
+				switch (arg) {
+				case "--threads":
+					String value = getValue(args, ++i, arg);
+
+					try {
+						threads = Integer.parseInt(value);
+					} catch (NumberFormatException e) {
+						threads = 0;
+					}
+
+					if (threads < 1) {
+						throw new IllegalArgumentException("--threads must be a positive number, but was \"" + value + "\"");
+					}
+
+					break;
+				case "--entry-tag":
+					entryTags.add(getValue(args, ++i, arg));
+					break;
+				case "--strict":
+					strict = true;
+					break;
+				case "--no-titles":
+					noTitles = true;
+					break;
+				case "--report":
+					report = getValue(args, ++i, arg);
+					break;
+				case "--output":
+					output = getValue(args, ++i, arg);
+					break;
+				default:
+					if (arg.startsWith("--")) {
+						throw new IllegalArgumentException("Unknown option \"" + arg + "\"");
+					}
+
+					if (command == null) {
+						command = arg;
+					} else {
+						positionals.add(arg);
+					}
+
+					break;
+				}
+			}
+		}
+
+		private static String getValue(String[] args, int index, String option) {
+			if (index >= args.length) {
+				throw new IllegalArgumentException(option + " needs a value");
+			}
+
+			return args[index];
+		}
+
+		private String getPositional(int index, String name) {
+			if (index >= positionals.size()) {
+				throw new IllegalArgumentException(command + " is missing the <" + name + "> argument");
+			}
+
+			return positionals.get(index);
+		}
+
+		private String getOptionalPositional(int index) {
+			return (index < positionals.size() ? positionals.get(index) : null);
+		}
+
+		private void expectPositionals(int max) {
+			if (positionals.size() > max) {
+				throw new IllegalArgumentException("Unexpected argument \"" + positionals.get(max) + "\"");
+			}
+		}
+	}
+
+	/**
+	 * The files a command works on. If the input is a single file, it's treated as a directory containing only that file.
+	 */
+	private static class Input {
+		private final File directory;
+		private final List<File> files;
+
+		private Input(String path) {
+			File input = new File(path);
+
+			if (input.isDirectory()) {
+				ArrayList<File> files = ProjectFileUtils.findProjectFiles(input);
+
+				for (int i = files.size() - 1; i >= 0; i--) {
+					if (BatchTransform.isTemporaryFile(files.get(i))) {
+						files.remove(i);
+					}
+				}
+
+				directory = input;
+				this.files = files;
+			} else if (input.isFile()) {
+				if (!ClearDialogueAutoIO.isSupportedFile(input)) {
+					throw new IllegalArgumentException("\"" + path + "\" isn't a supported project file");
+				}
+
+				directory = input.getAbsoluteFile().getParentFile();
+				files = new ArrayList<File>(1);
+				files.add(input.getAbsoluteFile());
+			} else {
+				throw new IllegalArgumentException("\"" + path + "\" doesn't exist");
+			}
+		}
+
+		private String getName(File f) {
+			return ProjectFileUtils.getProjectFileName(directory, f);
+		}
+	}
+
+	/*
+	 *
+	 * Statistics
+	 *
+	 */
+
+	private static class Stats {
+		private static final String HEADER = "Nodes\tText\tResponse\tChoices\tConnections\tWords\tBytes";
+
+		private long nodes, textNodes, responseNodes, choices, connections, words, bytes;
+
+		private void add(Project project, long fileSize) {
+			nodes += project.getNumDialogue();
+			connections += project.getNumConnections();
+			bytes += fileSize;
+
+			for (int i = 0; i < project.getNumDialogue(); i++) {
+				Dialogue dialogue = project.getDialogue(i);
+
+				if (dialogue instanceof DialogueText) {
+					textNodes++;
+					words += countWords(((DialogueText) dialogue).getText());
+				}
+
+				if (dialogue instanceof DialogueResponse) {
+					DialogueResponse response = (DialogueResponse) dialogue;
+
+					responseNodes++;
+					choices += response.getResponses().size();
+
+					for (int j = 0; j < response.getResponses().size(); j++) {
+						words += countWords(response.getResponses().get(j).getText());
+					}
+				}
+			}
+		}
+
+		private void add(Stats stats) {
+			nodes += stats.nodes;
+			textNodes += stats.textNodes;
+			responseNodes += stats.responseNodes;
+			choices += stats.choices;
+			connections += stats.connections;
+			words += stats.words;
+			bytes += stats.bytes;
+		}
+
+		private static int countWords(String s) {
+			if (s == null) {
+				return 0;
+			}
+
+			int count = 0;
+			boolean inWord = false;
+
+			for (int i = 0; i < s.length(); i++) {
+				boolean whitespace = Character.isWhitespace(s.charAt(i));
+
+				if (!whitespace && !inWord) {
+					count++;
+				}
+
+				inWord = !whitespace;
+			}
+
+			return count;
+		}
+
+		@Override
+		public String toString() {
+			return nodes + "\t" + textNodes + "\t" + responseNodes + "\t" + choices + "\t" + connections + "\t" + words + "\t" + bytes;
+		}
+	}
+}
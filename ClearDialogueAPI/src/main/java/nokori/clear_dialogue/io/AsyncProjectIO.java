@@ -0,0 +1,139 @@
+package nokori.clear_dialogue.io;
+
+import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * Runs ClearDialogueIO imports and exports in the background, so that games can load dialogue while they keep running (I.E. behind a loading bar) and
+ * editors stay responsive.
+ *
+ * <br><br>Each call returns a CompletableFuture and reports its progress through the given IOProgress. Cancelling the future (or the IOProgress) stops
+ * the import or export the next time it checks, and the future then completes as cancelled. Implementations that don't report progress are only checked
+ * for cancellation before they start.
+ *
+ * <br><br>The Project given to an export must not be edited until the export is done. Export a copy (see <code>Project.copy()</code>) if the
+ * Project needs to stay editable in the meantime.
+ */
+public class AsyncProjectIO {
+
+	/**
+	 * @return the Executor that's used when none is given: a shared pool of daemon threads, so that loading never keeps the application alive.
+	 */
+	public static Executor getDefaultExecutor() {
+		return DefaultExecutorHolder.EXECUTOR;
+	}
+
+	/**
+	 * Imports the file on the default Executor.
+	 */
+	public static CompletableFuture<Project> importProject(ClearDialogueIO io, File f, IOProgress progress) {
+		return importProject(io, f, progress, getDefaultExecutor());
+	}
+
+	/**
+	 * Imports the file on the given Executor.
+	 */
+	public static CompletableFuture<Project> importProject(ClearDialogueIO io, File f, IOProgress progress, Executor executor) {
+		CompletableFuture<Project> future = createFuture(progress);
+
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				if (future.isDone()) {
+					return;
+				}
+
+				try {
+					future.complete(io.importProject(f, progress));
+				} catch (CancellationException e) {
+					future.cancel(false);
+				} catch (Throwable t) {
+					future.completeExceptionally(t);
+				}
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Exports the Project on the default Executor.
+	 */
+	public static CompletableFuture<Void> exportProject(ClearDialogueIO io, Project project, File f, IOProgress progress) {
+		return exportProject(io, project, f, progress, getDefaultExecutor());
+	}
+
+	/**
+	 * Exports the Project on the given Executor.
+	 */
+	public static CompletableFuture<Void> exportProject(ClearDialogueIO io, Project project, File f, IOProgress progress, Executor executor) {
+		CompletableFuture<Void> future = createFuture(progress);
+
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				if (future.isDone()) {
+					return;
+				}
+
+				try {
+					io.exportProject(project, f, progress);
+					future.complete(null);
+				} catch (CancellationException e) {
+					future.cancel(false);
+				} catch (Throwable t) {
+					future.completeExceptionally(t);
+				}
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Creates a future that cancels the IOProgress when it's cancelled itself, since CompletableFuture can't interrupt the work.
+	 */
+	private static <T> CompletableFuture<T> createFuture(IOProgress progress) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+
+		future.whenComplete(new BiConsumer<T, Throwable>() {
+
+			@Override
+			public void accept(T result, Throwable t) {
+				if (t instanceof CancellationException) {
+					progress.cancel();
+				}
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * The default Executor is only created once it's first used.
+	 */
+	private static class DefaultExecutorHolder {
+		private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ClearDialogue IO " + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+}
@@ -0,0 +1,187 @@
+package nokori.clear_dialogue.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.SecureRandom;
+
+/**
+ * The write path shared by the ClearDialogueIO implementations, so that a crash or a failed export never leaves a half-written project file behind.
+ *
+ * <br><br>The file is streamed to a temporary file in the same directory, synced to the disk, and then moved over the original in one atomic step.
+ * Until that move happens, the original file is untouched.
+ *
+ * <br><br>The new file gets the permissions of the file it replaces, or the default permissions of a newly created file if there wasn't one.
+ *
+ * <br><br>Optionally, the previous versions of the file can be kept as recovery copies next to it (I.E. <code>project.json.1.bak</code> is the save
+ * before the latest one, <code>project.json.2.bak</code> the one before that, and so on). How many are kept is up to the caller (I.E. see
+ * <code>ClearDialogueJsonIO.setNumRecoveryCopies()</code>).
+ */
+public class AtomicFileWriter {
+
+	public static final String RECOVERY_FILE_EXTENSION = "bak";
+
+	private static final SecureRandom TEMP_FILE_NAMES = new SecureRandom();
+
+	/**
+	 * Writes the file atomically, without keeping any recovery copies.
+	 *
+	 * @see #write(File, int, WriteAction)
+	 */
+	public static void write(File f, WriteAction action) throws Exception {
+		write(f, 0, action);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the number of recovery copies is negative
+	 * @return the number of recovery copies
+	 */
+	public static int checkNumRecoveryCopies(int numRecoveryCopies) {
+		if (numRecoveryCopies < 0) {
+			throw new IllegalArgumentException("The number of recovery copies can't be negative");
+		}
+
+		return numRecoveryCopies;
+	}
+
+	/**
+	 * Writes the file atomically. The action writes the full contents of the file to the given stream, which is synced and closed afterwards.
+	 *
+	 * If the action throws, the temporary file is deleted and the original file (and its recovery copies) are left as they were.
+	 *
+	 * @param f - the file to write
+	 * @param numRecoveryCopies - how many previous versions of the file to keep as recovery copies
+	 * @param action - writes the contents of the file
+	 */
+	public static void write(File f, int numRecoveryCopies, WriteAction action) throws Exception {
+		checkNumRecoveryCopies(numRecoveryCopies);
+
+		Path target = f.toPath().toAbsolutePath();
+		Path directory = target.getParent();
+
+		Path temp = createTempFile(directory, f.getName());
+		boolean moved = false;
+
+		try {
+			try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+				action.write(out);
+				out.flush();
+				out.getFD().sync();
+			}
+
+			copyPermissions(target, temp);
+
+			if (numRecoveryCopies > 0 && Files.exists(target)) {
+				keepRecoveryCopy(target.toFile(), numRecoveryCopies);
+			}
+
+			move(temp, target);
+			moved = true;
+
+			syncDirectory(directory);
+		} finally {
+			if (!moved) {
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+
+	/**
+	 * Creates an empty temporary file next to the target. Unlike <code>Files.createTempFile()</code>, which only lets the owner read it, the file gets
+	 * the same default permissions as any other new file.
+	 */
+	private static Path createTempFile(Path directory, String name) throws IOException {
+		while (true) {
+			Path temp = directory.resolve("." + name + "." + Long.toUnsignedString(TEMP_FILE_NAMES.nextLong(), 36) + ".tmp");
+
+			try {
+				Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+				return temp;
+			} catch (FileAlreadyExistsException e) {
+				//Try another name
+			}
+		}
+	}
+
+	/**
+	 * Gives the new file the permissions of the file it's replacing (if there is one), so that saving doesn't change who can read it. Only POSIX
+	 * permissions are copied, since other file systems don't restrict the new file to begin with.
+	 */
+	static void copyPermissions(Path source, Path target) throws IOException {
+		PosixFileAttributeView sourceView = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+		PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+
+		if (sourceView == null || targetView == null || !Files.exists(source)) {
+			return;
+		}
+
+		try {
+			targetView.setPermissions(sourceView.readAttributes().permissions());
+		} catch (NoSuchFileException e) {
+			//The original was deleted in the meantime, so the new file keeps the default permissions
+		}
+	}
+
+	/**
+	 * @param f - the project file
+	 * @param index - 1 for the save before the latest one, 2 for the one before that, and so on
+	 * @return the location of the given recovery copy of the file. It won't exist if that many saves haven't been kept.
+	 */
+	public static File getRecoveryFile(File f, int index) {
+		return new File(f.getAbsoluteFile().getParentFile(), f.getName() + "." + index + "." + RECOVERY_FILE_EXTENSION);
+	}
+
+	/**
+	 * Shifts the existing recovery copies back by one (dropping the oldest), then copies the current file into the first slot.
+	 */
+	private static void keepRecoveryCopy(File f, int numRecoveryCopies) throws IOException {
+		Files.deleteIfExists(getRecoveryFile(f, numRecoveryCopies).toPath());
+
+		for (int i = numRecoveryCopies - 1; i >= 1; i--) {
+			Path recovery = getRecoveryFile(f, i).toPath();
+
+			if (Files.exists(recovery)) {
+				Files.move(recovery, getRecoveryFile(f, i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+
+		Files.copy(f.toPath(), getRecoveryFile(f, 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Syncs the directory so that the rename itself survives a crash. Not every platform allows directories to be opened (I.E. Windows), in which
+	 * case this is skipped.
+	 */
+	private static void syncDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			//Not supported on this platform
+		}
+	}
+
+	public interface WriteAction {
+		/**
+		 * Write the full contents of the file to the stream. The stream doesn't need to be closed.
+		 */
+		public void write(OutputStream out) throws Exception;
+	}
+}
@@ -0,0 +1,291 @@
+package nokori.clear_dialogue.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * Periodically saves a Project on a background thread, so that editors (I.E. the IDE) can save often without stalling the thread that the Project lives on.
+ *
+ * <br><br>Call <code>tick()</code> regularly from the thread that edits the Project (I.E. once per frame). Once the interval has passed and the Project
+ * has unsaved changes (see <code>Project.getModificationCount()</code>), a snapshot of it is taken and handed to the background thread to be written out.
+ * Any number of edits made between two saves are written together, and a tick that comes around while the previous save is still being written is skipped,
+ * so saves never pile up.
+ *
+ * <br><br>The snapshot is a copy of the Project (see <code>Project.copy()</code>), which is much quicker to make than the actual export. Afterwards the
+ * Project can keep being edited while the copy is saved.
+ *
+ * <br><br>The Project only counts as saved once a save has actually been written. If one fails, the Project stays dirty, so the next tick after the interval
+ * (or <code>close()</code>) tries again. Failures are reported to the Listener and through <code>getLastError()</code>.
+ */
+public class AutosaveService implements Closeable {
+
+	public static final long DEFAULT_INTERVAL = 30 * 1000;
+
+	private final ClearDialogueIO io;
+	private final ExecutorService executor;
+
+	private long interval;
+
+	//What's being saved, and where
+	private Target target;
+
+	//When the last snapshot was taken
+	private long lastSaveTime;
+
+	private Future<?> pendingSave;
+	private volatile Exception lastError;
+	private volatile Listener listener;
+
+	//The state of the file right after the last save was written, so that file watchers can tell it apart from outside changes
+	private volatile SaveRecord lastSave;
+
+	public AutosaveService(ClearDialogueIO io) {
+		this(io, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * @param io - the ClearDialogueIO used to write the project file. It's only ever used from the autosave thread.
+	 * @param interval - the minimum time (in milliseconds) between two autosaves. Use 0 or less to disable autosaving (<code>save()</code> still works).
+	 */
+	public AutosaveService(ClearDialogueIO io, long interval) {
+		this.io = io;
+		this.interval = interval;
+
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ClearDialogue Autosave");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Sets the Project to autosave and the file to save it to. The Project is treated as saved at this point (I.E. when it's just been loaded from the file).
+	 *
+	 * <br><br>The Project's changes are tracked from here on (see <code>Project.trackChanges()</code>), so that incremental formats like ClearDialogueJournalIO
+	 * only have to write what changed. Call this from the thread that edits the Project.
+	 *
+	 * @param project - the Project to save, or null to stop autosaving
+	 * @param file - the file to save the Project to, or null to stop autosaving
+	 */
+	public void setTarget(Project project, File file) {
+		if (project != null && file != null) {
+			project.trackChanges();
+			target = new Target(project, file);
+		} else {
+			target = null;
+		}
+
+		lastSaveTime = System.currentTimeMillis();
+	}
+
+	public Project getProject() {
+		return (target != null ? target.project : null);
+	}
+
+	public File getFile() {
+		return (target != null ? target.file : null);
+	}
+
+	/**
+	 * Sets the Listener that's told about finished and failed saves, or null for none. It's called on the autosave thread.
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	public long getInterval() {
+		return interval;
+	}
+
+	public void setInterval(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * @return true if the Project has been changed since it was last saved (or since it was set as the target).
+	 */
+	public boolean isDirty() {
+		Target target = this.target;
+		return (target != null && target.project.getModificationCount() != target.savedModificationCount);
+	}
+
+	/**
+	 * @return true if a save is currently being written on the autosave thread.
+	 */
+	public boolean isSaving() {
+		return (pendingSave != null && !pendingSave.isDone());
+	}
+
+	/**
+	 * Saves the Project if the interval has passed, the Project has unsaved changes, and the previous save has finished. This must be called from the
+	 * thread that edits the Project.
+	 */
+	public void tick() {
+		if (interval <= 0 || !isDirty() || isSaving()) {
+			return;
+		}
+
+		if (System.currentTimeMillis() - lastSaveTime >= interval) {
+			save();
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the Project right away and queues it to be written on the autosave thread. This must be called from the thread that edits the Project.
+	 */
+	public void save() {
+		Target target = this.target;
+
+		if (target == null) {
+			return;
+		}
+
+		Project snapshot = target.project.copy();
+		long modificationCount = target.project.getModificationCount();
+
+		lastSaveTime = System.currentTimeMillis();
+
+		pendingSave = executor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				Listener listener = AutosaveService.this.listener;
+
+				try {
+					io.exportProject(snapshot, target.file);
+				} catch (Exception e) {
+					lastError = e;
+
+					if (listener != null) {
+						listener.saveFailed(target.file, e);
+					}
+
+					return;
+				}
+
+				//Only now does the Project count as saved, up to the point where the snapshot was taken
+				target.savedModificationCount = modificationCount;
+				lastSave = new SaveRecord(target.file);
+				lastError = null;
+
+				if (listener != null) {
+					listener.saved(target.file);
+				}
+			}
+		});
+	}
+
+	/**
+	 * If the last autosave failed, returns the exception it failed with, or null if it succeeded. The Project is still dirty after a failed save, so
+	 * it's saved again on a later tick.
+	 */
+	public Exception getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Checks if the file is exactly as the last save left it (same size and modification time). File watchers can use this to ignore the changes made 
+	 * by the autosaves themselves.
+	 */
+	public boolean isLastSave(File f) {
+		SaveRecord lastSave = this.lastSave;
+		return (lastSave != null && lastSave.matches(f));
+	}
+
+	/**
+	 * Waits for the save currently being written (if any) to finish.
+	 */
+	public void flush() throws InterruptedException {
+		Future<?> pendingSave = this.pendingSave;
+
+		if (pendingSave != null) {
+			try {
+				pendingSave.get();
+			} catch (ExecutionException e) {
+				//Already handled on the autosave thread
+			}
+		}
+	}
+
+	/**
+	 * Saves any unsaved changes, waits for them to be written, and stops the autosave thread.
+	 */
+	@Override
+	public void close() {
+		try {
+			flush();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (isDirty()) {
+			save();
+		}
+
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Told about every save that's been written or that failed. Both are called on the autosave thread.
+	 */
+	public interface Listener {
+		public void saved(File f);
+
+		public void saveFailed(File f, Exception e);
+	}
+
+	/**
+	 * The Project being autosaved and the file it's saved to, along with the modification count it had when it was last successfully saved.
+	 */
+	private static class Target {
+		private final Project project;
+		private final File file;
+
+		//Written by the autosave thread once a save succeeds
+		private volatile long savedModificationCount;
+
+		private Target(Project project, File file) {
+			this.project = project;
+			this.file = file;
+			this.savedModificationCount = project.getModificationCount();
+		}
+	}
+
+	private static class SaveRecord {
+		private final Path path;
+		private final long length, lastModified;
+
+		private SaveRecord(File file) {
+			path = toPath(file);
+			length = file.length();
+			lastModified = file.lastModified();
+		}
+
+		private boolean matches(File f) {
+			return (path.equals(toPath(f)) && f.length() == length && f.lastModified() == lastModified);
+		}
+
+		private static Path toPath(File f) {
+			return f.toPath().toAbsolutePath().normalize();
+		}
+	}
+}
@@ -0,0 +1,454 @@
+package nokori.clear_dialogue.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * Applies a Transform to every project file in a directory tree and exports the results (I.E. migrating a whole dialogue library to a new
+ * Project.CURRENT_VERSION, rewriting tags, fixing text, or converting to another format). Files are processed in parallel.
+ *
+ * <br><br>Each result is exported to a temporary file next to its target first. If the target already has exactly the same content, the temporary
+ * file is thrown away and the target is left untouched (so its modification time doesn't change, and build tools and file watchers don't see a change).
+ * Otherwise it's moved over the target.
+ *
+ * <br><br>A file is never written in one format under another format's extension. If the results keep their original extensions and the output
+ * ClearDialogueIO isn't ClearDialogueAutoIO, files whose extension doesn't belong to the output format fail instead of being exported.
+ *
+ * <br><br>Files that fail don't stop the rest of the batch. Everything that happened is collected into a Report, which can be saved as a summary.
+ */
+public class BatchTransform {
+
+	private static final String TEMP_FILE_EXTENSION = ".batch.tmp";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Transform transform;
+	private final ClearDialogueIO outputIO;
+
+	private ClearDialogueIO inputIO = new ClearDialogueAutoIO();
+
+	//Where the results go. By default, each file is overwritten in place.
+	private File outputDirectory = null;
+	private String outputExtension = null;
+
+	/**
+	 * @param transform - what to do to each Project. It's called from several threads at once, each with a different Project.
+	 * @param outputIO - the ClearDialogueIO the results are exported with. It's shared by all of the threads. ClearDialogueAutoIO exports each file in
+	 * the format of its output extension.
+	 */
+	public BatchTransform(Transform transform, ClearDialogueIO outputIO) {
+		this.transform = transform;
+		this.outputIO = outputIO;
+	}
+
+	/**
+	 * Sets the ClearDialogueIO the files are imported with (ClearDialogueAutoIO by default). It's shared by all of the threads.
+	 */
+	public void setInputIO(ClearDialogueIO inputIO) {
+		this.inputIO = inputIO;
+	}
+
+	/**
+	 * Writes the results into another directory instead of over the original files. The directory structure is kept.
+	 *
+	 * @param outputDirectory - the directory to write to, or null to write next to the original files
+	 * @param outputExtension - the extension to give the results (I.E. "cdb" when converting to ClearDialogueBinaryIO), or null to keep the original extension
+	 */
+	public void setOutput(File outputDirectory, String outputExtension) {
+		this.outputDirectory = outputDirectory;
+		this.outputExtension = outputExtension;
+	}
+
+	/**
+	 * Transforms the directory using the common ForkJoinPool.
+	 */
+	public Report run(File directory) throws InterruptedException {
+		return run(directory, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Transforms every project file in the directory on the given pool. The size of the pool controls how many files are processed at the same time.
+	 */
+	public Report run(File directory, ForkJoinPool pool) throws InterruptedException {
+		ArrayList<File> files = ProjectFileUtils.findProjectFiles(directory);
+
+		//Temporary files left behind by an interrupted batch aren't projects
+		for (int i = files.size() - 1; i >= 0; i--) {
+			if (isTemporaryFile(files.get(i))) {
+				files.remove(i);
+			}
+		}
+
+		return run(directory, files, pool);
+	}
+
+	/**
+	 * Transforms the given files (I.E. a filtered list of the directory's files) on the given pool. The directory is used to name the files in the
+	 * Report, and to work out where their results go when an output directory is set.
+	 */
+	public Report run(File directory, List<File> files, ForkJoinPool pool) throws InterruptedException {
+		long startTime = System.currentTimeMillis();
+
+		ArrayList<Callable<Result>> tasks = new ArrayList<Callable<Result>>(files.size());
+
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
+
+			tasks.add(new Callable<Result>() {
+				@Override
+				public Result call() throws Exception {
+					return process(f, getOutputFile(directory, f));
+				}
+			});
+		}
+
+		List<Future<Result>> futures = pool.invokeAll(tasks);
+		ArrayList<Result> results = new ArrayList<Result>(files.size());
+
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
+
+			try {
+				results.add(futures.get(i).get());
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				results.add(new Result(f, getOutputFile(directory, f), Status.FAILED, (cause instanceof Exception ? (Exception) cause : e)));
+			}
+		}
+
+		return new Report(directory, results, System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * @return true if the file is one of the temporary files that results are exported to before they're compared
+	 */
+	public static boolean isTemporaryFile(File f) {
+		return f.getName().contains(TEMP_FILE_EXTENSION);
+	}
+
+	/**
+	 * @return where the result of the given file is written
+	 */
+	public File getOutputFile(File directory, File f) {
+		File output = (outputDirectory != null ? new File(outputDirectory, directory.toPath().relativize(f.toPath()).toString()) : f);
+
+		if (outputExtension != null) {
+			String name = output.getName();
+			int extension = name.lastIndexOf('.');
+
+			output = new File(output.getParentFile(), (extension > 0 ? name.substring(0, extension) : name) + "." + outputExtension);
+		}
+
+		return output;
+	}
+
+	private Result process(File f, File output) throws Exception {
+		checkOutputFormat(output);
+
+		Project project = inputIO.importProject(f);
+		transform.apply(project);
+
+		File parent = output.getAbsoluteFile().getParentFile();
+		Files.createDirectories(parent.toPath());
+
+		//The temp file keeps the output's extension, so that ClearDialogueAutoIO picks the right format for it
+		File temp = new File(parent, "." + output.getName() + TEMP_FILE_EXTENSION + "." + getExtension(output));
+
+		try {
+			outputIO.exportProject(project, temp);
+
+			if (output.exists() && contentEquals(temp, output)) {
+				return new Result(f, output, Status.UNCHANGED, null);
+			}
+
+			//Saving shouldn't change who can read the file
+			AtomicFileWriter.copyPermissions(output.toPath(), temp.toPath());
+
+			try {
+				Files.move(temp.toPath(), output.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			return new Result(f, output, Status.WRITTEN, null);
+		} finally {
+			Files.deleteIfExists(temp.toPath());
+		}
+	}
+
+	/**
+	 * Throws if the output IO would write a different format than the output file's extension says it contains. That can only happen when the
+	 * original extensions are kept, since an output extension is assumed to match the output IO.
+	 */
+	private void checkOutputFormat(File output) throws IOException {
+		if (outputExtension != null || outputIO instanceof ClearDialogueAutoIO) {
+			return;
+		}
+
+		String formatExtension = getFormatExtension(outputIO);
+		String extension = getExtension(output);
+
+		if (formatExtension == null || !formatExtension.equalsIgnoreCase(extension)) {
+			throw new IOException("Can't write " + outputIO.getTypeName() + " to a ." + extension
+					+ " file. Set an output extension or export with ClearDialogueAutoIO.");
+		}
+	}
+
+	/**
+	 * @return the extension of the files the given ClearDialogueIO writes, or null if it isn't one of the default formats
+	 */
+	private static String getFormatExtension(ClearDialogueIO io) {
+		if (io instanceof ClearDialogueJsonIO) {
+			return "json";
+		}
+
+		if (io instanceof ClearDialogueBinaryIO) {
+			return ClearDialogueBinaryIO.FILE_EXTENSION;
+		}
+
+		if (io instanceof ClearDialogueIndexedIO) {
+			return ClearDialogueIndexedIO.FILE_EXTENSION;
+		}
+
+		if (io instanceof ClearDialogueJournalIO) {
+			return ClearDialogueJournalIO.FILE_EXTENSION;
+		}
+
+		return null;
+	}
+
+	private static String getExtension(File f) {
+		String name = f.getName();
+		int extension = name.lastIndexOf('.');
+
+		return (extension >= 0 ? name.substring(extension + 1) : "");
+	}
+
+	private static boolean contentEquals(File a, File b) throws IOException {
+		if (a.length() != b.length()) {
+			return false;
+		}
+
+		try (InputStream inA = new BufferedInputStream(Files.newInputStream(a.toPath()), BUFFER_SIZE);
+				InputStream inB = new BufferedInputStream(Files.newInputStream(b.toPath()), BUFFER_SIZE)) {
+
+			byte[] bufferA = new byte[BUFFER_SIZE];
+			byte[] bufferB = new byte[BUFFER_SIZE];
+
+			int read;
+
+			while ((read = inA.read(bufferA)) > 0) {
+				int offset = 0;
+
+				while (offset < read) {
+					int readB = inB.read(bufferB, offset, read - offset);
+
+					if (readB < 0) {
+						return false;
+					}
+
+					offset += readB;
+				}
+
+				for (int i = 0; i < read; i++) {
+					if (bufferA[i] != bufferB[i]) {
+						return false;
+					}
+				}
+			}
+
+			return (inB.read() < 0);
+		}
+	}
+
+	/*
+	 *
+	 * Transforms
+	 *
+	 */
+
+	public interface Transform {
+		/**
+		 * Edits the Project in place. Throw an exception to mark the file as failed; it won't be exported.
+		 */
+		public void apply(Project project) throws Exception;
+
+		/**
+		 * @return a Transform that applies this one, then the given one
+		 */
+		public default Transform andThen(Transform next) {
+			Transform first = this;
+
+			return new Transform() {
+
+				@Override
+				public void apply(Project project) throws Exception {
+					first.apply(project);
+					next.apply(project);
+				}
+			};
+		}
+	}
+
+	/*
+	 *
+	 * Reporting
+	 *
+	 */
+
+	public enum Status {
+		//The output was different, so it was written
+		WRITTEN,
+
+		//The output was identical to the existing file, so it was left untouched
+		UNCHANGED,
+
+		//The file couldn't be imported, transformed, or exported
+		FAILED
+	}
+
+	/**
+	 * What happened to one file.
+	 */
+	public static class Result {
+		private final File file, outputFile;
+		private final Status status;
+		private final Exception exception;
+
+		private Result(File file, File outputFile, Status status, Exception exception) {
+			this.file = file;
+			this.outputFile = outputFile;
+			this.status = status;
+			this.exception = exception;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public File getOutputFile() {
+			return outputFile;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		/**
+		 * @return the exception the file failed with, or null if it didn't fail
+		 */
+		public Exception getException() {
+			return exception;
+		}
+	}
+
+	/**
+	 * The results of every file in a batch, in the same (sorted) order as the files.
+	 */
+	public static class Report {
+		private final File directory;
+		private final List<Result> results;
+		private final long time;
+
+		private Report(File directory, List<Result> results, long time) {
+			this.directory = directory;
+			this.results = Collections.unmodifiableList(results);
+			this.time = time;
+		}
+
+		public List<Result> getResults() {
+			return results;
+		}
+
+		/**
+		 * @return how long the batch took, in milliseconds
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		public int count(Status status) {
+			int count = 0;
+
+			for (int i = 0; i < results.size(); i++) {
+				if (results.get(i).getStatus() == status) {
+					count++;
+				}
+			}
+
+			return count;
+		}
+
+		public boolean hasFailures() {
+			return (count(Status.FAILED) > 0);
+		}
+
+		/**
+		 * @return a one line summary of the batch
+		 */
+		public String getSummary() {
+			return results.size() + " files in " + time + "ms: " + count(Status.WRITTEN) + " written, " + count(Status.UNCHANGED) + " unchanged, "
+					+ count(Status.FAILED) + " failed";
+		}
+
+		/**
+		 * Writes the summary, followed by one line per file and the stack trace of each failure.
+		 */
+		public void write(Writer out) {
+			PrintWriter writer = new PrintWriter(out);
+
+			writer.println(getSummary());
+			writer.println();
+
+			for (int i = 0; i < results.size(); i++) {
+				Result result = results.get(i);
+				writer.println(result.getStatus() + "\t" + ProjectFileUtils.getProjectFileName(directory, result.getFile()));
+			}
+
+			for (int i = 0; i < results.size(); i++) {
+				Result result = results.get(i);
+
+				if (result.getException() != null) {
+					writer.println();
+					writer.println(result.getFile().getPath() + ":");
+					result.getException().printStackTrace(writer);
+				}
+			}
+
+			writer.flush();
+		}
+
+		/**
+		 * Saves the report (see <code>write()</code>) as a UTF-8 text file.
+		 */
+		public void save(File f) throws IOException {
+			try (Writer out = Files.newBufferedWriter(f.toPath(), StandardCharsets.UTF_8)) {
+				write(out);
+			}
+		}
+
+		@Override
+		public String toString() {
+			StringWriter out = new StringWriter();
+			write(out);
+			return out.toString();
+		}
+	}
+}
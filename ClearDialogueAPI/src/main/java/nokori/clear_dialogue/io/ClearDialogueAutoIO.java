@@ -7,38 +7,155 @@ import nokori.clear_dialogue.project.Project;
 
 /**
  * This class compiles all of the available default ClearDialogue IO systems into one class and will auto-detect which one to use based on the file.
+ * 
+ * <br><br>If a ProjectCache is given, JSON files are imported through it, so that files that haven't changed since the last launch don't have to be parsed again.
  */
 public class ClearDialogueAutoIO implements ClearDialogueIO {
+	
+	//The journal remembers what it last saved to each file, so it's kept for the lifetime of this ClearDialogueAutoIO
+	private final ClearDialogueJournalIO journalIO = new ClearDialogueJournalIO();
+	
+	private final ProjectCache cache;
+	
+	public ClearDialogueAutoIO() {
+		this(null);
+	}
+	
+	/**
+	 * @param cache - the cache to import JSON files through, or null to always parse them
+	 */
+	public ClearDialogueAutoIO(ProjectCache cache) {
+		this.cache = cache;
+	}
+	
+	public ProjectCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Sets how many previous versions of a file are kept as recovery copies when it's overwritten, whichever format it's in (see AtomicFileWriter). 
+	 * The default is 0.
+	 */
+	public void setNumRecoveryCopies(int numRecoveryCopies) {
+		journalIO.setNumRecoveryCopies(numRecoveryCopies);
+	}
+	
+	public int getNumRecoveryCopies() {
+		return journalIO.getNumRecoveryCopies();
+	}
 
 	@Override
 	public void exportProject(Project project, File f) throws Exception {
+		exportProject(project, f, new IOProgress());
+	}
+	
+	@Override
+	public void exportProject(Project project, File f, IOProgress progress) throws Exception {
 		//JSON Export
 		if (isJSONFile(f)) {
-			new ClearDialogueJsonIO().exportProject(project, f);
+			ClearDialogueJsonIO io = new ClearDialogueJsonIO();
+			io.setNumRecoveryCopies(getNumRecoveryCopies());
+			io.exportProject(project, f, progress);
+		}
+		
+		//Binary Export
+		if (isBinaryFile(f)) {
+			ClearDialogueBinaryIO io = new ClearDialogueBinaryIO();
+			io.setNumRecoveryCopies(getNumRecoveryCopies());
+			io.exportProject(project, f, progress);
+		}
+		
+		//Indexed Export
+		if (isIndexedFile(f)) {
+			ClearDialogueIndexedIO io = new ClearDialogueIndexedIO();
+			io.setNumRecoveryCopies(getNumRecoveryCopies());
+			io.exportProject(project, f, progress);
+		}
+		
+		//Journal Export
+		if (isJournalFile(f)) {
+			journalIO.exportProject(project, f, progress);
 		}
 	}
 
 	@Override
 	public Project importProject(File f) throws Exception {
+		return importProject(f, new IOProgress());
+	}
+	
+	@Override
+	public Project importProject(File f, IOProgress progress) throws Exception {
 		//JSON Import
 		if (isJSONFile(f)) {
-			return new ClearDialogueJsonIO().importProject(f);
+			return (cache != null ? cache.importProject(f, new ClearDialogueJsonIO(), progress) : new ClearDialogueJsonIO().importProject(f, progress));
+		}
+		
+		//Binary Import
+		if (isBinaryFile(f)) {
+			return new ClearDialogueBinaryIO().importProject(f, progress);
+		}
+		
+		//Indexed Import
+		if (isIndexedFile(f)) {
+			return new ClearDialogueIndexedIO().importProject(f, progress);
+		}
+		
+		//Journal Import
+		if (isJournalFile(f)) {
+			return journalIO.importProject(f, progress);
 		}
 		
 		return null;
 	}
 	
+	/**
+	 * JSON and indexed files skip the unreachable nodes while importing. Cached JSON files and the other formats are loaded in full and then 
+	 * have the reachable part copied out of them.
+	 */
+	@Override
+	public Project importProject(File f, EntryPoints entries) throws Exception {
+		if (isJSONFile(f) && cache == null) {
+			return new ClearDialogueJsonIO().importProject(f, entries);
+		}
+		
+		if (isIndexedFile(f)) {
+			return new ClearDialogueIndexedIO().importProject(f, entries);
+		}
+		
+		Project project = importProject(f);
+		return (project != null ? entries.extract(project) : null);
+	}
+	
+	/**
+	 * @return true if the file is one of the types that ClearDialogueAutoIO can import and export.
+	 */
+	public static boolean isSupportedFile(File f) {
+		return (isJSONFile(f) || isBinaryFile(f) || isIndexedFile(f) || isJournalFile(f));
+	}
+	
 	private static boolean isJSONFile(File f) {
 		return isFile(f, ".json");
 	}
 	
+	private static boolean isBinaryFile(File f) {
+		return isFile(f, "." + ClearDialogueBinaryIO.FILE_EXTENSION);
+	}
+	
+	private static boolean isIndexedFile(File f) {
+		return isFile(f, "." + ClearDialogueIndexedIO.FILE_EXTENSION);
+	}
+	
+	private static boolean isJournalFile(File f) {
+		return isFile(f, "." + ClearDialogueJournalIO.FILE_EXTENSION);
+	}
+	
 	private static boolean isFile(File f, String extension) {
 		return f.getName().toLowerCase(Locale.ENGLISH).endsWith(extension);
 	}
 
 	@Override
 	public String getTypeName() {
-		return "JSON, THJSON";
+		return "JSON, THJSON, CDB, CDI, CDJ";
 	}
 
 }
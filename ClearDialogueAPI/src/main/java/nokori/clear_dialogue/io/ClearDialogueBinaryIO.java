@@ -0,0 +1,528 @@
+package nokori.clear_dialogue.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import nokori.clear_dialogue.project.Connection;
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.DialogueConnector;
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueResponse.Response;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+import nokori.clear_dialogue.throwable.InvalidProjectFileException;
+
+/**
+ * A compact binary format for Projects, meant for shipping games where the JSON files would be too slow and large to load.
+ * 
+ * <br><br>Every string is written once into a string table at the start of the file and referred to by its index afterwards. Connections refer to 
+ * connectors by their index (in the order the connectors appear in the nodes) instead of by UID. Indices and counts are written as varints, and the 
+ * header contains the counts of everything in the file so that the reader can presize its arrays.
+ * 
+ * <br><br>The format is lossless, so Projects can be converted back and forth with ClearDialogueJsonIO.
+ * 
+ * <pre>
+ * magic             4 bytes ("CDLG")
+ * format version    varint
+ * counts            varint strings, nodes, connectors, connections
+ * string table      [varint byte length, UTF-8 bytes] per string
+ * project           varint version, string name, float viewport x/y/scale
+ * nodes             byte type, string uid/title/tags, float x/y, byte expanded, string in-connector UID, then:
+ *                     text:     string text, string out-connector UID
+ *                     response: varint count, [string text, string out-connector UID] per response
+ * connections       [varint connector index, varint connector index] per connection
+ * </pre>
+ * 
+ * String references are written as varint (index + 1), with 0 meaning null.
+ */
+public class ClearDialogueBinaryIO implements ClearDialogueIO {
+	
+	public static final String FILE_EXTENSION = "cdb";
+	
+	public static final int MAGIC = 0x43444C47; //"CDLG"
+	public static final int FORMAT_VERSION = 1;
+	
+	private static final byte NODE_TYPE_TEXT = 0;
+	private static final byte NODE_TYPE_RESPONSE = 1;
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	//Arrays are only presized up to this from the header's counts, and grow past it as the data is actually read, so a damaged count can't exhaust memory
+	private static final int MAX_PRESIZE = 64 * 1024;
+	
+	//How many previous versions of a file are kept when it's overwritten (see AtomicFileWriter)
+	private int numRecoveryCopies = 0;
+
+	/**
+	 * Sets how many previous versions of a file are kept as recovery copies when it's overwritten (see AtomicFileWriter). The default is 0.
+	 */
+	public void setNumRecoveryCopies(int numRecoveryCopies) {
+		this.numRecoveryCopies = AtomicFileWriter.checkNumRecoveryCopies(numRecoveryCopies);
+	}
+	
+	public int getNumRecoveryCopies() {
+		return numRecoveryCopies;
+	}
+	
+	@Override
+	public void exportProject(Project project, File f) throws Exception {
+		exportProject(project, f, new IOProgress());
+	}
+	
+	@Override
+	public void exportProject(Project project, File f, IOProgress progress) throws Exception {
+		AtomicFileWriter.write(f, numRecoveryCopies, new AtomicFileWriter.WriteAction() {
+			
+			@Override
+			public void write(OutputStream out) throws Exception {
+				exportProject(project, out, progress);
+			}
+		});
+	}
+	
+	/**
+	 * Writes the Project to the given stream. The stream is flushed, but not closed.
+	 */
+	public void exportProject(Project project, OutputStream outputStream) throws IOException {
+		exportProject(project, outputStream, new IOProgress());
+	}
+	
+	/**
+	 * Writes the Project to the given stream, reporting progress as it goes. The stream is flushed, but not closed.
+	 */
+	public void exportProject(Project project, OutputStream outputStream, IOProgress progress) throws IOException {
+		progress.setTotals(project.getNumDialogue(), project.getNumConnections());
+		progress.checkCancelled();
+		
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+		
+		/*
+		 * Build the string table and number the connectors
+		 */
+		
+		HashMap<String, Integer> stringIndices = new HashMap<String, Integer>();
+		ArrayList<String> strings = new ArrayList<String>();
+		
+		IdentityHashMap<DialogueConnector, Integer> connectorIndices = new IdentityHashMap<DialogueConnector, Integer>();
+		
+		addString(project.getName(), stringIndices, strings);
+		
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+			
+			addString(node.getUID(), stringIndices, strings);
+			addString(node.getTitle(), stringIndices, strings);
+			addString(node.getTags(), stringIndices, strings);
+			addConnector(node.getInConnector(), stringIndices, strings, connectorIndices);
+			
+			if (node instanceof DialogueText) {
+				DialogueText textNode = (DialogueText) node;
+				
+				addString(textNode.getText(), stringIndices, strings);
+				addConnector(textNode.getOutConnector(), stringIndices, strings, connectorIndices);
+			}
+			
+			if (node instanceof DialogueResponse) {
+				ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+				
+				for (int j = 0; j < responses.size(); j++) {
+					addString(responses.get(j).getText(), stringIndices, strings);
+					addConnector(responses.get(j).getOutConnector(), stringIndices, strings, connectorIndices);
+				}
+			}
+		}
+		
+		/*
+		 * Header
+		 */
+		
+		out.writeInt(MAGIC);
+		writeVarInt(out, FORMAT_VERSION);
+		
+		writeVarInt(out, strings.size());
+		writeVarInt(out, project.getNumDialogue());
+		writeVarInt(out, connectorIndices.size());
+		writeVarInt(out, project.getNumConnections());
+		
+		/*
+		 * String table
+		 */
+		
+		for (int i = 0; i < strings.size(); i++) {
+			byte[] bytes = strings.get(i).getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+		
+		/*
+		 * Project
+		 */
+		
+		writeVarInt(out, Project.CURRENT_VERSION);
+		writeString(out, project.getName(), stringIndices);
+		out.writeFloat(project.getViewportX());
+		out.writeFloat(project.getViewportY());
+		out.writeFloat(project.getViewportScale());
+		
+		/*
+		 * Nodes
+		 */
+		
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+			
+			out.writeByte(node instanceof DialogueResponse ? NODE_TYPE_RESPONSE : NODE_TYPE_TEXT);
+			
+			writeString(out, node.getUID(), stringIndices);
+			writeString(out, node.getTitle(), stringIndices);
+			writeString(out, node.getTags(), stringIndices);
+			out.writeFloat(node.getX());
+			out.writeFloat(node.getY());
+			out.writeBoolean(node.isExpanded());
+			writeString(out, node.getInConnector().getUID(), stringIndices);
+			
+			if (node instanceof DialogueResponse) {
+				ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+				
+				writeVarInt(out, responses.size());
+				
+				for (int j = 0; j < responses.size(); j++) {
+					writeString(out, responses.get(j).getText(), stringIndices);
+					writeString(out, responses.get(j).getOutConnector().getUID(), stringIndices);
+				}
+			} else {
+				DialogueText textNode = (DialogueText) node;
+				
+				writeString(out, textNode.getText(), stringIndices);
+				writeString(out, textNode.getOutConnector().getUID(), stringIndices);
+			}
+			
+			progress.nodeProcessed();
+		}
+		
+		/*
+		 * Connections
+		 */
+		
+		for (int i = 0; i < project.getNumConnections(); i++) {
+			Connection connection = project.getConnection(i);
+			
+			writeVarInt(out, connectorIndices.get(connection.getConnector1()));
+			writeVarInt(out, connectorIndices.get(connection.getConnector2()));
+			
+			progress.connectionProcessed();
+		}
+		
+		out.flush();
+		
+		progress.finish(project);
+	}
+	
+	private static void addString(String s, HashMap<String, Integer> stringIndices, ArrayList<String> strings) {
+		if (s != null && !stringIndices.containsKey(s)) {
+			stringIndices.put(s, strings.size());
+			strings.add(s);
+		}
+	}
+	
+	private static void addConnector(DialogueConnector connector, HashMap<String, Integer> stringIndices, ArrayList<String> strings, 
+			IdentityHashMap<DialogueConnector, Integer> connectorIndices) {
+		
+		addString(connector.getUID(), stringIndices, strings);
+		connectorIndices.put(connector, connectorIndices.size());
+	}
+	
+	private static void writeString(DataOutput out, String s, HashMap<String, Integer> stringIndices) throws IOException {
+		writeVarInt(out, (s != null ? stringIndices.get(s) + 1 : 0));
+	}
+	
+	@Override
+	public Project importProject(File f) throws Exception {
+		return importProject(f, new IOProgress());
+	}
+	
+	@Override
+	public Project importProject(File f, IOProgress progress) throws Exception {
+		try (InputStream in = new FileInputStream(f)) {
+			return importProject(in, progress);
+		}
+	}
+	
+	/**
+	 * Reads a Project from the given stream. The stream isn't closed.
+	 */
+	public Project importProject(InputStream inputStream) throws Exception {
+		return importProject(inputStream, new IOProgress());
+	}
+	
+	/**
+	 * Reads a Project from the given stream, reporting progress as it goes. The stream isn't closed.
+	 */
+	public Project importProject(InputStream inputStream, IOProgress progress) throws Exception {
+		progress.checkCancelled();
+		
+		DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, BUFFER_SIZE));
+		
+		try {
+			return readProject(in, progress);
+		} catch (EOFException e) {
+			throw new InvalidProjectFileException("unexpected end of file");
+		}
+	}
+	
+	private Project readProject(DataInputStream in, IOProgress progress) throws Exception {
+		/*
+		 * Header
+		 */
+		
+		if (in.readInt() != MAGIC) {
+			throw new InvalidProjectFileException("not a ClearDialogue binary project");
+		}
+		
+		int formatVersion = readVarInt(in);
+		
+		if (formatVersion != FORMAT_VERSION) {
+			throw new InvalidProjectFileException("unsupported binary format version " + formatVersion);
+		}
+		
+		int numStrings = readVarInt(in);
+		int numNodes = readVarInt(in);
+		int numConnectors = readVarInt(in);
+		int numConnections = readVarInt(in);
+		
+		if (numStrings < 0 || numNodes < 0 || numConnectors < 0 || numConnections < 0) {
+			throw new InvalidProjectFileException("negative count in header");
+		}
+		
+		//Every node has at least an In-Connector
+		if (numConnectors < numNodes) {
+			throw new InvalidProjectFileException(numNodes + " nodes can't have only " + numConnectors + " connectors");
+		}
+		
+		progress.setTotals(numNodes, numConnections);
+		
+		/*
+		 * String table
+		 */
+		
+		String[] strings = new String[Math.min(numStrings, MAX_PRESIZE)];
+		byte[] buffer = new byte[256];
+		
+		for (int i = 0; i < numStrings; i++) {
+			int length = readVarInt(in);
+			
+			if (length < 0) {
+				throw new InvalidProjectFileException("negative length for string " + i);
+			}
+			
+			buffer = readBytes(in, buffer, length);
+			
+			if (i == strings.length) {
+				strings = Arrays.copyOf(strings, (int) Math.min((long) strings.length * 2, numStrings));
+			}
+			
+			strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+		}
+		
+		/*
+		 * Project
+		 */
+		
+		int projectVersion = readVarInt(in);
+		String projectName = readString(in, strings);
+		
+		float viewportX = in.readFloat();
+		float viewportY = in.readFloat();
+		float viewportScale = in.readFloat();
+		
+		Project project = new Project(projectVersion, projectName, viewportX, viewportY, viewportScale);
+		
+		/*
+		 * Nodes
+		 */
+		
+		DialogueConnector[] connectors = new DialogueConnector[Math.min(numConnectors, MAX_PRESIZE)];
+		int connectorCount = 0;
+		
+		for (int i = 0; i < numNodes; i++) {
+			byte type = in.readByte();
+			
+			String uid = readString(in, strings);
+			String name = readString(in, strings);
+			String tag = readString(in, strings);
+			float nodeX = in.readFloat();
+			float nodeY = in.readFloat();
+			boolean expanded = in.readBoolean();
+			String inConnectorUID = readString(in, strings);
+			
+			Dialogue node;
+			
+			if (type == NODE_TYPE_TEXT) {
+				node = new DialogueText(project, uid, name, tag, nodeX, nodeY, expanded, readString(in, strings));
+				node.setInConnector(new DialogueConnector(project, node, inConnectorUID));
+				connectors = addConnector(connectors, connectorCount++, numConnectors, node.getInConnector());
+				
+				DialogueConnector outConnector = new DialogueConnector(project, node, readString(in, strings));
+				((DialogueText) node).setOutConnector(outConnector);
+				connectors = addConnector(connectors, connectorCount++, numConnectors, outConnector);
+				
+			} else if (type == NODE_TYPE_RESPONSE) {
+				DialogueResponse responseNode = new DialogueResponse(project, uid, name, tag, nodeX, nodeY, expanded);
+				node = responseNode;
+				
+				node.setInConnector(new DialogueConnector(project, node, inConnectorUID));
+				connectors = addConnector(connectors, connectorCount++, numConnectors, node.getInConnector());
+				
+				int numResponses = readVarInt(in);
+				
+				if (numResponses < 0 || numResponses > numConnectors - connectorCount) {
+					throw new InvalidProjectFileException("invalid response count " + numResponses + " for node \"" + name + "\"");
+				}
+				
+				ArrayList<Response> responses = responseNode.getResponses();
+				responses.ensureCapacity(Math.min(numResponses, MAX_PRESIZE));
+				
+				for (int j = 0; j < numResponses; j++) {
+					String text = readString(in, strings);
+					responseNode.addResponse(text, readString(in, strings));
+					connectors = addConnector(connectors, connectorCount++, numConnectors, responses.get(j).getOutConnector());
+				}
+				
+			} else {
+				throw new InvalidProjectFileException("unknown node type " + type + " for node \"" + name + "\"");
+			}
+			
+			if (project.getDialogue(uid) != null) {
+				throw new InvalidProjectFileException("more than one node has the UID \"" + uid + "\"");
+			}
+			
+			project.addDialogue(node);
+			progress.nodeProcessed();
+		}
+		
+		if (connectorCount != numConnectors) {
+			throw new InvalidProjectFileException("header has " + numConnectors + " connectors, but the nodes have " + connectorCount);
+		}
+		
+		/*
+		 * Connections
+		 */
+		
+		for (int i = 0; i < numConnections; i++) {
+			DialogueConnector connector1 = readConnector(in, connectors, connectorCount);
+			DialogueConnector connector2 = readConnector(in, connectors, connectorCount);
+			
+			project.addConnection(new Connection(connector1, connector2));
+			progress.connectionProcessed();
+		}
+		
+		progress.finish(project);
+		
+		return project;
+	}
+	
+	/**
+	 * Reads <code>length</code> bytes into the buffer, growing it as the bytes arrive rather than all at once, so that a damaged length runs out of 
+	 * file instead of memory.
+	 * 
+	 * @return the buffer, or a larger copy of it
+	 */
+	private static byte[] readBytes(DataInput in, byte[] buffer, int length) throws IOException {
+		int read = 0;
+		
+		while (read < length) {
+			if (read == buffer.length) {
+				buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, length));
+			}
+			
+			int chunk = Math.min(buffer.length, length) - read;
+			in.readFully(buffer, read, chunk);
+			read += chunk;
+		}
+		
+		return buffer;
+	}
+	
+	private static DialogueConnector[] addConnector(DialogueConnector[] connectors, int index, int numConnectors, DialogueConnector connector) throws InvalidProjectFileException {
+		if (index >= numConnectors) {
+			throw new InvalidProjectFileException("the nodes have more connectors than the header's " + numConnectors);
+		}
+		
+		if (index == connectors.length) {
+			connectors = Arrays.copyOf(connectors, (int) Math.min((long) connectors.length * 2, numConnectors));
+		}
+		
+		connectors[index] = connector;
+		return connectors;
+	}
+	
+	private static String readString(DataInput in, String[] strings) throws IOException, InvalidProjectFileException {
+		int reference = readVarInt(in);
+		
+		if (reference < 0 || reference > strings.length) {
+			throw new InvalidProjectFileException("string reference " + reference + " is out of range");
+		}
+		
+		return (reference > 0 ? strings[reference - 1] : null);
+	}
+	
+	private static DialogueConnector readConnector(DataInput in, DialogueConnector[] connectors, int connectorCount) throws IOException, InvalidProjectFileException {
+		int index = readVarInt(in);
+		
+		if (index < 0 || index >= connectorCount) {
+			throw new InvalidProjectFileException("connector index " + index + " is out of range");
+		}
+		
+		return connectors[index];
+	}
+	
+	/*
+	 * 
+	 * Varints are written 7 bits at a time, lowest bits first, with the top bit of each byte set if more bytes follow.
+	 * 
+	 */
+	
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		
+		out.writeByte(value);
+	}
+	
+	static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		
+		throw new IOException("Malformed varint");
+	}
+
+	@Override
+	public String getTypeName() {
+		return "CDB";
+	}
+}
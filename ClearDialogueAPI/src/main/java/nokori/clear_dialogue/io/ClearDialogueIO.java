@@ -70,6 +70,40 @@ public interface ClearDialogueIO {
 	 */
 	public Project importProject(File f) throws Exception;
 	
+	/**
+	 * Export functionality with progress reporting and cancellation (see IOProgress and AsyncProjectIO).
+	 * 
+	 * Implementations should override this to report progress as they go. By default, cancellation is only checked before the export starts.
+	 */
+	public default void exportProject(Project project, File f, IOProgress progress) throws Exception {
+		progress.setTotals(project.getNumDialogue(), project.getNumConnections());
+		progress.checkCancelled();
+		exportProject(project, f);
+		progress.finish(project);
+	}
+	
+	/**
+	 * Import functionality with progress reporting and cancellation (see IOProgress and AsyncProjectIO).
+	 * 
+	 * Implementations should override this to report progress as they go. By default, cancellation is only checked before the import starts.
+	 */
+	public default Project importProject(File f, IOProgress progress) throws Exception {
+		progress.checkCancelled();
+		Project project = importProject(f);
+		progress.finish(project);
+		return project;
+	}
+	
+	/**
+	 * Partial import functionality: only the entries and the nodes reachable from them are imported (see EntryPoints).
+	 * 
+	 * Implementations should override this if they can skip the unreachable nodes. By default, the whole file is imported and the reachable part is copied out of it.
+	 */
+	public default Project importProject(File f, EntryPoints entries) throws Exception {
+		Project project = importProject(f);
+		return (project != null ? entries.extract(project) : null);
+	}
+	
 	/**
 	 * The name of the file type of file this exporter/importer manages.
 	 */
@@ -0,0 +1,334 @@
+package nokori.clear_dialogue.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import nokori.clear_dialogue.project.Connection;
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.DialogueConnector;
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueResponse.Response;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * An indexed binary format that's designed to be memory-mapped and read lazily with MappedProject (see <code>MappedProject.open()</code>), 
+ * so that huge projects can be opened instantly and only the nodes that are actually used get decoded.
+ * 
+ * <br><br>Unlike ClearDialogueBinaryIO, everything in this format is fixed-width and located through offset tables, so any node or string can be 
+ * reached in O(1) without reading the rest of the file. Each out-connector also stores the index of the node it leads into, so the dialogue can 
+ * be traversed without touching the connection list. All values are big-endian.
+ * 
+ * <pre>
+ * header               int magic ("CDLI"), int format version,
+ *                      int project version, int name, float viewport x/y/scale,
+ *                      int node count, int string count, int connection count,
+ *                      int node table offset, int string table offset, int connections offset
+ * node table           int offset per node
+ * string table         int offset per string, pointing to [int byte length, UTF-8 bytes]
+ * node records         byte type, byte expanded, float x, float y, int uid, int title, int tags, int in-connector UID,
+ *                      int choice count, then per choice: int text, int out-connector UID, int target node (-1 if none)
+ * connections          int node, int slot, int node, int slot per connection (slot 0 is the in-connector, 1+ are the out-connectors)
+ * string data
+ * </pre>
+ * 
+ * A DialogueText is stored with a single choice that holds its text and out-connector. Strings are referred to by their index, with -1 meaning null.
+ */
+public class ClearDialogueIndexedIO implements ClearDialogueIO {
+	
+	public static final String FILE_EXTENSION = "cdi";
+	
+	public static final int MAGIC = 0x43444C49; //"CDLI"
+	public static final int FORMAT_VERSION = 1;
+	
+	static final byte NODE_TYPE_TEXT = 0;
+	static final byte NODE_TYPE_RESPONSE = 1;
+	
+	/*
+	 * Header layout
+	 */
+	
+	static final int HEADER_MAGIC = 0;
+	static final int HEADER_FORMAT_VERSION = 4;
+	static final int HEADER_PROJECT_VERSION = 8;
+	static final int HEADER_PROJECT_NAME = 12;
+	static final int HEADER_VIEWPORT_X = 16;
+	static final int HEADER_VIEWPORT_Y = 20;
+	static final int HEADER_VIEWPORT_SCALE = 24;
+	static final int HEADER_NODE_COUNT = 28;
+	static final int HEADER_STRING_COUNT = 32;
+	static final int HEADER_CONNECTION_COUNT = 36;
+	static final int HEADER_NODE_TABLE_OFFSET = 40;
+	static final int HEADER_STRING_TABLE_OFFSET = 44;
+	static final int HEADER_CONNECTIONS_OFFSET = 48;
+	static final int HEADER_SIZE = 52;
+	
+	/*
+	 * Node record layout
+	 */
+	
+	static final int NODE_TYPE = 0;
+	static final int NODE_EXPANDED = 1;
+	static final int NODE_X = 2;
+	static final int NODE_Y = 6;
+	static final int NODE_UID = 10;
+	static final int NODE_TITLE = 14;
+	static final int NODE_TAGS = 18;
+	static final int NODE_IN_CONNECTOR_UID = 22;
+	static final int NODE_CHOICE_COUNT = 26;
+	static final int NODE_CHOICES = 30;
+	
+	static final int CHOICE_TEXT = 0;
+	static final int CHOICE_OUT_CONNECTOR_UID = 4;
+	static final int CHOICE_TARGET = 8;
+	static final int CHOICE_SIZE = 12;
+	
+	static final int CONNECTION_SIZE = 16;
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	//How many previous versions of a file are kept when it's overwritten (see AtomicFileWriter)
+	private int numRecoveryCopies = 0;
+
+	/**
+	 * Sets how many previous versions of a file are kept as recovery copies when it's overwritten (see AtomicFileWriter). The default is 0.
+	 */
+	public void setNumRecoveryCopies(int numRecoveryCopies) {
+		this.numRecoveryCopies = AtomicFileWriter.checkNumRecoveryCopies(numRecoveryCopies);
+	}
+	
+	public int getNumRecoveryCopies() {
+		return numRecoveryCopies;
+	}
+	
+	@Override
+	public void exportProject(Project project, File f) throws Exception {
+		AtomicFileWriter.write(f, numRecoveryCopies, new AtomicFileWriter.WriteAction() {
+			
+			@Override
+			public void write(OutputStream out) throws Exception {
+				exportProject(project, out);
+			}
+		});
+	}
+	
+	/**
+	 * Writes the Project to the given stream. The stream is flushed, but not closed.
+	 */
+	public void exportProject(Project project, OutputStream outputStream) throws IOException {
+		int numNodes = project.getNumDialogue();
+		int numConnections = project.getNumConnections();
+		
+		/*
+		 * Build the string table, and record where every node and connector is so that targets and connections can be written as indices
+		 */
+		
+		HashMap<String, Integer> stringIndices = new HashMap<String, Integer>();
+		ArrayList<byte[]> strings = new ArrayList<byte[]>();
+		
+		IdentityHashMap<Dialogue, Integer> nodeIndices = new IdentityHashMap<Dialogue, Integer>(numNodes);
+		IdentityHashMap<DialogueConnector, Integer> connectorSlots = new IdentityHashMap<DialogueConnector, Integer>();
+		
+		int[] choiceCounts = new int[numNodes];
+		
+		for (int i = 0; i < numNodes; i++) {
+			Dialogue node = project.getDialogue(i);
+			nodeIndices.put(node, i);
+			
+			ArrayList<DialogueConnector> connectors = node.getAllConnectors();
+			
+			for (int j = 0; j < connectors.size(); j++) {
+				connectorSlots.put(connectors.get(j), j);
+			}
+			
+			choiceCounts[i] = connectors.size() - 1;
+		}
+		
+		int projectName = addString(project.getName(), stringIndices, strings);
+		
+		/*
+		 * Work out the offsets of every section
+		 */
+		
+		int nodeTableOffset = HEADER_SIZE;
+		int stringTableOffset = nodeTableOffset + numNodes * 4;
+		
+		//The string count isn't known until the nodes have been processed, so the node records are laid out after the strings are collected
+		int[][] nodeStrings = new int[numNodes][];
+		
+		for (int i = 0; i < numNodes; i++) {
+			Dialogue node = project.getDialogue(i);
+			int[] refs = new int[4 + choiceCounts[i] * 2];
+			
+			refs[0] = addString(node.getUID(), stringIndices, strings);
+			refs[1] = addString(node.getTitle(), stringIndices, strings);
+			refs[2] = addString(node.getTags(), stringIndices, strings);
+			refs[3] = addString(node.getInConnector().getUID(), stringIndices, strings);
+			
+			if (node instanceof DialogueResponse) {
+				ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+				
+				for (int j = 0; j < responses.size(); j++) {
+					refs[4 + j * 2] = addString(responses.get(j).getText(), stringIndices, strings);
+					refs[5 + j * 2] = addString(responses.get(j).getOutConnector().getUID(), stringIndices, strings);
+				}
+			} else {
+				DialogueText textNode = (DialogueText) node;
+				
+				refs[4] = addString(textNode.getText(), stringIndices, strings);
+				refs[5] = addString(textNode.getOutConnector().getUID(), stringIndices, strings);
+			}
+			
+			nodeStrings[i] = refs;
+		}
+		
+		long nodeRecordsOffset = (long) stringTableOffset + strings.size() * 4;
+		long connectionsOffset = nodeRecordsOffset;
+		
+		for (int i = 0; i < numNodes; i++) {
+			connectionsOffset += NODE_CHOICES + choiceCounts[i] * CHOICE_SIZE;
+		}
+		
+		long stringDataOffset = connectionsOffset + (long) numConnections * CONNECTION_SIZE;
+		long fileSize = stringDataOffset;
+		
+		for (int i = 0; i < strings.size(); i++) {
+			fileSize += 4 + strings.get(i).length;
+		}
+		
+		if (fileSize > Integer.MAX_VALUE) {
+			throw new IOException(project.getName() + " is too large for the indexed format (" + fileSize + " bytes)");
+		}
+		
+		/*
+		 * Write everything out in order
+		 */
+		
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+		
+		//Header
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(Project.CURRENT_VERSION);
+		out.writeInt(projectName);
+		out.writeFloat(project.getViewportX());
+		out.writeFloat(project.getViewportY());
+		out.writeFloat(project.getViewportScale());
+		out.writeInt(numNodes);
+		out.writeInt(strings.size());
+		out.writeInt(numConnections);
+		out.writeInt(nodeTableOffset);
+		out.writeInt(stringTableOffset);
+		out.writeInt((int) connectionsOffset);
+		
+		//Node table
+		int offset = (int) nodeRecordsOffset;
+		
+		for (int i = 0; i < numNodes; i++) {
+			out.writeInt(offset);
+			offset += NODE_CHOICES + choiceCounts[i] * CHOICE_SIZE;
+		}
+		
+		//String table
+		offset = (int) stringDataOffset;
+		
+		for (int i = 0; i < strings.size(); i++) {
+			out.writeInt(offset);
+			offset += 4 + strings.get(i).length;
+		}
+		
+		//Node records
+		for (int i = 0; i < numNodes; i++) {
+			Dialogue node = project.getDialogue(i);
+			int[] refs = nodeStrings[i];
+			
+			out.writeByte(node instanceof DialogueResponse ? NODE_TYPE_RESPONSE : NODE_TYPE_TEXT);
+			out.writeBoolean(node.isExpanded());
+			out.writeFloat(node.getX());
+			out.writeFloat(node.getY());
+			out.writeInt(refs[0]);
+			out.writeInt(refs[1]);
+			out.writeInt(refs[2]);
+			out.writeInt(refs[3]);
+			out.writeInt(choiceCounts[i]);
+			
+			ArrayList<DialogueConnector> connectors = node.getAllConnectors();
+			
+			for (int j = 0; j < choiceCounts[i]; j++) {
+				Dialogue target = connectors.get(j + 1).getNodeConnectedTo();
+				Integer targetIndex = (target != null ? nodeIndices.get(target) : null);
+				
+				out.writeInt(refs[4 + j * 2]);
+				out.writeInt(refs[5 + j * 2]);
+				out.writeInt(targetIndex != null ? targetIndex : -1);
+			}
+		}
+		
+		//Connections
+		for (int i = 0; i < numConnections; i++) {
+			Connection connection = project.getConnection(i);
+			
+			writeConnector(out, connection.getConnector1(), nodeIndices, connectorSlots);
+			writeConnector(out, connection.getConnector2(), nodeIndices, connectorSlots);
+		}
+		
+		//String data
+		for (int i = 0; i < strings.size(); i++) {
+			out.writeInt(strings.get(i).length);
+			out.write(strings.get(i));
+		}
+		
+		out.flush();
+	}
+	
+	private static int addString(String s, HashMap<String, Integer> stringIndices, ArrayList<byte[]> strings) {
+		if (s == null) {
+			return -1;
+		}
+		
+		Integer index = stringIndices.get(s);
+		
+		if (index == null) {
+			index = strings.size();
+			stringIndices.put(s, index);
+			strings.add(s.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		return index;
+	}
+	
+	private static void writeConnector(DataOutputStream out, DialogueConnector connector, IdentityHashMap<Dialogue, Integer> nodeIndices, 
+			IdentityHashMap<DialogueConnector, Integer> connectorSlots) throws IOException {
+		
+		out.writeInt(nodeIndices.get(connector.getParent()));
+		out.writeInt(connectorSlots.get(connector));
+	}
+
+	/**
+	 * Fully decodes the file into a normal Project. Use <code>MappedProject.open()</code> instead if you only need to read parts of it.
+	 */
+	@Override
+	public Project importProject(File f) throws Exception {
+		return MappedProject.open(f).toProject();
+	}
+	
+	/**
+	 * Only the entries and the nodes reachable from them are decoded (see <code>MappedProject.toProject(EntryPoints)</code>).
+	 */
+	@Override
+	public Project importProject(File f, EntryPoints entries) throws Exception {
+		return MappedProject.open(f).toProject(entries);
+	}
+
+	@Override
+	public String getTypeName() {
+		return "CDI";
+	}
+}
@@ -0,0 +1,786 @@
+package nokori.clear_dialogue.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import nokori.clear_dialogue.project.Connection;
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.DialogueConnector;
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueResponse.Response;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+import nokori.clear_dialogue.project.ProjectChangeLog;
+import nokori.clear_dialogue.throwable.InvalidProjectFileException;
+
+/**
+ * A journaled format for Projects that are saved often (I.E. by the editor). The file holds a full snapshot of the Project (in the ClearDialogueBinaryIO
+ * format), followed by an append-only log of the changes made since. Saving only appends the nodes and connections that changed, so its cost scales with
+ * the size of the edit rather than the size of the Project.
+ *
+ * <br><br>If the Project's changes are being tracked (see <code>Project.trackChanges()</code>), a save only looks at the nodes and connections in its
+ * ProjectChangeLog that changed since the last save, and discards them from the log once they're written. Projects imported by this class are tracked
+ * automatically. Otherwise, changes are found by comparing the content hash of every node (see <code>Dialogue.getContentHash()</code>) and the set of
+ * connections against what was last saved to or loaded from the file.
+ *
+ * <br><br>That state is kept per file by this ClearDialogueJournalIO, so keep the same instance around between saves. Only the
+ * MAX_TRACKED_FILES files that were most recently saved or loaded keep it, so that importing a whole library through one instance doesn't hold on to
+ * every Project; an older file just gets a fresh snapshot on its next save. Since changes are matched by UID, the
+ * Project being saved doesn't have to be the same object each time (I.E. a copy made for a background save, which shares the change log of the original).
+ * The first save to a file (or any save after the file was changed by something else, or after changes the log couldn't list) writes a fresh snapshot instead.
+ *
+ * <br><br>Different files can be saved and loaded from several threads at once. Calls for the same file wait for each other.
+ *
+ * <br><br>Once the log grows past the compaction threshold, the next save rewrites the file as a single snapshot again. Snapshots are written through
+ * AtomicFileWriter, while the saves in between are appended in place and synced.
+ *
+ * <pre>
+ * magic             4 bytes ("CDLJ")
+ * format version    int
+ * snapshot length   int
+ * snapshot          ClearDialogueBinaryIO project
+ * log               [int payload length, int CRC32 of payload, payload] per save
+ * payload           varint record count, then per record a byte type followed by:
+ *                     project:    string name, float viewport x/y/scale
+ *                     put node:   the node (see ClearDialogueBinaryIO), strings written inline
+ *                     remove:     string node UID
+ *                     connect:    string connector UID, string connector UID
+ *                     disconnect: string connector UID, string connector UID
+ * </pre>
+ *
+ * Strings in the log are written as varint (byte length + 1) followed by the UTF-8 bytes, with 0 meaning null. A save that was cut off part way
+ * (I.E. by a crash) fails its CRC and is ignored on load, along with anything after it.
+ */
+public class ClearDialogueJournalIO implements ClearDialogueIO {
+
+	public static final String FILE_EXTENSION = "cdj";
+
+	public static final int MAGIC = 0x43444C4A; //"CDLJ"
+	public static final int FORMAT_VERSION = 1;
+
+	public static final long DEFAULT_COMPACTION_THRESHOLD = 1024 * 1024;
+
+	//How many files the saved state is kept for (see states)
+	public static final int MAX_TRACKED_FILES = 32;
+
+	//Files are locked by hash, so that a lock doesn't have to be created (and eventually cleaned up) for every file
+	private static final int NUM_FILE_LOCKS = 64;
+
+	private static final int HEADER_SIZE = 12;
+	private static final int BATCH_HEADER_SIZE = 8;
+
+	private static final byte RECORD_PROJECT = 0;
+	private static final byte RECORD_PUT_NODE = 1;
+	private static final byte RECORD_REMOVE_NODE = 2;
+	private static final byte RECORD_CONNECT = 3;
+	private static final byte RECORD_DISCONNECT = 4;
+
+	private static final byte NODE_TYPE_TEXT = 0;
+	private static final byte NODE_TYPE_RESPONSE = 1;
+
+	private final long compactionThreshold;
+
+	//What was last written to or read from each file, so that the next save knows what changed. Only the most recently used files are kept.
+	private final LinkedHashMap<File, JournalState> states = new LinkedHashMap<File, JournalState>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, JournalState> eldest) {
+			return (size() > MAX_TRACKED_FILES);
+		}
+	};
+
+	private final Object[] fileLocks = new Object[NUM_FILE_LOCKS];
+
+	//How many previous versions of a file are kept when it's overwritten (see AtomicFileWriter)
+	private int numRecoveryCopies = 0;
+
+	public ClearDialogueJournalIO() {
+		this(DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	/**
+	 * @param compactionThreshold - the size (in bytes) that the log can grow to before the file is rewritten as a single snapshot
+	 */
+	public ClearDialogueJournalIO(long compactionThreshold) {
+		this.compactionThreshold = compactionThreshold;
+
+		for (int i = 0; i < fileLocks.length; i++) {
+			fileLocks[i] = new Object();
+		}
+	}
+
+	public long getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	/**
+	 * Sets how many previous versions of a file are kept as recovery copies when it's overwritten (see AtomicFileWriter). The default is 0.
+	 */
+	public void setNumRecoveryCopies(int numRecoveryCopies) {
+		this.numRecoveryCopies = AtomicFileWriter.checkNumRecoveryCopies(numRecoveryCopies);
+	}
+
+	public int getNumRecoveryCopies() {
+		return numRecoveryCopies;
+	}
+
+	/*
+	 *
+	 * Export
+	 *
+	 */
+
+	@Override
+	public void exportProject(Project project, File f) throws Exception {
+		synchronized (getFileLock(f)) {
+			append(project, f);
+		}
+	}
+
+	/**
+	 * Appends the changes made since the last save to the file, or rewrites it as a snapshot if that's not possible.
+	 */
+	private void append(Project project, File f) throws Exception {
+		File key = f.getAbsoluteFile();
+		JournalState state = getState(key);
+
+		if (state == null || !f.isFile() || f.length() != state.fileLength) {
+			writeSnapshot(project, f);
+			return;
+		}
+
+		JournalState next = new JournalState();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		int numRecords;
+
+		if (state.changeLog == null) {
+			numRecords = writeChanges(out, project, state, next);
+		} else if (project.getChangeLog() == state.changeLog && state.changeLog.isCompleteSince(state.savedModificationCount)) {
+			numRecords = writeLoggedChanges(out, project, state, next);
+		} else {
+			//The log can't say what changed since the last save (I.E. a different Project is being saved to the file)
+			writeSnapshot(project, f);
+			return;
+		}
+
+		if (numRecords == 0) {
+			return;
+		}
+
+		byte[] payload = prependRecordCount(bytes.toByteArray(), numRecords);
+
+		if (state.fileLength - state.logStart + BATCH_HEADER_SIZE + payload.length > compactionThreshold) {
+			writeSnapshot(project, f);
+			return;
+		}
+
+		//If the append fails part way, the file is left in an unknown state, so forget it and write a fresh snapshot next time
+		removeState(key);
+
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+			ByteBuffer batch = ByteBuffer.allocate(BATCH_HEADER_SIZE + payload.length);
+			batch.putInt(payload.length);
+			batch.putInt(crc(payload, 0, payload.length));
+			batch.put(payload);
+
+			channel.truncate(state.logEnd);
+			channel.write(ByteBuffer.wrap(batch.array()), state.logEnd);
+			channel.force(false);
+		}
+
+		next.logStart = state.logStart;
+		next.logEnd = state.logEnd + BATCH_HEADER_SIZE + payload.length;
+		next.fileLength = next.logEnd;
+		putState(key, next);
+
+		next.discardSavedChanges();
+	}
+
+	/**
+	 * Rewrites the file as a single snapshot of the Project, dropping the log.
+	 */
+	public void compact(Project project, File f) throws Exception {
+		synchronized (getFileLock(f)) {
+			writeSnapshot(project, f);
+		}
+	}
+
+	private void writeSnapshot(Project project, File f) throws Exception {
+		File key = f.getAbsoluteFile();
+		removeState(key);
+
+		ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+		new ClearDialogueBinaryIO().exportProject(project, snapshot);
+
+		AtomicFileWriter.write(f, numRecoveryCopies, new AtomicFileWriter.WriteAction() {
+
+			@Override
+			public void write(OutputStream out) throws Exception {
+				DataOutputStream header = new DataOutputStream(out);
+				header.writeInt(MAGIC);
+				header.writeInt(FORMAT_VERSION);
+				header.writeInt(snapshot.size());
+
+				snapshot.writeTo(out);
+			}
+		});
+
+		JournalState state = new JournalState();
+		state.record(project);
+		state.logStart = HEADER_SIZE + snapshot.size();
+		state.logEnd = state.logStart;
+		state.fileLength = state.logEnd;
+		putState(key, state);
+
+		state.discardSavedChanges();
+	}
+
+	/**
+	 * Writes a record for everything in the Project that differs from the saved state, and fills in the next state as it goes.
+	 *
+	 * @return the number of records written
+	 */
+	private static int writeChanges(DataOutput out, Project project, JournalState saved, JournalState next) throws IOException {
+		int numRecords = writeProjectData(out, project, saved, next);
+
+		next.recordConnections(project);
+
+		//Removed connections go first, so that they're gone before any node they point to is replaced
+		for (int i = 0; i < saved.connections.size(); i++) {
+			String[] connection = saved.connections.get(i);
+
+			if (!next.connectionKeys.contains(connectionKey(connection[0], connection[1]))) {
+				out.writeByte(RECORD_DISCONNECT);
+				writeString(out, connection[0]);
+				writeString(out, connection[1]);
+				numRecords++;
+			}
+		}
+
+		next.nodeHashes = new HashMap<String, Long>(project.getNumDialogue() * 2);
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+			long hash = node.getContentHash();
+			next.nodeHashes.put(node.getUID(), hash);
+		}
+
+		Iterator<String> savedNodes = saved.nodeHashes.keySet().iterator();
+
+		while (savedNodes.hasNext()) {
+			String uid = savedNodes.next();
+
+			if (!next.nodeHashes.containsKey(uid)) {
+				out.writeByte(RECORD_REMOVE_NODE);
+				writeString(out, uid);
+				numRecords++;
+			}
+		}
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+			Long savedHash = saved.nodeHashes.get(node.getUID());
+
+			if (savedHash == null || savedHash.longValue() != next.nodeHashes.get(node.getUID()).longValue()) {
+				out.writeByte(RECORD_PUT_NODE);
+				writeNode(out, node);
+				numRecords++;
+			}
+		}
+
+		for (int i = 0; i < next.connections.size(); i++) {
+			String[] connection = next.connections.get(i);
+
+			if (!saved.connectionKeys.contains(connectionKey(connection[0], connection[1]))) {
+				out.writeByte(RECORD_CONNECT);
+				writeString(out, connection[0]);
+				writeString(out, connection[1]);
+				numRecords++;
+			}
+		}
+
+		return numRecords;
+	}
+
+	/**
+	 * Same as <code>writeChanges()</code>, but only the nodes and connections that the Project's change log lists since the last save are looked at.
+	 */
+	private static int writeLoggedChanges(DataOutput out, Project project, JournalState saved, JournalState next) throws IOException {
+		int numRecords = writeProjectData(out, project, saved, next);
+
+		ProjectChangeLog changeLog = saved.changeLog;
+		long modificationCount = project.getModificationCount();
+
+		ArrayList<String> nodes = changeLog.getNodeChanges(saved.savedModificationCount, modificationCount);
+		ArrayList<String[]> connections = changeLog.getConnectionChanges(saved.savedModificationCount, modificationCount);
+		ArrayList<String[]> connected = new ArrayList<String[]>();
+
+		//Removed connections go first, so that they're gone before any node they point to is replaced
+		for (int i = 0; i < connections.size(); i++) {
+			String[] connection = connections.get(i);
+
+			if (isConnected(project, connection)) {
+				connected.add(connection);
+			} else {
+				out.writeByte(RECORD_DISCONNECT);
+				writeString(out, connection[0]);
+				writeString(out, connection[1]);
+				numRecords++;
+			}
+		}
+
+		for (int i = 0; i < nodes.size(); i++) {
+			if (project.getDialogue(nodes.get(i)) == null) {
+				out.writeByte(RECORD_REMOVE_NODE);
+				writeString(out, nodes.get(i));
+				numRecords++;
+			}
+		}
+
+		for (int i = 0; i < nodes.size(); i++) {
+			Dialogue node = project.getDialogue(nodes.get(i));
+
+			if (node != null) {
+				out.writeByte(RECORD_PUT_NODE);
+				writeNode(out, node);
+				numRecords++;
+			}
+		}
+
+		for (int i = 0; i < connected.size(); i++) {
+			out.writeByte(RECORD_CONNECT);
+			writeString(out, connected.get(i)[0]);
+			writeString(out, connected.get(i)[1]);
+			numRecords++;
+		}
+
+		next.changeLog = changeLog;
+		next.savedModificationCount = modificationCount;
+
+		return numRecords;
+	}
+
+	private static int writeProjectData(DataOutput out, Project project, JournalState saved, JournalState next) throws IOException {
+		next.recordProject(project);
+
+		if (next.hasSameProjectData(saved)) {
+			return 0;
+		}
+
+		out.writeByte(RECORD_PROJECT);
+		writeString(out, project.getName());
+		out.writeFloat(project.getViewportX());
+		out.writeFloat(project.getViewportY());
+		out.writeFloat(project.getViewportScale());
+		return 1;
+	}
+
+	private static boolean isConnected(Project project, String[] connection) {
+		DialogueConnector connector1 = project.getDialogueConnector(connection[0]);
+		DialogueConnector connector2 = project.getDialogueConnector(connection[1]);
+
+		return (connector1 != null && connector2 != null && project.isConnected(connector1, connector2));
+	}
+
+	private static byte[] prependRecordCount(byte[] records, int numRecords) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(records.length + 5);
+		ClearDialogueBinaryIO.writeVarInt(new DataOutputStream(bytes), numRecords);
+		bytes.write(records);
+		return bytes.toByteArray();
+	}
+
+	private static void writeNode(DataOutput out, Dialogue node) throws IOException {
+		out.writeByte(node instanceof DialogueResponse ? NODE_TYPE_RESPONSE : NODE_TYPE_TEXT);
+
+		writeString(out, node.getUID());
+		writeString(out, node.getTitle());
+		writeString(out, node.getTags());
+		out.writeFloat(node.getX());
+		out.writeFloat(node.getY());
+		out.writeBoolean(node.isExpanded());
+		writeString(out, node.getInConnector().getUID());
+
+		if (node instanceof DialogueResponse) {
+			ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+
+			ClearDialogueBinaryIO.writeVarInt(out, responses.size());
+
+			for (int j = 0; j < responses.size(); j++) {
+				writeString(out, responses.get(j).getText());
+				writeString(out, responses.get(j).getOutConnector().getUID());
+			}
+		} else {
+			DialogueText textNode = (DialogueText) node;
+
+			writeString(out, textNode.getText());
+			writeString(out, textNode.getOutConnector().getUID());
+		}
+	}
+
+	private static void writeString(DataOutput out, String s) throws IOException {
+		if (s == null) {
+			ClearDialogueBinaryIO.writeVarInt(out, 0);
+			return;
+		}
+
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		ClearDialogueBinaryIO.writeVarInt(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	/*
+	 *
+	 * Import
+	 *
+	 */
+
+	@Override
+	public Project importProject(File f) throws Exception {
+		synchronized (getFileLock(f)) {
+			return readProject(f);
+		}
+	}
+
+	private Project readProject(File f) throws Exception {
+		byte[] file = Files.readAllBytes(f.toPath());
+		ByteBuffer buffer = ByteBuffer.wrap(file);
+
+		if (file.length < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new InvalidProjectFileException("not a ClearDialogue journal");
+		}
+
+		int formatVersion = buffer.getInt(4);
+
+		if (formatVersion != FORMAT_VERSION) {
+			throw new InvalidProjectFileException("unsupported journal format version " + formatVersion);
+		}
+
+		int snapshotLength = buffer.getInt(8);
+
+		if (snapshotLength < 0 || HEADER_SIZE + snapshotLength > file.length) {
+			throw new InvalidProjectFileException("the journal snapshot is truncated");
+		}
+
+		Project project = new ClearDialogueBinaryIO().importProject(new ByteArrayInputStream(file, HEADER_SIZE, snapshotLength));
+
+		/*
+		 * Replay the log, stopping at the first save that didn't make it to the disk in one piece
+		 */
+
+		int logStart = HEADER_SIZE + snapshotLength;
+		int position = logStart;
+
+		while (position + BATCH_HEADER_SIZE <= file.length) {
+			int length = buffer.getInt(position);
+			int crc = buffer.getInt(position + 4);
+			int payloadStart = position + BATCH_HEADER_SIZE;
+
+			if (length < 0 || length > file.length - payloadStart || crc(file, payloadStart, length) != crc) {
+				break;
+			}
+
+			applyChanges(new DataInputStream(new ByteArrayInputStream(file, payloadStart, length)), project);
+			position = payloadStart + length;
+		}
+
+		project.trackChanges();
+
+		JournalState state = new JournalState();
+		state.record(project);
+		state.logStart = logStart;
+		state.logEnd = position;
+		state.fileLength = file.length;
+		putState(f.getAbsoluteFile(), state);
+
+		return project;
+	}
+
+	private static void applyChanges(DataInput in, Project project) throws Exception {
+		int numRecords = ClearDialogueBinaryIO.readVarInt(in);
+
+		for (int i = 0; i < numRecords; i++) {
+			byte type = in.readByte();
+
+			switch (type) {
+			case RECORD_PROJECT:
+				project.setName(readString(in));
+				project.setViewportX(in.readFloat());
+				project.setViewportY(in.readFloat());
+				project.setViewportScale(in.readFloat());
+				break;
+			case RECORD_PUT_NODE:
+				putNode(project, readNode(in, project));
+				break;
+			case RECORD_REMOVE_NODE:
+				Dialogue removed = project.getDialogue(readString(in));
+
+				if (removed != null) {
+					project.removeDialogue(removed);
+				}
+				break;
+			case RECORD_CONNECT:
+			case RECORD_DISCONNECT:
+				DialogueConnector connector1 = project.getDialogueConnector(readString(in));
+				DialogueConnector connector2 = project.getDialogueConnector(readString(in));
+
+				if (connector1 == null || connector2 == null) {
+					break;
+				}
+
+				if (type == RECORD_DISCONNECT) {
+					project.disconnect(connector1, connector2);
+				} else if (!project.isConnected(connector1, connector2)) {
+					project.addConnection(new Connection(connector1, connector2));
+				}
+				break;
+			default:
+				throw new InvalidProjectFileException("unknown journal record type " + type);
+			}
+		}
+	}
+
+	/**
+	 * Adds the node to the Project, or updates the node with the same UID. Existing nodes are updated in place when their connectors haven't changed
+	 * (I.E. a text edit or a move), so that their connections are left alone. Otherwise they're swapped out with <code>Project.replaceDialogue()</code>.
+	 */
+	private static void putNode(Project project, Dialogue node) {
+		Dialogue existing = project.getDialogue(node.getUID());
+
+		if (existing == null) {
+			project.addDialogue(node);
+			return;
+		}
+
+		if (!hasSameConnectors(existing, node)) {
+			project.replaceDialogue(existing, node);
+			return;
+		}
+
+		existing.setTitle(node.getTitle());
+		existing.setTags(node.getTags());
+		existing.setPosition(node.getX(), node.getY());
+		existing.setExpanded(node.isExpanded());
+
+		if (existing instanceof DialogueText) {
+			((DialogueText) existing).setText(((DialogueText) node).getText());
+		} else {
+			ArrayList<Response> existingResponses = ((DialogueResponse) existing).getResponses();
+			ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+
+			for (int i = 0; i < responses.size(); i++) {
+				existingResponses.get(i).setText(responses.get(i).getText());
+			}
+		}
+	}
+
+	private static boolean hasSameConnectors(Dialogue existing, Dialogue node) {
+		if (existing.getClass() != node.getClass()) {
+			return false;
+		}
+
+		ArrayList<DialogueConnector> existingConnectors = existing.getAllConnectors();
+		ArrayList<DialogueConnector> connectors = node.getAllConnectors();
+
+		if (existingConnectors.size() != connectors.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < connectors.size(); i++) {
+			if (!existingConnectors.get(i).getUID().equals(connectors.get(i).getUID())) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static Dialogue readNode(DataInput in, Project project) throws Exception {
+		byte type = in.readByte();
+
+		String uid = readString(in);
+		String name = readString(in);
+		String tag = readString(in);
+		float nodeX = in.readFloat();
+		float nodeY = in.readFloat();
+		boolean expanded = in.readBoolean();
+		String inConnectorUID = readString(in);
+
+		if (type == NODE_TYPE_TEXT) {
+			DialogueText node = new DialogueText(project, uid, name, tag, nodeX, nodeY, expanded, readString(in));
+			node.setInConnector(new DialogueConnector(project, node, inConnectorUID));
+			node.setOutConnector(new DialogueConnector(project, node, readString(in)));
+			return node;
+		}
+
+		if (type == NODE_TYPE_RESPONSE) {
+			DialogueResponse node = new DialogueResponse(project, uid, name, tag, nodeX, nodeY, expanded);
+			node.setInConnector(new DialogueConnector(project, node, inConnectorUID));
+
+			int numResponses = ClearDialogueBinaryIO.readVarInt(in);
+
+			for (int j = 0; j < numResponses; j++) {
+				String text = readString(in);
+				node.addResponse(text, readString(in));
+			}
+
+			return node;
+		}
+
+		throw new InvalidProjectFileException("unknown node type " + type + " for node \"" + name + "\"");
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		int length = ClearDialogueBinaryIO.readVarInt(in) - 1;
+
+		if (length < 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int crc(byte[] bytes, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, offset, length);
+		return (int) crc.getValue();
+	}
+
+	private static String connectionKey(String connector1UID, String connector2UID) {
+		return connector1UID + '\u0000' + connector2UID;
+	}
+
+	/*
+	 *
+	 * Saved state
+	 *
+	 */
+
+	private Object getFileLock(File f) {
+		return fileLocks[(f.getAbsoluteFile().hashCode() & Integer.MAX_VALUE) % fileLocks.length];
+	}
+
+	private JournalState getState(File key) {
+		synchronized (states) {
+			return states.get(key);
+		}
+	}
+
+	private void putState(File key, JournalState state) {
+		synchronized (states) {
+			states.put(key, state);
+		}
+	}
+
+	private void removeState(File key) {
+		synchronized (states) {
+			states.remove(key);
+		}
+	}
+
+	@Override
+	public String getTypeName() {
+		return "CDJ";
+	}
+
+	/**
+	 * What a journal file holds as of the last save or load: the project data, and either the change log and modification count it was saved at, or
+	 * (for Projects whose changes aren't tracked) the content hash of every node and every connection.
+	 */
+	private static class JournalState {
+		private ProjectChangeLog changeLog;
+		private long savedModificationCount;
+
+		private HashMap<String, Long> nodeHashes;
+		private ArrayList<String[]> connections;
+		private HashSet<String> connectionKeys;
+
+		private String name;
+		private float viewportX, viewportY, viewportScale;
+
+		//Byte offsets into the file
+		private long logStart, logEnd, fileLength;
+
+		private void record(Project project) {
+			recordProject(project);
+
+			ProjectChangeLog changeLog = project.getChangeLog();
+			long modificationCount = project.getModificationCount();
+
+			if (changeLog != null && changeLog.isCompleteSince(modificationCount)) {
+				this.changeLog = changeLog;
+				savedModificationCount = modificationCount;
+				return;
+			}
+
+			recordConnections(project);
+
+			nodeHashes = new HashMap<String, Long>(project.getNumDialogue() * 2);
+
+			for (int i = 0; i < project.getNumDialogue(); i++) {
+				Dialogue node = project.getDialogue(i);
+				nodeHashes.put(node.getUID(), node.getContentHash());
+			}
+		}
+
+		private void recordProject(Project project) {
+			name = project.getName();
+			viewportX = project.getViewportX();
+			viewportY = project.getViewportY();
+			viewportScale = project.getViewportScale();
+		}
+
+		private void recordConnections(Project project) {
+			connections = new ArrayList<String[]>(project.getNumConnections());
+			connectionKeys = new HashSet<String>(project.getNumConnections() * 2);
+
+			for (int i = 0; i < project.getNumConnections(); i++) {
+				Connection c = project.getConnection(i);
+				String[] connection = new String[] { c.getConnector1().getUID(), c.getConnector2().getUID() };
+
+				connections.add(connection);
+				connectionKeys.add(connectionKey(connection[0], connection[1]));
+			}
+		}
+
+		/**
+		 * Drops the changes that this state has saved from the change log, once they're safely in the file.
+		 */
+		private void discardSavedChanges() {
+			if (changeLog != null) {
+				changeLog.discard(savedModificationCount);
+			}
+		}
+
+		private boolean hasSameProjectData(JournalState other) {
+			return ((name != null ? name.equals(other.name) : other.name == null)
+					&& Float.floatToIntBits(viewportX) == Float.floatToIntBits(other.viewportX)
+					&& Float.floatToIntBits(viewportY) == Float.floatToIntBits(other.viewportY)
+					&& Float.floatToIntBits(viewportScale) == Float.floatToIntBits(other.viewportScale));
+		}
+	}
+}
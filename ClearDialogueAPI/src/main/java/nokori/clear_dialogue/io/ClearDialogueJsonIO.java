@@ -1,23 +1,24 @@
 package nokori.clear_dialogue.io;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.StringWriter;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 
 import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonArrayBuilder;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
-import javax.json.JsonReader;
-import javax.json.JsonWriter;
-import javax.json.JsonWriterFactory;
+import javax.json.JsonException;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
+import javax.json.stream.JsonParsingException;
 
 import nokori.clear_dialogue.project.Connection;
 import nokori.clear_dialogue.project.Dialogue;
@@ -28,50 +29,132 @@ import nokori.clear_dialogue.project.Project;
 import nokori.clear_dialogue.project.DialogueResponse.Response;
 import nokori.clear_dialogue.throwable.FailedToFindConnectorsException;
 import nokori.clear_dialogue.throwable.FailedToInstantiateNodeException;
+import nokori.clear_dialogue.throwable.InvalidProjectFileException;
 
 public class ClearDialogueJsonIO implements ClearDialogueIO {
-
-
-
+	
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	
+	//The factories are cached since looking up the JSON provider is expensive
+	private static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(null);
+	private static final JsonGeneratorFactory PRETTY_GENERATOR_FACTORY = Json.createGeneratorFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true));
+	private static final JsonGeneratorFactory COMPACT_GENERATOR_FACTORY = Json.createGeneratorFactory(null);
+	
+	private boolean prettyPrinting;
+	
+	//How many previous versions of a file are kept when it's overwritten (see AtomicFileWriter)
+	private int numRecoveryCopies = 0;
+	
+	/**
+	 * Creates a JSON I/O that exports human-readable (pretty printed) files.
+	 */
+	public ClearDialogueJsonIO() {
+		this(true);
+	}
+	
+	/**
+	 * @param prettyPrinting - if false, exported files are written without any whitespace, which is smaller and faster (I.E. for shipping builds)
+	 */
+	public ClearDialogueJsonIO(boolean prettyPrinting) {
+		this.prettyPrinting = prettyPrinting;
+	}
+	
+	/**
+	 * Sets how many previous versions of a file are kept as recovery copies when it's overwritten (see AtomicFileWriter). The default is 0.
+	 */
+	public void setNumRecoveryCopies(int numRecoveryCopies) {
+		this.numRecoveryCopies = AtomicFileWriter.checkNumRecoveryCopies(numRecoveryCopies);
+	}
+	
+	public int getNumRecoveryCopies() {
+		return numRecoveryCopies;
+	}
 	
 	@Override
 	public void exportProject(Project project, File f) throws Exception {
-
+		exportProject(project, f, new IOProgress());
+	}
+	
+	@Override
+	public void exportProject(Project project, File f, IOProgress progress) throws Exception {
+		AtomicFileWriter.write(f, numRecoveryCopies, new AtomicFileWriter.WriteAction() {
+			
+			@Override
+			public void write(OutputStream out) throws Exception {
+				exportProject(project, new BufferedOutputStream(out, WRITE_BUFFER_SIZE), progress);
+			}
+		});
+	}
+	
+	/**
+	 * Writes the Project to the given stream as UTF-8 JSON. The stream is flushed, but not closed.
+	 */
+	public void exportProject(Project project, OutputStream out) throws Exception {
+		exportProject(project, out, new IOProgress());
+	}
+	
+	/**
+	 * Writes the Project to the given stream as UTF-8 JSON, reporting progress as it goes. The stream is flushed, but not closed.
+	 */
+	public void exportProject(Project project, OutputStream out, IOProgress progress) throws Exception {
+		JsonGeneratorFactory generatorFactory = (prettyPrinting ? PRETTY_GENERATOR_FACTORY : COMPACT_GENERATOR_FACTORY);
+		
+		JsonGenerator generator = generatorFactory.createGenerator(out, StandardCharsets.UTF_8);
+		exportProject(project, generator, progress);
+		
+		//Closing the generator would also close the stream, so it's only flushed here
+		generator.flush();
+	}
+	
+	/**
+	 * Writes the Project as a JSON object to the given JsonGenerator.
+	 */
+	public void exportProject(Project project, JsonGenerator generator) throws Exception {
+		exportProject(project, generator, new IOProgress());
+	}
+	
+	/**
+	 * Writes the Project as a JSON object to the given JsonGenerator, reporting progress as it goes.
+	 */
+	public void exportProject(Project project, JsonGenerator generator, IOProgress progress) throws Exception {
+		progress.setTotals(project.getNumDialogue(), project.getNumConnections());
+		progress.checkCancelled();
+		
 		/*
 		 * Basic Project Information
 		 */
 		
-		JsonObjectBuilder projectBuilder = Json.createObjectBuilder();
+		generator.writeStartObject();
 		
-		projectBuilder.add(IOKEY_PROJECT_NAME, project.getName());
-		projectBuilder.add(IOKEY_PROJECT_VERSION, Project.CURRENT_VERSION);
+		generator.write(IOKEY_PROJECT_NAME, project.getName());
+		generator.write(IOKEY_PROJECT_VERSION, Project.CURRENT_VERSION);
 		
-		projectBuilder.add(IOKEY_PROJECT_VIEWPORT_X, project.getViewportX());
-		projectBuilder.add(IOKEY_PROJECT_VIEWPORT_Y, project.getViewportY());
-		projectBuilder.add(IOKEY_PROJECT_VIEWPORT_SCALE, project.getViewportScale());
+		writeFloat(generator, IOKEY_PROJECT_VIEWPORT_X, project.getViewportX());
+		writeFloat(generator, IOKEY_PROJECT_VIEWPORT_Y, project.getViewportY());
+		writeFloat(generator, IOKEY_PROJECT_VIEWPORT_SCALE, project.getViewportScale());
 		
 		/*
 		 * Save Nodes
 		 */
 		
-		JsonArrayBuilder nodes = Json.createArrayBuilder();
+		generator.writeStartArray(IOKEY_NODES_ARRAY);
 		
 		for (int i = 0; i < project.getNumDialogue(); i++) {
 			Dialogue node = project.getDialogue(i);
 			
-			JsonObjectBuilder nodeBuilder = Json.createObjectBuilder();
+			generator.writeStartObject();
 			
 			//Record basic data
-			nodeBuilder.add(IOKEY_UID, node.getUID());
-			nodeBuilder.add(IOKEY_TITLE, node.getTitle());
-			nodeBuilder.add(IOKEY_TAGS, node.getTags());
+			generator.write(IOKEY_UID, node.getUID());
+			generator.write(IOKEY_TITLE, node.getTitle());
+			generator.write(IOKEY_TAGS, node.getTags());
 			
-			nodeBuilder.add(IOKEY_NODE_X, node.getX());
-			nodeBuilder.add(IOKEY_NODE_Y, node.getY());
+			writeFloat(generator, IOKEY_NODE_X, node.getX());
+			writeFloat(generator, IOKEY_NODE_Y, node.getY());
 			
-			nodeBuilder.add(IOKEY_EXPANDED, node.isExpanded());
+			generator.write(IOKEY_EXPANDED, node.isExpanded());
 			
-			nodeBuilder.add(IOKEY_IN_CONNECTOR_UID, node.getInConnector().getUID());
+			generator.write(IOKEY_IN_CONNECTOR_UID, node.getInConnector().getUID());
 			
 			/*
 			 * Text Node Data
@@ -79,14 +162,14 @@ public class ClearDialogueJsonIO implements ClearDialogueIO {
 			
 			if (node instanceof DialogueText) {
 				//Store node-type for easy access in the importer
-				nodeBuilder.add(IOKEY_NODE_TYPE, IOKEY_NODE_TYPE_DIALOGUE);
+				generator.write(IOKEY_NODE_TYPE, IOKEY_NODE_TYPE_DIALOGUE);
 				
 				//Store text of node
 				DialogueText textNode = (DialogueText) node;
-				nodeBuilder.add(IOKEY_TEXT, textNode.getText());
+				generator.write(IOKEY_TEXT, textNode.getText());
 				
 				//Store the out-connector
-				nodeBuilder.add(IOKEY_OUT_CONNECTOR_UID, textNode.getOutConnector().getUID());
+				generator.write(IOKEY_OUT_CONNECTOR_UID, textNode.getOutConnector().getUID());
 			}
 			
 			/*
@@ -95,35 +178,36 @@ public class ClearDialogueJsonIO implements ClearDialogueIO {
 			
 			if (node instanceof DialogueResponse) {
 				//Store node-type
-				nodeBuilder.add(IOKEY_NODE_TYPE, IOKEY_NODE_TYPE_RESPONSE);
+				generator.write(IOKEY_NODE_TYPE, IOKEY_NODE_TYPE_RESPONSE);
 				
-				JsonArrayBuilder responsesBuilder = Json.createArrayBuilder();
+				generator.writeStartArray(IOKEY_RESPONSES_ARRAY);
 				
-				//Insert each response into the responsesBuilder
+				//Write each response into the responses array
 				ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
 				
 				for (int j = 0; j < responses.size(); j++) {
 					Response response = responses.get(j);
 					
-					JsonObjectBuilder responseBuilder = Json.createObjectBuilder();
+					generator.writeStartObject();
 					
 					//Response text
-					responseBuilder.add(IOKEY_TEXT, response.getText());
+					generator.write(IOKEY_TEXT, response.getText());
 					
 					//Response out-connector
-					responseBuilder.add(IOKEY_OUT_CONNECTOR_UID, response.getOutConnector().getUID());
+					generator.write(IOKEY_OUT_CONNECTOR_UID, response.getOutConnector().getUID());
 					
-					//Store in responsesBuilder
-					responsesBuilder.add(responseBuilder);
+					generator.writeEnd();
 				}
 				
-				nodeBuilder.add(IOKEY_RESPONSES_ARRAY, responsesBuilder);
+				generator.writeEnd();
 			}
 			
-			nodes.add(nodeBuilder);
+			generator.writeEnd();
+			
+			progress.nodeProcessed();
 		}
 		
-		projectBuilder.add(IOKEY_NODES_ARRAY, nodes);
+		generator.writeEnd();
 		
 		/*
 		 * 
@@ -131,167 +215,582 @@ public class ClearDialogueJsonIO implements ClearDialogueIO {
 		 * 
 		 */
 		
-		JsonArrayBuilder connections = Json.createArrayBuilder();
+		generator.writeStartArray(IOKEY_CONNECTIONS_ARRAY);
 		
 		for (int i = 0; i < project.getNumConnections(); i++) {
 			Connection connection = project.getConnection(i);
 			
-			JsonObjectBuilder connectionBuilder = Json.createObjectBuilder();
+			generator.writeStartObject();
 			
 			//Record basic data
-			connectionBuilder.add(IOKEY_CONNECTOR_1_UID, connection.getConnector1().getUID());
-			connectionBuilder.add(IOKEY_CONNECTOR_2_UID, connection.getConnector2().getUID());
+			generator.write(IOKEY_CONNECTOR_1_UID, connection.getConnector1().getUID());
+			generator.write(IOKEY_CONNECTOR_2_UID, connection.getConnector2().getUID());
+			
+			generator.writeEnd();
 			
-			connections.add(connectionBuilder);
+			progress.connectionProcessed();
 		}
 		
-		projectBuilder.add(IOKEY_CONNECTIONS_ARRAY, connections);
+		generator.writeEnd();
 		
-		/*
-		 * Final Export / Write file
-		 */
+		generator.writeEnd();
 		
-		JsonObject export = projectBuilder.build();
-
-		StringWriter stringWriter = new StringWriter();
-
-		HashMap<String, Object> properties = new HashMap<>(1);
-		properties.put(JsonGenerator.PRETTY_PRINTING, true);
-
-		JsonWriterFactory writerFactory = Json.createWriterFactory(properties);
-		JsonWriter jsonWriter = writerFactory.createWriter(stringWriter);
-		jsonWriter.writeObject(export);
-		jsonWriter.close();
-
-		Files.write(new File(f.getAbsolutePath()).toPath(), stringWriter.toString().getBytes(Charset.forName("UTF-8")), StandardOpenOption.CREATE);
+		progress.finish(project);
+	}
+	
+	/**
+	 * Floats are written the same way a JsonObjectBuilder would write them, so that files stay identical to the ones made by older versions.
+	 */
+	private static void writeFloat(JsonGenerator generator, String key, float value) {
+		generator.write(key, BigDecimal.valueOf(value));
 	}
 	
+	public boolean isPrettyPrinting() {
+		return prettyPrinting;
+	}
+	
+	/*
+	 * 
+	 * Importing is done with a streaming JsonParser, so that the Dialogue are built as the file is read instead of loading the entire JSON tree 
+	 * into memory first. Keys can be in any order; the Connections are resolved once the whole file has been read.
+	 * 
+	 */
+	
 	@Override
 	public Project importProject(File f) throws Exception {
-
-		FileInputStream inputStream = new FileInputStream(f);
-		JsonReader jsonReader = Json.createReader(inputStream);
-
+		return importProject(f, new IOProgress());
+	}
+	
+	@Override
+	public Project importProject(File f, IOProgress progress) throws Exception {
+		try (JsonParser parser = PARSER_FACTORY.createParser(new BufferedInputStream(new FileInputStream(f)))) {
+			return importProject(parser, progress);
+		}
+	}
+	
+	/**
+	 * Imports a Project from a JsonParser positioned before the Project's object.
+	 */
+	public Project importProject(JsonParser parser) throws Exception {
+		return importProject(parser, new IOProgress());
+	}
+	
+	/**
+	 * Imports a Project from a JsonParser positioned before the Project's object, reporting progress as it goes. The totals aren't known until the 
+	 * whole file has been read.
+	 */
+	public Project importProject(JsonParser parser, IOProgress progress) throws Exception {
+		return importProject(parser, progress, null);
+	}
+	
+	/**
+	 * Imports only the entries and the nodes reachable from them. The file is read twice: a quick first pass that skips all of the text works out 
+	 * which nodes are needed, and the second pass only builds those, skipping over the rest.
+	 */
+	@Override
+	public Project importProject(File f, EntryPoints entries) throws Exception {
+		boolean[] include = findReachableNodes(f, entries);
+		
+		try (JsonParser parser = PARSER_FACTORY.createParser(new BufferedInputStream(new FileInputStream(f)))) {
+			return importProject(parser, new IOProgress(), include);
+		}
+	}
+	
+	/**
+	 * @param include - which nodes (by their position in the file) to build, or null for all of them. Connections to nodes that aren't built are left out.
+	 */
+	private Project importProject(JsonParser parser, IOProgress progress, boolean[] include) throws Exception {
+		progress.checkCancelled();
+		expect(parser, Event.START_OBJECT);
+		
+		Project project = new Project();
+		
+		boolean hasVersion = false, hasName = false;
+		ArrayList<String> connectionUIDs = new ArrayList<String>();
+		
 		/*
 		 * Project Data
 		 */
-		JsonObject projectObject = jsonReader.readObject();
-
-		int projectVersion = projectObject.getInt(IOKEY_PROJECT_VERSION);
 		
-		String projectName = projectObject.getString(IOKEY_PROJECT_NAME);
-
-		float viewportX = (float) projectObject.getJsonNumber(IOKEY_PROJECT_VIEWPORT_X).doubleValue();
-		float viewportY = (float) projectObject.getJsonNumber(IOKEY_PROJECT_VIEWPORT_Y).doubleValue();
-		float viewportScale = (float) projectObject.getJsonNumber(IOKEY_PROJECT_VIEWPORT_SCALE).doubleValue();
-
-		Project project = new Project(projectVersion, projectName, viewportX, viewportY, viewportScale);
-
-		/*
-		 * Node Data
-		 */
-
-		JsonArray nodeArray = projectObject.getJsonArray(IOKEY_NODES_ARRAY);
-
-		for (int i = 0; i < nodeArray.size(); i++) {
-			JsonObject nodeObject = nodeArray.getJsonObject(i);
-
-			// Load basic shared data
-			String uid = nodeObject.getString(IOKEY_UID);
-			String name = nodeObject.getString(IOKEY_TITLE);
-			String tag = nodeObject.getString(IOKEY_TAGS);
-
-			float nodeX = (float) nodeObject.getJsonNumber(IOKEY_NODE_X).doubleValue();
-			float nodeY = (float) nodeObject.getJsonNumber(IOKEY_NODE_Y).doubleValue();
+		while (nextKey(parser)) {
+			String key = parser.getString();
 			
-			boolean expanded = nodeObject.getBoolean(IOKEY_EXPANDED);
-
-			Dialogue node = null;
-
-			// Load type-specific data
-			String type = nodeObject.getString(IOKEY_NODE_TYPE);
-
-			// Dialogue-type
-			if (type.equals(IOKEY_NODE_TYPE_DIALOGUE)) {
-				node = new DialogueText(project, uid, name, tag, nodeX, nodeY, expanded, nodeObject.getString(IOKEY_TEXT));
-
-				String outConnectorUID = nodeObject.getString(IOKEY_OUT_CONNECTOR_UID);
-				((DialogueText) node).setOutConnector(new DialogueConnector(project, node, outConnectorUID));
-			}
-
-			// Response-type
-			if (type.equals(IOKEY_NODE_TYPE_RESPONSE)) {
-				node = new DialogueResponse(project, uid, name, tag, nodeX, nodeY, expanded);
-				DialogueResponse responseNode = (DialogueResponse) node;
-
-				JsonArray responseArray = nodeObject.getJsonArray(IOKEY_RESPONSES_ARRAY);
-
-				for (int j = 0; j < responseArray.size(); j++) {
-					JsonObject responseObject = responseArray.getJsonObject(j);
-
-					String text = responseObject.getString(IOKEY_TEXT);
-					String outConnectorUID = responseObject.getString(IOKEY_OUT_CONNECTOR_UID);
-
-					responseNode.addResponse(text, outConnectorUID);
+			switch (key) {
+			case IOKEY_PROJECT_VERSION:
+				project.setVersion(readInt(parser));
+				hasVersion = true;
+				break;
+			case IOKEY_PROJECT_NAME:
+				project.setName(readString(parser));
+				hasName = true;
+				break;
+			case IOKEY_PROJECT_VIEWPORT_X:
+				project.setViewportX(readFloat(parser));
+				break;
+			case IOKEY_PROJECT_VIEWPORT_Y:
+				project.setViewportY(readFloat(parser));
+				break;
+			case IOKEY_PROJECT_VIEWPORT_SCALE:
+				project.setViewportScale(readFloat(parser));
+				break;
+			case IOKEY_NODES_ARRAY:
+				expect(parser, Event.START_ARRAY);
+				
+				for (int i = 0; nextElement(parser, Event.START_OBJECT); i++) {
+					if (include != null && (i >= include.length || !include[i])) {
+						skipObject(parser);
+						continue;
+					}
+					
+					Dialogue node = readNode(parser, project);
+					
+					if (project.getDialogue(node.getUID()) != null) {
+						throw new InvalidProjectFileException("more than one node has the UID \"" + node.getUID() + "\"");
+					}
+					
+					project.addDialogue(node);
+					progress.nodeProcessed();
 				}
-			}
-
-			// Finalize
-			if (node != null) {
-				// Set in-connector now that node is instantiated
-				String inConnectorUID = nodeObject.getString(IOKEY_IN_CONNECTOR_UID);
-				node.setInConnector(new DialogueConnector(project, node, inConnectorUID));
-
-				// Add node to project
-				project.addDialogue(node);
-			} else {
-				throw new FailedToInstantiateNodeException(name);
+				
+				break;
+			case IOKEY_CONNECTIONS_ARRAY:
+				expect(parser, Event.START_ARRAY);
+				
+				while (nextElement(parser, Event.START_OBJECT)) {
+					readConnection(parser, connectionUIDs);
+				}
+				
+				break;
+			default:
+				skipValue(parser);
+				break;
 			}
 		}
-
+		
+		if (!hasVersion) {
+			throw missingKey(IOKEY_PROJECT_VERSION);
+		}
+		
+		if (!hasName) {
+			throw missingKey(IOKEY_PROJECT_NAME);
+		}
+		
 		/*
 		 * Connection data
 		 */
-
-		JsonArray connectionsArray = projectObject.getJsonArray(IOKEY_CONNECTIONS_ARRAY);
-
-		for (int i = 0; i < connectionsArray.size(); i++) {
-			JsonObject connectionObject = connectionsArray.getJsonObject(i);
-
+		
+		for (int i = 0; i < connectionUIDs.size(); i += 2) {
 			// Get the connector UIDs of the Connection
-			String connector1UID = connectionObject.getString(IOKEY_CONNECTOR_1_UID);
-			String connector2UID = connectionObject.getString(IOKEY_CONNECTOR_2_UID);
-
+			String connector1UID = connectionUIDs.get(i);
+			String connector2UID = connectionUIDs.get(i + 1);
+			
 			// Build a Connection from the UIDs
 			DialogueConnector connector1 = project.getDialogueConnector(connector1UID);
 			DialogueConnector connector2 = project.getDialogueConnector(connector2UID);
-
+			
 			if (connector1 != null && connector2 != null) {
 				
 				Connection connection = new Connection(connector1, connector2);
 				project.addConnection(connection);
+				progress.connectionProcessed();
 				
+			} else if (include != null) {
+				//One of the nodes wasn't imported, so the Connection isn't needed
+				continue;
 			} else {
 				String missingUIDs = "";
-
+				
 				if (connector1 == null) {
 					missingUIDs += "\n" + connector1UID;
 				}
-
+				
 				if (connector2 == null) {
 					missingUIDs += "\n" + connector2UID;
 				}
-
+				
 				throw new FailedToFindConnectorsException(missingUIDs);
 			}
 		}
-
+		
 		/*
 		 * Finish
 		 */
-
+		
+		progress.finish(project);
+		
 		return project;
+	}
+	
+	/**
+	 * Reads a node object. The parser should be positioned on the START_OBJECT of the node.
+	 */
+	private static Dialogue readNode(JsonParser parser, Project project) throws Exception {
+		String uid = null, name = null, tag = null, type = null, text = null;
+		String inConnectorUID = null, outConnectorUID = null;
+		float nodeX = 0f, nodeY = 0f;
+		boolean expanded = false;
+		
+		//Text and out-connector UID of each response, in pairs
+		ArrayList<String> responses = null;
+		
+		while (nextKey(parser)) {
+			String key = parser.getString();
+			
+			switch (key) {
+			case IOKEY_UID:
+				uid = readString(parser);
+				break;
+			case IOKEY_TITLE:
+				name = readString(parser);
+				break;
+			case IOKEY_TAGS:
+				tag = readString(parser);
+				break;
+			case IOKEY_NODE_X:
+				nodeX = readFloat(parser);
+				break;
+			case IOKEY_NODE_Y:
+				nodeY = readFloat(parser);
+				break;
+			case IOKEY_EXPANDED:
+				expanded = readBoolean(parser);
+				break;
+			case IOKEY_IN_CONNECTOR_UID:
+				inConnectorUID = readString(parser);
+				break;
+			case IOKEY_NODE_TYPE:
+				type = readString(parser);
+				break;
+			case IOKEY_TEXT:
+				text = readString(parser);
+				break;
+			case IOKEY_OUT_CONNECTOR_UID:
+				outConnectorUID = readString(parser);
+				break;
+			case IOKEY_RESPONSES_ARRAY:
+				expect(parser, Event.START_ARRAY);
+				responses = new ArrayList<String>();
+				
+				while (nextElement(parser, Event.START_OBJECT)) {
+					String responseText = null, responseOutConnectorUID = null;
+					
+					while (nextKey(parser)) {
+						String responseKey = parser.getString();
+						
+						if (responseKey.equals(IOKEY_TEXT)) {
+							responseText = readString(parser);
+						} else if (responseKey.equals(IOKEY_OUT_CONNECTOR_UID)) {
+							responseOutConnectorUID = readString(parser);
+						} else {
+							skipValue(parser);
+						}
+					}
+					
+					responses.add(require(responseText, IOKEY_TEXT));
+					responses.add(require(responseOutConnectorUID, IOKEY_OUT_CONNECTOR_UID));
+				}
+				
+				break;
+			default:
+				skipValue(parser);
+				break;
+			}
+		}
+		
+		require(uid, IOKEY_UID);
+		require(name, IOKEY_TITLE);
+		require(tag, IOKEY_TAGS);
+		require(inConnectorUID, IOKEY_IN_CONNECTOR_UID);
+		
+		Dialogue node = null;
+		
+		// Dialogue-type
+		if (IOKEY_NODE_TYPE_DIALOGUE.equals(type)) {
+			node = new DialogueText(project, uid, name, tag, nodeX, nodeY, expanded, require(text, IOKEY_TEXT));
+			((DialogueText) node).setOutConnector(new DialogueConnector(project, node, require(outConnectorUID, IOKEY_OUT_CONNECTOR_UID)));
+		}
+		
+		// Response-type
+		if (IOKEY_NODE_TYPE_RESPONSE.equals(type)) {
+			node = new DialogueResponse(project, uid, name, tag, nodeX, nodeY, expanded);
+			DialogueResponse responseNode = (DialogueResponse) node;
+			
+			require(responses, IOKEY_RESPONSES_ARRAY);
+			
+			for (int i = 0; i < responses.size(); i += 2) {
+				responseNode.addResponse(responses.get(i), responses.get(i + 1));
+			}
+		}
+		
+		// Finalize
+		if (node == null) {
+			throw new FailedToInstantiateNodeException(name);
+		}
+		
+		// Set in-connector now that node is instantiated
+		node.setInConnector(new DialogueConnector(project, node, inConnectorUID));
+		
+		return node;
+	}
+	
+	/**
+	 * Reads just enough of the file to tell which nodes are entries and how they're connected, and returns which nodes are reachable from the entries.
+	 */
+	private static boolean[] findReachableNodes(File f, EntryPoints entries) throws Exception {
+		EntryPoints.NodeGraph graph = new EntryPoints.NodeGraph();
+		
+		//The node that each connector belongs to, shifted left by one, plus one if it's the node's in-connector
+		HashMap<String, Integer> connectors = new HashMap<String, Integer>();
+		ArrayList<String> connectionUIDs = new ArrayList<String>();
+		
+		try (JsonParser parser = PARSER_FACTORY.createParser(new BufferedInputStream(new FileInputStream(f)))) {
+			expect(parser, Event.START_OBJECT);
+			
+			while (nextKey(parser)) {
+				String key = parser.getString();
+				
+				if (key.equals(IOKEY_NODES_ARRAY)) {
+					expect(parser, Event.START_ARRAY);
+					
+					while (nextElement(parser, Event.START_OBJECT)) {
+						scanNode(parser, entries, graph, connectors);
+					}
+				} else if (key.equals(IOKEY_CONNECTIONS_ARRAY)) {
+					expect(parser, Event.START_ARRAY);
+					
+					while (nextElement(parser, Event.START_OBJECT)) {
+						readConnection(parser, connectionUIDs);
+					}
+				} else {
+					skipValue(parser);
+				}
+			}
+		}
+		
+		for (int i = 0; i < connectionUIDs.size(); i += 2) {
+			Integer connector1 = connectors.get(connectionUIDs.get(i));
+			Integer connector2 = connectors.get(connectionUIDs.get(i + 1));
+			
+			if (connector1 == null || connector2 == null) {
+				continue;
+			}
+			
+			//Connections lead from an out-connector into an in-connector
+			if ((connector1 & 1) == 0) {
+				graph.addEdge(connector1 >> 1, connector2 >> 1);
+			}
+			
+			if ((connector2 & 1) == 0) {
+				graph.addEdge(connector2 >> 1, connector1 >> 1);
+			}
+		}
+		
+		return graph.findReachable();
+	}
+	
+	/**
+	 * Reads the title, tags, and connector UIDs of a node into the NodeGraph, skipping everything else. The parser should be positioned on the START_OBJECT of the node.
+	 */
+	private static void scanNode(JsonParser parser, EntryPoints entries, EntryPoints.NodeGraph graph, HashMap<String, Integer> connectors) {
+		int node = graph.getNumNodes();
+		String title = null, tags = null;
+		
+		while (nextKey(parser)) {
+			String key = parser.getString();
+			
+			switch (key) {
+			case IOKEY_TITLE:
+				title = readString(parser);
+				break;
+			case IOKEY_TAGS:
+				tags = readString(parser);
+				break;
+			case IOKEY_IN_CONNECTOR_UID:
+				connectors.put(readString(parser), (node << 1) | 1);
+				break;
+			case IOKEY_OUT_CONNECTOR_UID:
+				connectors.put(readString(parser), node << 1);
+				break;
+			case IOKEY_RESPONSES_ARRAY:
+				expect(parser, Event.START_ARRAY);
+				
+				while (nextElement(parser, Event.START_OBJECT)) {
+					while (nextKey(parser)) {
+						if (parser.getString().equals(IOKEY_OUT_CONNECTOR_UID)) {
+							connectors.put(readString(parser), node << 1);
+						} else {
+							skipValue(parser);
+						}
+					}
+				}
+				
+				break;
+			default:
+				skipValue(parser);
+				break;
+			}
+		}
+		
+		graph.addNode(entries.isEntry(title, tags));
+	}
+	
+	/**
+	 * Reads a connection object and stores its two connector UIDs. The parser should be positioned on the START_OBJECT of the connection.
+	 */
+	private static void readConnection(JsonParser parser, ArrayList<String> connectionUIDs) {
+		String connector1UID = null, connector2UID = null;
+		
+		while (nextKey(parser)) {
+			String key = parser.getString();
 			
+			if (key.equals(IOKEY_CONNECTOR_1_UID)) {
+				connector1UID = readString(parser);
+			} else if (key.equals(IOKEY_CONNECTOR_2_UID)) {
+				connector2UID = readString(parser);
+			} else {
+				skipValue(parser);
+			}
+		}
+		
+		connectionUIDs.add(require(connector1UID, IOKEY_CONNECTOR_1_UID));
+		connectionUIDs.add(require(connector2UID, IOKEY_CONNECTOR_2_UID));
+	}
+	
+	/*
+	 * 
+	 * JsonParser utilities
+	 * 
+	 */
+	
+	/**
+	 * Moves to the next key of the current object.
+	 * 
+	 * @return false once the end of the object has been reached
+	 */
+	private static boolean nextKey(JsonParser parser) {
+		return (next(parser) == Event.KEY_NAME);
+	}
+	
+	/**
+	 * Moves to the next element of the current array, which is expected to be the given type.
+	 * 
+	 * @return false once the end of the array has been reached
+	 */
+	private static boolean nextElement(JsonParser parser, Event type) {
+		Event event = next(parser);
+		
+		if (event == Event.END_ARRAY) {
+			return false;
+		}
+		
+		if (event != type) {
+			throw unexpected(parser, event);
+		}
+		
+		return true;
+	}
+	
+	private static void expect(JsonParser parser, Event type) {
+		Event event = next(parser);
+		
+		if (event != type) {
+			throw unexpected(parser, event);
+		}
+	}
+	
+	private static Event next(JsonParser parser) {
+		if (!parser.hasNext()) {
+			throw new JsonParsingException("Unexpected end of JSON", parser.getLocation());
+		}
+		
+		return parser.next();
+	}
+	
+	private static String readString(JsonParser parser) {
+		Event event = next(parser);
+		
+		if (event == Event.VALUE_STRING) {
+			return parser.getString();
+		}
+		
+		if (event == Event.VALUE_NULL) {
+			return null;
+		}
+		
+		throw unexpected(parser, event);
+	}
+	
+	private static int readInt(JsonParser parser) {
+		expect(parser, Event.VALUE_NUMBER);
+		return parser.getInt();
+	}
+	
+	/**
+	 * Floats are parsed straight from the number's text instead of going through BigDecimal.
+	 */
+	private static float readFloat(JsonParser parser) {
+		expect(parser, Event.VALUE_NUMBER);
+		return Float.parseFloat(parser.getString());
+	}
+	
+	private static boolean readBoolean(JsonParser parser) {
+		Event event = next(parser);
+		
+		if (event == Event.VALUE_TRUE || event == Event.VALUE_FALSE) {
+			return (event == Event.VALUE_TRUE);
+		}
+		
+		throw unexpected(parser, event);
+	}
+	
+	/**
+	 * Skips the value of the current key, including any nested objects or arrays.
+	 */
+	private static void skipValue(JsonParser parser) {
+		int depth = 0;
+		
+		do {
+			Event event = next(parser);
+			
+			if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+				depth++;
+			} else if (event == Event.END_OBJECT || event == Event.END_ARRAY) {
+				depth--;
+			}
+		} while (depth > 0);
+	}
+	
+	/**
+	 * Skips the rest of an object whose START_OBJECT has already been read.
+	 */
+	private static void skipObject(JsonParser parser) {
+		int depth = 1;
+		
+		while (depth > 0) {
+			Event event = next(parser);
+			
+			if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+				depth++;
+			} else if (event == Event.END_OBJECT || event == Event.END_ARRAY) {
+				depth--;
+			}
+		}
+	}
+	
+	private static <T> T require(T value, String key) {
+		if (value == null) {
+			throw missingKey(key);
+		}
+		
+		return value;
+	}
+	
+	private static JsonException missingKey(String key) {
+		return new JsonException("Missing required key \"" + key + "\"");
+	}
+	
+	private static JsonParsingException unexpected(JsonParser parser, Event event) {
+		return new JsonParsingException("Unexpected JSON event " + event, parser.getLocation());
 	}
 
 	@Override
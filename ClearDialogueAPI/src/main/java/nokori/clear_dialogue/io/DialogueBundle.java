@@ -0,0 +1,281 @@
+package nokori.clear_dialogue.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import nokori.clear_dialogue.project.Project;
+import nokori.clear_dialogue.throwable.InvalidProjectFileException;
+
+/**
+ * A single file that holds many Projects, so that games can load their dialogue from one file instead of hundreds of small ones.
+ * 
+ * <br><br>Each Project is stored in the ClearDialogueBinaryIO format. A central directory at the end of the file maps each entry name to 
+ * its location, so opening a bundle only reads the header and the directory, and any single Project can be loaded without reading the others.
+ * 
+ * <pre>
+ * header       int magic ("CDLB"), int format version, long directory offset
+ * entries      ClearDialogueBinaryIO data per Project
+ * directory    int entry count, then per entry: int name length, UTF-8 name, long offset, int length
+ * </pre>
+ * 
+ * Use <code>DialogueBundle.bundle()</code> to build a bundle from a directory of project files, or DialogueBundle.Writer to build one by hand.
+ * DialogueBundles can be read from multiple threads at once.
+ */
+public class DialogueBundle implements Closeable {
+	
+	public static final String FILE_EXTENSION = "cdbundle";
+	
+	public static final int MAGIC = 0x43444C42; //"CDLB"
+	public static final int FORMAT_VERSION = 1;
+	
+	private static final int HEADER_SIZE = 16;
+	
+	private FileChannel channel;
+	private LinkedHashMap<String, DirectoryEntry> directory;
+	
+	private DialogueBundle(FileChannel channel, LinkedHashMap<String, DirectoryEntry> directory) {
+		this.channel = channel;
+		this.directory = directory;
+	}
+	
+	/**
+	 * Opens a bundle and reads its directory. The bundle should be closed once it's no longer needed.
+	 */
+	public static DialogueBundle open(File f) throws IOException, InvalidProjectFileException {
+		FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+		
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, 0);
+			
+			if (header.getInt(0) != MAGIC) {
+				throw new InvalidProjectFileException(f.getName() + " is not a ClearDialogue bundle");
+			}
+			
+			int formatVersion = header.getInt(4);
+			
+			if (formatVersion != FORMAT_VERSION) {
+				throw new InvalidProjectFileException("unsupported bundle format version " + formatVersion);
+			}
+			
+			long directoryOffset = header.getLong(8);
+			long directorySize = channel.size() - directoryOffset;
+			
+			if (directoryOffset < HEADER_SIZE || directorySize < 4 || directorySize > Integer.MAX_VALUE) {
+				throw new InvalidProjectFileException(f.getName() + " has an invalid bundle directory");
+			}
+			
+			ByteBuffer directoryBuffer = ByteBuffer.allocate((int) directorySize);
+			readFully(channel, directoryBuffer, directoryOffset);
+			
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(directoryBuffer.array()));
+			
+			int numEntries = in.readInt();
+			LinkedHashMap<String, DirectoryEntry> directory = new LinkedHashMap<String, DirectoryEntry>(numEntries * 2);
+			
+			for (int i = 0; i < numEntries; i++) {
+				byte[] name = new byte[in.readInt()];
+				in.readFully(name);
+				
+				directory.put(new String(name, StandardCharsets.UTF_8), new DirectoryEntry(in.readLong(), in.readInt()));
+			}
+			
+			return new DialogueBundle(channel, directory);
+			
+		} catch (IOException | InvalidProjectFileException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return the names of every Project in this bundle, in the order they were added.
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(directory.keySet());
+	}
+	
+	public boolean contains(String name) {
+		return directory.containsKey(name);
+	}
+	
+	public int getNumProjects() {
+		return directory.size();
+	}
+	
+	/**
+	 * Loads a single Project from the bundle without reading any of the others.
+	 * 
+	 * @return the Project, or null if the bundle doesn't contain one with the given name
+	 */
+	public Project load(String name) throws Exception {
+		DirectoryEntry entry = directory.get(name);
+		
+		if (entry == null) {
+			return null;
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+		readFully(channel, buffer, entry.offset);
+		
+		return new ClearDialogueBinaryIO().importProject(new ByteArrayInputStream(buffer.array()));
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			
+			if (read < 0) {
+				throw new EOFException();
+			}
+			
+			position += read;
+		}
+	}
+	
+	private static class DirectoryEntry {
+		private long offset;
+		private int length;
+		
+		public DirectoryEntry(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+	
+	/*
+	 * 
+	 * Bundling
+	 * 
+	 */
+	
+	/**
+	 * Bundles every project file (anything ClearDialogueAutoIO supports) found in the directory and its sub-directories into a single bundle. 
+	 * Each Project is named after its path relative to the directory (see <code>ProjectFileUtils.getProjectFileName()</code>).
+	 * 
+	 * @return the number of Projects that were bundled
+	 */
+	public static int bundle(File directory, File bundleFile) throws Exception {
+		ArrayList<File> files = ProjectFileUtils.findProjectFiles(directory);
+		
+		ClearDialogueAutoIO io = new ClearDialogueAutoIO();
+		
+		try (Writer writer = new Writer(bundleFile)) {
+			for (int i = 0; i < files.size(); i++) {
+				File f = files.get(i);
+				writer.add(ProjectFileUtils.getProjectFileName(directory, f), io.importProject(f));
+			}
+		}
+		
+		return files.size();
+	}
+	
+	/**
+	 * Writes Projects into a new bundle file. The directory is written when the Writer is closed.
+	 */
+	public static class Writer implements Closeable {
+		
+		private FileChannel channel;
+		private LinkedHashMap<String, DirectoryEntry> directory = new LinkedHashMap<String, DirectoryEntry>();
+		
+		private ClearDialogueBinaryIO io = new ClearDialogueBinaryIO();
+		private ByteArrayOutputStream entryBuffer = new ByteArrayOutputStream();
+		
+		public Writer(File f) throws IOException {
+			channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			
+			//The directory offset is filled in on close
+			writeFully(ByteBuffer.wrap(new byte[HEADER_SIZE]));
+		}
+		
+		/**
+		 * Adds a Project to the bundle under the given name.
+		 */
+		public void add(String name, Project project) throws IOException {
+			if (directory.containsKey(name)) {
+				throw new IllegalArgumentException("The bundle already contains a project named \"" + name + "\"");
+			}
+			
+			entryBuffer.reset();
+			io.exportProject(project, entryBuffer);
+			
+			directory.put(name, new DirectoryEntry(channel.position(), entryBuffer.size()));
+			writeFully(ByteBuffer.wrap(entryBuffer.toByteArray()));
+		}
+		
+		@Override
+		public void close() throws IOException {
+			try {
+				long directoryOffset = channel.position();
+				
+				/*
+				 * Directory
+				 */
+				
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				
+				out.writeInt(directory.size());
+				
+				for (Map.Entry<String, DirectoryEntry> e : directory.entrySet()) {
+					byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+					
+					out.writeInt(name.length);
+					out.write(name);
+					out.writeLong(e.getValue().offset);
+					out.writeInt(e.getValue().length);
+				}
+				
+				writeFully(ByteBuffer.wrap(bytes.toByteArray()));
+				
+				/*
+				 * Header
+				 */
+				
+				bytes.reset();
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(directoryOffset);
+				
+				channel.position(0);
+				writeFully(ByteBuffer.wrap(bytes.toByteArray()));
+			} finally {
+				channel.close();
+			}
+		}
+		
+		private void writeFully(ByteBuffer buffer) throws IOException {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+	
+	/**
+	 * @return true if the file has the bundle file extension.
+	 */
+	public static boolean isBundleFile(File f) {
+		return f.getName().toLowerCase(Locale.ENGLISH).endsWith("." + FILE_EXTENSION);
+	}
+}
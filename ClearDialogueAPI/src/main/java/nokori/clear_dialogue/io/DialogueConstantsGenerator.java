@@ -0,0 +1,344 @@
+package nokori.clear_dialogue.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.Project;
+import nokori.clear_dialogue.throwable.InvalidProjectFileException;
+
+/**
+ * Generates a Java class of constants for a project file, so that game code can refer to its tags and titles by compiler-checked names instead of
+ * by string. For <code>general/Shopkeeper.json</code> with the package <code>com.game.dialogue</code>, it generates:
+ *
+ * <pre>
+ * package com.game.dialogue;
+ *
+ * public final class GeneralShopkeeperDialogue {
+ *     public static final String FILE = "general/Shopkeeper";
+ *
+ *     public static final String[] TAGS = { "$DIALOGUE_START", ... };
+ *     public static final int TAG_DIALOGUE_START = 0;
+ *
+ *     public static final String[] TITLES = { "Greeting", ... };
+ *     public static final int TITLE_GREETING = 0;
+ * }
+ * </pre>
+ *
+ * The constants are dense IDs (indices into <code>TAGS</code> and <code>TITLES</code>) that are used with <code>Project.createTagIndex()</code>,
+ * <code>Project.createTitleIndex()</code>, <code>CompiledProject.indexTags()</code>, and <code>CompiledProject.indexTitles()</code>, which look
+ * nodes up by ID without scanning the Project. Every distinct tag and title in the Project gets a constant, sorted alphabetically.
+ *
+ * <br><br>Since Java inlines the constants into the code that uses them, code that uses a generated class should be compiled together with it.
+ */
+public class DialogueConstantsGenerator {
+
+	//Every key costs a few bytes of the generated class's static initializer, which Java limits to 64KB
+	public static final int MAX_KEYS = 6000;
+
+	public static final String CLASS_NAME_SUFFIX = "Dialogue";
+
+	private boolean includeTags = true;
+	private boolean includeTitles = true;
+
+	public void setIncludeTags(boolean includeTags) {
+		this.includeTags = includeTags;
+	}
+
+	/**
+	 * Leaves the titles out (I.E. for huge projects with more titles than MAX_KEYS, or that only look nodes up by tag).
+	 */
+	public void setIncludeTitles(boolean includeTitles) {
+		this.includeTitles = includeTitles;
+	}
+
+	/**
+	 * Names the generated class after the project file's name (see <code>ProjectFileUtils.getProjectFileName()</code>), I.E.
+	 * <code>general/Shopkeeper</code> becomes <code>GeneralShopkeeperDialogue</code>.
+	 */
+	public static String getClassName(String projectFileName) {
+		StringBuilder s = new StringBuilder();
+		boolean capitalize = true;
+
+		for (int i = 0; i < projectFileName.length(); i++) {
+			char c = projectFileName.charAt(i);
+
+			if (Character.isJavaIdentifierPart(c) && c != '$' && c != '_') {
+				s.append(capitalize ? Character.toUpperCase(c) : c);
+				capitalize = false;
+			} else {
+				capitalize = true;
+			}
+		}
+
+		if (s.length() == 0 || !Character.isJavaIdentifierStart(s.charAt(0))) {
+			s.insert(0, '_');
+		}
+
+		return s.append(CLASS_NAME_SUFFIX).toString();
+	}
+
+	/**
+	 * @return the source code of the constants class for the Project
+	 * @throws InvalidProjectFileException if the Project has more than MAX_KEYS tags and titles
+	 */
+	public String generate(Project project, String projectFileName, String packageName) throws InvalidProjectFileException {
+		TreeSet<String> tags = new TreeSet<String>();
+		TreeSet<String> titles = new TreeSet<String>();
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+
+			if (includeTags && node.getTags() != null && !node.getTags().isEmpty()) {
+				tags.add(node.getTags());
+			}
+
+			if (includeTitles && node.getTitle() != null && !node.getTitle().isEmpty()) {
+				titles.add(node.getTitle());
+			}
+		}
+
+		if (tags.size() + titles.size() > MAX_KEYS) {
+			throw new InvalidProjectFileException(projectFileName + " has " + tags.size() + " tags and " + titles.size() + " titles, but only "
+					+ MAX_KEYS + " constants fit in one class. Leave the titles out with setIncludeTitles(false).");
+		}
+
+		String className = getClassName(projectFileName);
+		StringBuilder s = new StringBuilder();
+
+		s.append("// Generated by ClearDialogue from ").append(escapeComment(projectFileName)).append(". Do not edit.\n");
+
+		if (packageName != null && !packageName.isEmpty()) {
+			s.append("package ").append(packageName).append(";\n");
+		}
+
+		s.append("\n");
+		s.append("/**\n");
+		s.append(" * The tags and titles of ").append(escapeComment(projectFileName)).append(".\n");
+		s.append(" */\n");
+		s.append("public final class ").append(className).append(" {\n");
+		s.append("\n");
+		s.append("\tpublic static final String FILE = \"").append(escape(projectFileName)).append("\";\n");
+
+		appendKeys(s, "TAGS", "TAG_", tags);
+		appendKeys(s, "TITLES", "TITLE_", titles);
+
+		s.append("\n");
+		s.append("\tprivate ").append(className).append("() {\n");
+		s.append("\t}\n");
+		s.append("}\n");
+
+		return s.toString();
+	}
+
+	private static void appendKeys(StringBuilder s, String arrayName, String prefix, TreeSet<String> keys) {
+		s.append("\n");
+		s.append("\tpublic static final String[] ").append(arrayName).append(" = {");
+
+		for (String key : keys) {
+			s.append("\n\t\t\"").append(escape(key)).append("\",");
+		}
+
+		s.append(keys.isEmpty() ? "};\n" : "\n\t};\n");
+
+		if (!keys.isEmpty()) {
+			s.append("\n");
+		}
+
+		HashSet<String> names = new HashSet<String>();
+		int id = 0;
+
+		for (String key : keys) {
+			String name = prefix + getConstantName(key);
+
+			//Keys that only differ in punctuation or case get numbered names
+			if (!names.add(name)) {
+				int number = 2;
+
+				while (!names.add(name + "_" + number)) {
+					number++;
+				}
+
+				name += "_" + number;
+			}
+
+			s.append("\t/** ").append(escapeComment(key)).append(" */\n");
+			s.append("\tpublic static final int ").append(name).append(" = ").append(id++).append(";\n");
+		}
+	}
+
+	/**
+	 * Turns a key into an upper case constant name, I.E. <code>$DIALOGUE_START</code> becomes <code>DIALOGUE_START</code> and <code>Greeting 2</code>
+	 * becomes <code>GREETING_2</code>.
+	 */
+	private static String getConstantName(String key) {
+		StringBuilder s = new StringBuilder();
+		boolean separator = false;
+
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+
+			if (c < 128 && Character.isLetterOrDigit(c)) {
+				if (separator && s.length() > 0) {
+					s.append('_');
+				}
+
+				s.append(Character.toUpperCase(c));
+				separator = false;
+			} else {
+				separator = true;
+			}
+		}
+
+		return (s.length() > 0 ? s.toString() : "KEY");
+	}
+
+	/**
+	 * Escapes a string for a Java string literal. Anything outside of printable ASCII is written as a unicode escape, so the generated file is
+	 * the same in any encoding.
+	 */
+	private static String escape(String s) {
+		StringBuilder escaped = new StringBuilder(s.length() + 8);
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			switch (c) {
+			case '"':
+				escaped.append("\\\"");
+				break;
+			case '\\':
+				escaped.append("\\\\");
+				break;
+			case '\n':
+				escaped.append("\\n");
+				break;
+			case '\r':
+				escaped.append("\\r");
+				break;
+			case '\t':
+				escaped.append("\\t");
+				break;
+			default:
+				if (c < 32 || c > 126) {
+					escaped.append(String.format("\\u%04x", (int) c));
+				} else {
+					escaped.append(c);
+				}
+				break;
+			}
+		}
+
+		return escaped.toString();
+	}
+
+	/**
+	 * Makes a string safe to put in a comment, which is the escaped string without any comment terminators.
+	 */
+	private static String escapeComment(String s) {
+		return escape(s).replace("*/", "*\\/");
+	}
+
+	/*
+	 *
+	 * Writing files
+	 *
+	 */
+
+	/**
+	 * Generates the class for a project file and writes it into the source directory, under the package's directories. The file is only written if its
+	 * content changed, so that build tools don't compile it again for nothing. When writing several project files, check them with
+	 * <code>checkClassNames()</code> first.
+	 *
+	 * @param directory - the directory the project file's name is relative to
+	 * @return true if the file was written
+	 */
+	public boolean write(File directory, File projectFile, String packageName, File sourceDirectory) throws Exception {
+		Project project = new ClearDialogueAutoIO().importProject(projectFile);
+		String projectFileName = ProjectFileUtils.getProjectFileName(directory, projectFile);
+		byte[] source = generate(project, projectFileName, packageName).getBytes(StandardCharsets.UTF_8);
+
+		File packageDirectory = sourceDirectory;
+
+		if (packageName != null && !packageName.isEmpty()) {
+			packageDirectory = new File(sourceDirectory, packageName.replace('.', File.separatorChar));
+		}
+
+		File f = new File(packageDirectory, getClassName(projectFileName) + ".java");
+
+		if (f.isFile() && f.length() == source.length && Arrays.equals(Files.readAllBytes(f.toPath()), source)) {
+			return false;
+		}
+
+		Files.createDirectories(packageDirectory.toPath());
+		Files.write(f.toPath(), source);
+
+		return true;
+	}
+
+	/**
+	 * Checks that no two of the project files generate the same class. Different names can map to the same class name (I.E. <code>a-b</code> and
+	 * <code>a_b</code>, or <code>general/Shop</code> and <code>GeneralShop</code>), and their classes would overwrite each other. Class names that only
+	 * differ in case are rejected too, since their files would be the same file on case-insensitive file systems.
+	 *
+	 * @param directory - the directory the project files' names are relative to
+	 * @throws IllegalArgumentException naming both project files, if two of them generate the same class
+	 */
+	public static void checkClassNames(File directory, List<File> projectFiles) {
+		HashMap<String, File> classFiles = new HashMap<String, File>(projectFiles.size() * 2);
+
+		for (int i = 0; i < projectFiles.size(); i++) {
+			File f = projectFiles.get(i);
+			String className = getClassName(ProjectFileUtils.getProjectFileName(directory, f));
+			File other = classFiles.putIfAbsent(className.toLowerCase(Locale.ROOT), f);
+
+			if (other != null) {
+				throw new IllegalArgumentException(other.getPath() + " and " + f.getPath() + " would both generate the class " + className);
+			}
+		}
+	}
+
+	/**
+	 * @return the files generated from the project files that aren't in the list any more (I.E. deleted project files) in the package's directory
+	 */
+	public static ArrayList<File> findStaleFiles(File directory, ArrayList<File> projectFiles, String packageName, File sourceDirectory) {
+		HashSet<String> expected = new HashSet<String>();
+
+		for (int i = 0; i < projectFiles.size(); i++) {
+			expected.add(getClassName(ProjectFileUtils.getProjectFileName(directory, projectFiles.get(i))) + ".java");
+		}
+
+		File packageDirectory = (packageName != null && !packageName.isEmpty() ? new File(sourceDirectory, packageName.replace('.', File.separatorChar)) : sourceDirectory);
+		File[] children = packageDirectory.listFiles();
+		ArrayList<File> stale = new ArrayList<File>();
+
+		if (children != null) {
+			for (int i = 0; i < children.length; i++) {
+				String name = children[i].getName();
+
+				if (name.endsWith(CLASS_NAME_SUFFIX + ".java") && !expected.contains(name) && isGenerated(children[i])) {
+					stale.add(children[i]);
+				}
+			}
+		}
+
+		return stale;
+	}
+
+	private static boolean isGenerated(File f) {
+		try {
+			return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8).startsWith("// Generated by ClearDialogue");
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
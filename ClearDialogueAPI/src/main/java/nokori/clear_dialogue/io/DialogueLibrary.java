@@ -0,0 +1,133 @@
+package nokori.clear_dialogue.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * Loads every project file in a directory tree at once (I.E. a game's entire localized dialogue library), parsing the files in parallel.
+ * 
+ * <br><br>Projects are named after their path relative to the directory (see <code>ProjectFileUtils.getProjectFileName()</code>). Files that 
+ * fail to load don't stop the rest of the library from loading; their exceptions are collected and can be checked with <code>getFailures()</code>.
+ * 
+ * <br><br>Since the extension isn't part of the name, two files can end up with the same name (I.E. <code>intro.json</code> and <code>intro.cdb</code>).
+ * The first one keeps the name, and the others aren't loaded and are reported as failures instead.
+ */
+public class DialogueLibrary {
+	
+	private Map<String, Project> projects;
+	private Map<File, Exception> failures;
+	
+	private DialogueLibrary(Map<String, Project> projects, Map<File, Exception> failures) {
+		this.projects = Collections.unmodifiableMap(projects);
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+	
+	/**
+	 * Loads the library using the common ForkJoinPool.
+	 */
+	public static DialogueLibrary load(File directory) throws InterruptedException {
+		return load(directory, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Loads the library, parsing the files on the given pool. The size of the pool controls how many files are parsed at the same time.
+	 */
+	public static DialogueLibrary load(File directory, ForkJoinPool pool) throws InterruptedException {
+		return load(directory, pool, new ClearDialogueAutoIO());
+	}
+	
+	/**
+	 * Loads the library with the given ClearDialogueIO, which is shared by all of the pool's threads. I.E. use a <code>ClearDialogueAutoIO</code> with 
+	 * a ProjectCache so that unchanged files are loaded from the cache on later launches.
+	 */
+	public static DialogueLibrary load(File directory, ForkJoinPool pool, ClearDialogueIO io) throws InterruptedException {
+		ArrayList<File> files = ProjectFileUtils.findProjectFiles(directory);
+		ArrayList<Callable<Project>> tasks = new ArrayList<Callable<Project>>(files.size());
+		
+		String[] names = new String[files.size()];
+		HashMap<String, File> namedFiles = new HashMap<String, File>(files.size() * 2);
+		
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
+			names[i] = ProjectFileUtils.getProjectFileName(directory, f);
+			
+			//Files whose name is taken get no task
+			if (namedFiles.putIfAbsent(names[i], f) != null) {
+				continue;
+			}
+			
+			tasks.add(new Callable<Project>() {
+				@Override
+				public Project call() throws Exception {
+					return io.importProject(f);
+				}
+			});
+		}
+		
+		List<Future<Project>> results = pool.invokeAll(tasks);
+		
+		LinkedHashMap<String, Project> projects = new LinkedHashMap<String, Project>(files.size() * 2);
+		LinkedHashMap<File, Exception> failures = new LinkedHashMap<File, Exception>();
+		
+		int task = 0;
+		
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
+			File named = namedFiles.get(names[i]);
+			
+			if (named != f) {
+				failures.put(f, new IllegalArgumentException("The project name \"" + names[i] + "\" of " + f.getPath() + " is already used by " + named.getPath()));
+				continue;
+			}
+			
+			try {
+				projects.put(names[i], results.get(task++).get());
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				failures.put(f, (cause instanceof Exception ? (Exception) cause : e));
+			}
+		}
+		
+		return new DialogueLibrary(projects, failures);
+	}
+	
+	/**
+	 * @return an unmodifiable map of every Project that loaded successfully, in the same order as the files.
+	 */
+	public Map<String, Project> getProjects() {
+		return projects;
+	}
+	
+	/**
+	 * @return the Project with the given name, or null if it isn't in the library.
+	 */
+	public Project getProject(String name) {
+		return projects.get(name);
+	}
+	
+	public int getNumProjects() {
+		return projects.size();
+	}
+	
+	/**
+	 * @return an unmodifiable map of the files that failed to load, and the exception each one threw.
+	 */
+	public Map<File, Exception> getFailures() {
+		return failures;
+	}
+	
+	public boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+}
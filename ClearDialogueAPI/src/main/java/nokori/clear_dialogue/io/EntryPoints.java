@@ -0,0 +1,192 @@
+package nokori.clear_dialogue.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * The nodes to start from when only part of a Project is imported (see <code>ClearDialogueIO.importProject(File, EntryPoints)</code>), I.E. the
+ * <code>$DIALOGUE_START</code> node of the conversation a scene needs.
+ *
+ * <br><br>A node is an entry if its tags or title exactly match one of the entry tags or titles. Partial imports only build the entries and the nodes
+ * that can be reached from them by following their out-connectors, along with the connections between those nodes. Everything else in the file is skipped.
+ */
+public class EntryPoints {
+
+	private final HashSet<String> tags = new HashSet<String>();
+	private final HashSet<String> titles = new HashSet<String>();
+
+	/**
+	 * @return EntryPoints that start from the nodes with any of the given tags
+	 */
+	public static EntryPoints withTags(String... tags) {
+		EntryPoints entries = new EntryPoints();
+		Collections.addAll(entries.tags, tags);
+		return entries;
+	}
+
+	/**
+	 * @return EntryPoints that start from the nodes with any of the given titles
+	 */
+	public static EntryPoints withTitles(String... titles) {
+		EntryPoints entries = new EntryPoints();
+		Collections.addAll(entries.titles, titles);
+		return entries;
+	}
+
+	public EntryPoints addTag(String tag) {
+		tags.add(tag);
+		return this;
+	}
+
+	public EntryPoints addTitle(String title) {
+		titles.add(title);
+		return this;
+	}
+
+	public Set<String> getTags() {
+		return Collections.unmodifiableSet(tags);
+	}
+
+	public Set<String> getTitles() {
+		return Collections.unmodifiableSet(titles);
+	}
+
+	/**
+	 * @return true if a node with the given title and tags is an entry
+	 */
+	public boolean isEntry(String title, String tags) {
+		return ((title != null && titles.contains(title)) || (tags != null && this.tags.contains(tags)));
+	}
+
+	/**
+	 * Copies the reachable part of an already loaded Project into a new one. This is how formats that can't skip nodes while importing support partial imports.
+	 */
+	public Project extract(Project project) {
+		IdentityHashMap<Dialogue, Boolean> reachable = new IdentityHashMap<Dialogue, Boolean>();
+		ArrayDeque<Dialogue> queue = new ArrayDeque<Dialogue>();
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue dialogue = project.getDialogue(i);
+
+			if (isEntry(dialogue.getTitle(), dialogue.getTags()) && reachable.put(dialogue, Boolean.TRUE) == null) {
+				queue.add(dialogue);
+			}
+		}
+
+		while (!queue.isEmpty()) {
+			ArrayList<Dialogue> outgoing = project.getOutgoingDialogue(queue.poll());
+
+			for (int i = 0; i < outgoing.size(); i++) {
+				if (reachable.put(outgoing.get(i), Boolean.TRUE) == null) {
+					queue.add(outgoing.get(i));
+				}
+			}
+		}
+
+		return project.copy(new Project.SearchRule() {
+
+			@Override
+			public boolean check(Dialogue dialogue) {
+				return reachable.containsKey(dialogue);
+			}
+		});
+	}
+
+	/**
+	 * A lightweight graph of node indices, used by the formats that can work out which nodes are reachable before building any of them.
+	 */
+	static class NodeGraph {
+		private int numNodes = 0;
+		private boolean[] entries = new boolean[64];
+
+		//Edges are stored as (from, to) pairs
+		private int numEdges = 0;
+		private int[] edges = new int[128];
+
+		/**
+		 * Adds the next node. Nodes are numbered in the order they're added.
+		 */
+		void addNode(boolean entry) {
+			if (numNodes == entries.length) {
+				entries = Arrays.copyOf(entries, numNodes * 2);
+			}
+
+			entries[numNodes++] = entry;
+		}
+
+		/**
+		 * Adds an edge from the node that owns an out-connector to the node that owns the connected in-connector.
+		 */
+		void addEdge(int from, int to) {
+			if (numEdges * 2 == edges.length) {
+				edges = Arrays.copyOf(edges, edges.length * 2);
+			}
+
+			edges[numEdges * 2] = from;
+			edges[numEdges * 2 + 1] = to;
+			numEdges++;
+		}
+
+		int getNumNodes() {
+			return numNodes;
+		}
+
+		/**
+		 * @return for each node, whether it's an entry or can be reached from one
+		 */
+		boolean[] findReachable() {
+			//Group the edges by the node they leave from
+			int[] firstEdge = new int[numNodes + 1];
+
+			for (int i = 0; i < numEdges; i++) {
+				firstEdge[edges[i * 2] + 1]++;
+			}
+
+			for (int i = 0; i < numNodes; i++) {
+				firstEdge[i + 1] += firstEdge[i];
+			}
+
+			int[] targets = new int[numEdges];
+			int[] fill = Arrays.copyOf(firstEdge, numNodes);
+
+			for (int i = 0; i < numEdges; i++) {
+				targets[fill[edges[i * 2]]++] = edges[i * 2 + 1];
+			}
+
+			//Breadth-first search from every entry
+			boolean[] reachable = new boolean[numNodes];
+			int[] queue = new int[numNodes];
+			int head = 0, tail = 0;
+
+			for (int i = 0; i < numNodes; i++) {
+				if (entries[i]) {
+					reachable[i] = true;
+					queue[tail++] = i;
+				}
+			}
+
+			while (head < tail) {
+				int node = queue[head++];
+
+				for (int i = firstEdge[node]; i < firstEdge[node + 1]; i++) {
+					int target = targets[i];
+
+					if (!reachable[target]) {
+						reachable[target] = true;
+						queue[tail++] = target;
+					}
+				}
+			}
+
+			return reachable;
+		}
+	}
+}
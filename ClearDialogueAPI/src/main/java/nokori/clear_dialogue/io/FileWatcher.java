@@ -0,0 +1,282 @@
+package nokori.clear_dialogue.io;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches individual files for changes (I.E. project files being edited outside of the IDE, or regenerated by a build) and notifies listeners on a background thread.
+ *
+ * <br><br>Editors and build tools usually write a file in several steps, so changes are debounced: listeners are only notified once a file has stopped
+ * changing for the debounce time. A file being replaced with a move (I.E. by AtomicFileWriter) counts as a change.
+ *
+ * <br><br>Only the directories containing the watched files are registered with the WatchService, so changes to other files are ignored cheaply.
+ *
+ * <br><br>If a listener throws (including Errors, I.E. a StackOverflowError from a deeply nested file), the exception is handed back to that listener's
+ * <code>fileChangeFailed()</code> and kept for <code>getLastError()</code>, and the other listeners are still notified. The watcher thread keeps running.
+ */
+public class FileWatcher implements Closeable {
+
+	public static final long DEFAULT_DEBOUNCE = 250;
+
+	private final WatchService watchService;
+	private final long debounce;
+	private final Thread thread;
+
+	private volatile boolean closed = false;
+	private volatile Throwable lastError;
+
+	//Guarded by this FileWatcher, since files can be watched from any thread
+	private final HashMap<Path, WatchKey> directories = new HashMap<Path, WatchKey>();
+	private final HashMap<WatchKey, Path> keyDirectories = new HashMap<WatchKey, Path>();
+	private final HashMap<Path, ArrayList<Listener>> listeners = new HashMap<Path, ArrayList<Listener>>();
+
+	//The files that have changed and the time their listeners are due, only touched by the watcher thread
+	private final HashMap<Path, Long> pending = new HashMap<Path, Long>();
+
+	public FileWatcher() throws IOException {
+		this(DEFAULT_DEBOUNCE);
+	}
+
+	/**
+	 * @param debounce - how long (in milliseconds) a file has to go without changing before its listeners are notified
+	 */
+	public FileWatcher(long debounce) throws IOException {
+		this.debounce = debounce;
+
+		watchService = FileSystems.getDefault().newWatchService();
+
+		thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				processEvents();
+			}
+		}, "ClearDialogue File Watcher");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Starts watching the given file. The file doesn't have to exist yet, but its directory does.
+	 *
+	 * @param f - the file to watch
+	 * @param listener - notified on the watcher thread whenever the file changes
+	 */
+	public synchronized void watch(File f, Listener listener) throws IOException {
+		Path file = toPath(f);
+		Path directory = file.getParent();
+
+		if (!directories.containsKey(directory)) {
+			WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+			directories.put(directory, key);
+			keyDirectories.put(key, directory);
+		}
+
+		ArrayList<Listener> fileListeners = listeners.get(file);
+
+		if (fileListeners == null) {
+			fileListeners = new ArrayList<Listener>(1);
+			listeners.put(file, fileListeners);
+		}
+
+		fileListeners.add(listener);
+	}
+
+	/**
+	 * Stops notifying the given listener about changes to the file. Once a directory has no watched files left, it's no longer watched.
+	 */
+	public synchronized void unwatch(File f, Listener listener) {
+		Path file = toPath(f);
+		ArrayList<Listener> fileListeners = listeners.get(file);
+
+		if (fileListeners == null) {
+			return;
+		}
+
+		fileListeners.remove(listener);
+
+		if (!fileListeners.isEmpty()) {
+			return;
+		}
+
+		listeners.remove(file);
+
+		Path directory = file.getParent();
+
+		for (Path watched : listeners.keySet()) {
+			if (watched.getParent().equals(directory)) {
+				return;
+			}
+		}
+
+		WatchKey key = directories.remove(directory);
+
+		if (key != null) {
+			keyDirectories.remove(key);
+			key.cancel();
+		}
+	}
+
+	private static Path toPath(File f) {
+		return f.toPath().toAbsolutePath().normalize();
+	}
+
+	private void processEvents() {
+		while (!closed) {
+			WatchKey key;
+
+			try {
+				key = watchService.poll(getTimeUntilNextDue(), TimeUnit.MILLISECONDS);
+			} catch (ClosedWatchServiceException | InterruptedException e) {
+				return;
+			}
+
+			if (key != null) {
+				queueChanges(key);
+			}
+
+			notifyDueListeners();
+		}
+	}
+
+	private long getTimeUntilNextDue() {
+		if (pending.isEmpty()) {
+			return Long.MAX_VALUE;
+		}
+
+		long next = Long.MAX_VALUE;
+
+		for (Long due : pending.values()) {
+			next = Math.min(next, due);
+		}
+
+		return Math.max(1L, next - System.currentTimeMillis());
+	}
+
+	/**
+	 * Pushes back the due time of every watched file that the key has events for. Each new event restarts the debounce time.
+	 */
+	private void queueChanges(WatchKey key) {
+		List<WatchEvent<?>> events = key.pollEvents();
+		long due = System.currentTimeMillis() + debounce;
+
+		synchronized (this) {
+			Path directory = keyDirectories.get(key);
+
+			if (directory != null) {
+				for (int i = 0; i < events.size(); i++) {
+					WatchEvent<?> event = events.get(i);
+
+					if (event.kind() == OVERFLOW) {
+						//Some events were lost, so assume that every watched file in the directory changed
+						for (Path file : listeners.keySet()) {
+							if (file.getParent().equals(directory)) {
+								pending.put(file, due);
+							}
+						}
+					} else {
+						Path file = directory.resolve((Path) event.context());
+
+						if (listeners.containsKey(file)) {
+							pending.put(file, due);
+						}
+					}
+				}
+			}
+		}
+
+		key.reset();
+	}
+
+	private void notifyDueListeners() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+
+		while (it.hasNext()) {
+			Map.Entry<Path, Long> e = it.next();
+
+			if (e.getValue() > now) {
+				continue;
+			}
+
+			it.remove();
+
+			ArrayList<Listener> fileListeners;
+
+			synchronized (this) {
+				ArrayList<Listener> watched = listeners.get(e.getKey());
+				fileListeners = (watched != null ? new ArrayList<Listener>(watched) : null);
+			}
+
+			if (fileListeners == null) {
+				continue;
+			}
+
+			File file = e.getKey().toFile();
+
+			for (int i = 0; i < fileListeners.size(); i++) {
+				Listener listener = fileListeners.get(i);
+
+				try {
+					listener.fileChanged(file);
+				} catch (Throwable t) {
+					lastError = t;
+
+					try {
+						listener.fileChangeFailed(file, t);
+					} catch (Throwable failure) {
+						//Kept with the original failure, so that getLastError() still shows both
+						t.addSuppressed(failure);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the exception that a listener last threw from <code>fileChanged()</code>, or null if none have
+	 */
+	public Throwable getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Stops the watcher thread. Pending changes that haven't been debounced yet are dropped.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		watchService.close();
+	}
+
+	public interface Listener {
+		/**
+		 * Called on the watcher thread once the file has changed and then stopped changing for the debounce time.
+		 */
+		public void fileChanged(File f) throws Exception;
+
+		/**
+		 * Called on the watcher thread if <code>fileChanged()</code> threw. Does nothing by default.
+		 */
+		public default void fileChangeFailed(File f, Throwable t) {
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package nokori.clear_dialogue.io;
+
+import java.util.concurrent.CancellationException;
+
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * Tracks how far along an import or export is (how many nodes and connections have been processed), and lets it be cancelled from another thread.
+ *
+ * <br><br>ClearDialogueIO implementations that support progress call <code>nodeProcessed()</code> and <code>connectionProcessed()</code> as they go.
+ * Those calls are also where cancellation is checked: once <code>cancel()</code> has been called, the next one throws a CancellationException, which
+ * stops the import or export. An export that's cancelled this way leaves the existing file untouched (see AtomicFileWriter).
+ *
+ * <br><br>The counts are only updated by the thread doing the import or export, but can be read from any thread (I.E. to draw a loading bar).
+ * The Listener is notified on the importing/exporting thread every few hundred items, and once more when it finishes.
+ */
+public class IOProgress {
+
+	//How many items are processed between two Listener notifications
+	private static final int REPORT_INTERVAL = 256;
+
+	private final Listener listener;
+
+	private volatile boolean cancelled = false;
+
+	//-1 if the total isn't known yet (I.E. JSON files don't say how many nodes they have up front)
+	private volatile int totalNodes = -1, totalConnections = -1;
+	private volatile int nodesProcessed = 0, connectionsProcessed = 0;
+
+	public IOProgress() {
+		this(null);
+	}
+
+	/**
+	 * @param listener - notified on the importing/exporting thread as progress is made, or null
+	 */
+	public IOProgress(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Asks the import or export to stop. It stops the next time it checks (I.E. after the node it's currently processing).
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @throws CancellationException if <code>cancel()</code> has been called
+	 */
+	public void checkCancelled() {
+		if (cancelled) {
+			throw new CancellationException("Cancelled after " + nodesProcessed + " nodes and " + connectionsProcessed + " connections");
+		}
+	}
+
+	/**
+	 * Sets the number of nodes and connections that will be processed, if they're known. Use -1 for unknown.
+	 */
+	public void setTotals(int totalNodes, int totalConnections) {
+		this.totalNodes = totalNodes;
+		this.totalConnections = totalConnections;
+	}
+
+	/**
+	 * Called by ClearDialogueIO implementations after each node.
+	 *
+	 * @throws CancellationException if the import or export has been cancelled
+	 */
+	public void nodeProcessed() {
+		int processed = ++nodesProcessed;
+
+		if (processed % REPORT_INTERVAL == 0) {
+			report();
+		}
+
+		checkCancelled();
+	}
+
+	/**
+	 * Called by ClearDialogueIO implementations after each connection.
+	 *
+	 * @throws CancellationException if the import or export has been cancelled
+	 */
+	public void connectionProcessed() {
+		int processed = ++connectionsProcessed;
+
+		if (processed % REPORT_INTERVAL == 0) {
+			report();
+		}
+
+		checkCancelled();
+	}
+
+	/**
+	 * Called by ClearDialogueIO implementations once the Project has been fully imported or exported. The totals and counts are set to the Project's
+	 * and the Listener is notified one last time.
+	 */
+	public void finish(Project project) {
+		if (project != null) {
+			totalNodes = nodesProcessed = project.getNumDialogue();
+			totalConnections = connectionsProcessed = project.getNumConnections();
+		}
+
+		report();
+	}
+
+	public int getTotalNodes() {
+		return totalNodes;
+	}
+
+	public int getTotalConnections() {
+		return totalConnections;
+	}
+
+	public int getNodesProcessed() {
+		return nodesProcessed;
+	}
+
+	public int getConnectionsProcessed() {
+		return connectionsProcessed;
+	}
+
+	/**
+	 * @return how much of the work is done, from 0 to 1, or -1 if the totals aren't known.
+	 */
+	public float getFraction() {
+		int totalNodes = this.totalNodes;
+		int totalConnections = this.totalConnections;
+
+		if (totalNodes < 0 || totalConnections < 0) {
+			return -1f;
+		}
+
+		int total = totalNodes + totalConnections;
+		return (total > 0 ? Math.min(1f, (float) (nodesProcessed + connectionsProcessed) / total) : 1f);
+	}
+
+	private void report() {
+		if (listener != null) {
+			listener.progressChanged(this);
+		}
+	}
+
+	public interface Listener {
+		/**
+		 * Called on the importing/exporting thread as progress is made.
+		 */
+		public void progressChanged(IOProgress progress);
+	}
+}
@@ -0,0 +1,470 @@
+package nokori.clear_dialogue.io;
+
+import static nokori.clear_dialogue.io.ClearDialogueIndexedIO.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Set;
+
+import nokori.clear_dialogue.project.Connection;
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.DialogueConnector;
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+import nokori.clear_dialogue.throwable.InvalidProjectFileException;
+
+/**
+ * A read-only view of a Project file made by ClearDialogueIndexedIO. The file is memory-mapped, and nothing is decoded until it's asked for: 
+ * node data is read straight out of the mapping, and strings are only turned into Strings when a getter that returns one is called. 
+ * Opening a file takes the same amount of time no matter how large it is, and the operating system only pages in the parts that are read.
+ * 
+ * <br><br>Nodes are referred to by index, and each node has a list of choices in the same way as CompiledProject: a text node has one choice 
+ * (its out-connector) and a response node has one choice per response. Use <code>toProject()</code> if a full, editable Project is needed.
+ * 
+ * <br><br>Reads don't modify any shared state, so a MappedProject can be used from multiple threads at once.
+ */
+public class MappedProject {
+	
+	/**
+	 * Returned by the lookup functions and choice targets when there is no node.
+	 */
+	public static final int NO_NODE = -1;
+	
+	private MappedByteBuffer buffer;
+	
+	private int numNodes, numStrings, numConnections;
+	private int nodeTableOffset, stringTableOffset, connectionsOffset;
+	
+	private MappedProject(MappedByteBuffer buffer) throws InvalidProjectFileException {
+		this.buffer = buffer;
+		
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(HEADER_MAGIC) != MAGIC) {
+			throw new InvalidProjectFileException("not an indexed ClearDialogue project");
+		}
+		
+		int formatVersion = buffer.getInt(HEADER_FORMAT_VERSION);
+		
+		if (formatVersion != FORMAT_VERSION) {
+			throw new InvalidProjectFileException("unsupported indexed format version " + formatVersion);
+		}
+		
+		numNodes = buffer.getInt(HEADER_NODE_COUNT);
+		numStrings = buffer.getInt(HEADER_STRING_COUNT);
+		numConnections = buffer.getInt(HEADER_CONNECTION_COUNT);
+		nodeTableOffset = buffer.getInt(HEADER_NODE_TABLE_OFFSET);
+		stringTableOffset = buffer.getInt(HEADER_STRING_TABLE_OFFSET);
+		connectionsOffset = buffer.getInt(HEADER_CONNECTIONS_OFFSET);
+	}
+	
+	/**
+	 * Memory-maps the given file. The mapping stays valid after this returns, until the MappedProject is garbage collected.
+	 */
+	public static MappedProject open(File f) throws IOException, InvalidProjectFileException {
+		try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			return new MappedProject(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	/*
+	 * 
+	 * Project data
+	 * 
+	 */
+	
+	public int getVersion() {
+		return buffer.getInt(HEADER_PROJECT_VERSION);
+	}
+	
+	public String getName() {
+		return getString(buffer.getInt(HEADER_PROJECT_NAME));
+	}
+	
+	public float getViewportX() {
+		return buffer.getFloat(HEADER_VIEWPORT_X);
+	}
+	
+	public float getViewportY() {
+		return buffer.getFloat(HEADER_VIEWPORT_Y);
+	}
+	
+	public float getViewportScale() {
+		return buffer.getFloat(HEADER_VIEWPORT_SCALE);
+	}
+	
+	public int getNumNodes() {
+		return numNodes;
+	}
+	
+	public int getNumConnections() {
+		return numConnections;
+	}
+	
+	/*
+	 * 
+	 * Node data
+	 * 
+	 */
+	
+	public boolean isText(int node) {
+		return (buffer.get(nodeOffset(node) + NODE_TYPE) == NODE_TYPE_TEXT);
+	}
+	
+	public boolean isResponse(int node) {
+		return (buffer.get(nodeOffset(node) + NODE_TYPE) == NODE_TYPE_RESPONSE);
+	}
+	
+	public String getUID(int node) {
+		return getString(buffer.getInt(nodeOffset(node) + NODE_UID));
+	}
+	
+	public String getTitle(int node) {
+		return getString(buffer.getInt(nodeOffset(node) + NODE_TITLE));
+	}
+	
+	public String getTags(int node) {
+		return getString(buffer.getInt(nodeOffset(node) + NODE_TAGS));
+	}
+	
+	public float getX(int node) {
+		return buffer.getFloat(nodeOffset(node) + NODE_X);
+	}
+	
+	public float getY(int node) {
+		return buffer.getFloat(nodeOffset(node) + NODE_Y);
+	}
+	
+	public boolean isExpanded(int node) {
+		return (buffer.get(nodeOffset(node) + NODE_EXPANDED) != 0);
+	}
+	
+	/**
+	 * @return the text of a text node, or null if the node is a response node.
+	 */
+	public String getText(int node) {
+		return (isText(node) ? getChoiceText(node, 0) : null);
+	}
+	
+	/**
+	 * @return the same content that Dialogue.getRenderableContent() would for this node.
+	 */
+	public String getRenderableContent(int node) {
+		if (isText(node)) {
+			return getText(node);
+		}
+		
+		StringBuilder s = new StringBuilder();
+		
+		for (int i = 0; i < getNumChoices(node); i++) {
+			if (i > 0) {
+				s.append("\n");
+			}
+			
+			s.append(getChoiceText(node, i));
+		}
+		
+		return s.toString();
+	}
+	
+	/**
+	 * @return the index of the node that the given text node leads into, or NO_NODE if it's the end of the dialogue.
+	 */
+	public int getNext(int node) {
+		return getChoiceTarget(node, 0);
+	}
+	
+	public int getNumChoices(int node) {
+		return buffer.getInt(nodeOffset(node) + NODE_CHOICE_COUNT);
+	}
+	
+	/**
+	 * @return the text of the given response (or the text of a text node if the choice is 0).
+	 */
+	public String getChoiceText(int node, int choice) {
+		return getString(buffer.getInt(choiceOffset(node, choice) + CHOICE_TEXT));
+	}
+	
+	/**
+	 * @return the index of the node that the given choice leads into, or NO_NODE if it isn't connected to anything.
+	 */
+	public int getChoiceTarget(int node, int choice) {
+		return buffer.getInt(choiceOffset(node, choice) + CHOICE_TARGET);
+	}
+	
+	private int nodeOffset(int node) {
+		if (node < 0 || node >= numNodes) {
+			throw new IndexOutOfBoundsException("Node " + node + " is out of range (" + numNodes + " nodes)");
+		}
+		
+		return buffer.getInt(nodeTableOffset + node * 4);
+	}
+	
+	private int choiceOffset(int node, int choice) {
+		int offset = nodeOffset(node);
+		int numChoices = buffer.getInt(offset + NODE_CHOICE_COUNT);
+		
+		if (choice < 0 || choice >= numChoices) {
+			throw new IndexOutOfBoundsException("Choice " + choice + " is out of range for node " + node + " (" + numChoices + " choices)");
+		}
+		
+		return offset + NODE_CHOICES + choice * CHOICE_SIZE;
+	}
+	
+	/**
+	 * Decodes a string from the string table.
+	 */
+	private String getString(int index) {
+		if (index < 0) {
+			return null;
+		}
+		
+		int offset = buffer.getInt(stringTableOffset + index * 4);
+		int length = buffer.getInt(offset);
+		
+		byte[] bytes = new byte[length];
+		
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + 4 + i);
+		}
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/*
+	 * 
+	 * Lookups
+	 * 
+	 */
+	
+	/**
+	 * Finds the first node with the given tag.
+	 * 
+	 * @param tag - the tag to search for
+	 * @param exactMatch - if true, it will only return a node that equals() the input. Otherwise, contains() will be used.
+	 * @return the index of the node, or NO_NODE if a match isn't found
+	 */
+	public int findNodeWithTag(String tag, boolean exactMatch) {
+		return findString(NODE_TAGS, tag, exactMatch);
+	}
+	
+	/**
+	 * Finds the first node with the given title.
+	 * 
+	 * @param title - the title to search for
+	 * @param exactMatch - if true, it will only return a node that equals() the input. Otherwise, contains() will be used.
+	 * @return the index of the node, or NO_NODE if a match isn't found
+	 */
+	public int findNodeWithTitle(String title, boolean exactMatch) {
+		return findString(NODE_TITLE, title, exactMatch);
+	}
+	
+	/**
+	 * @return the index of the node with the given UID, or NO_NODE if it isn't in this project.
+	 */
+	public int findNodeWithUID(String uid) {
+		return findString(NODE_UID, uid, true);
+	}
+	
+	private int findString(int field, String search, boolean exactMatch) {
+		for (int i = 0; i < numNodes; i++) {
+			String s = getString(buffer.getInt(nodeOffset(i) + field));
+			
+			if (s != null && (exactMatch ? s.equals(search) : s.contains(search))) {
+				return i;
+			}
+		}
+		
+		return NO_NODE;
+	}
+	
+	/*
+	 * 
+	 * Conversion
+	 * 
+	 */
+	
+	/**
+	 * Decodes the entire file into a normal, editable Project.
+	 */
+	public Project toProject() throws InvalidProjectFileException {
+		return toProject((boolean[]) null);
+	}
+	
+	/**
+	 * Decodes only the entries and the nodes reachable from them into a normal, editable Project. The reachable nodes are found by walking the 
+	 * connection table, and only those nodes are decoded, so the cost depends on the size of the conversation rather than the size of the file.
+	 */
+	public Project toProject(EntryPoints entries) throws InvalidProjectFileException {
+		EntryPoints.NodeGraph graph = new EntryPoints.NodeGraph();
+		
+		byte[][] tags = encodeAll(entries.getTags());
+		byte[][] titles = encodeAll(entries.getTitles());
+		
+		for (int i = 0; i < numNodes; i++) {
+			int offset = nodeOffset(i);
+			graph.addNode(stringEqualsAny(buffer.getInt(offset + NODE_TAGS), tags) || stringEqualsAny(buffer.getInt(offset + NODE_TITLE), titles));
+		}
+		
+		for (int i = 0; i < numConnections; i++) {
+			int offset = connectionsOffset + i * CONNECTION_SIZE;
+			
+			int node1 = buffer.getInt(offset);
+			int node2 = buffer.getInt(offset + 8);
+			
+			if (node1 < 0 || node1 >= numNodes || node2 < 0 || node2 >= numNodes) {
+				throw new InvalidProjectFileException("connection " + i + " is out of range");
+			}
+			
+			//Slot 0 is the in-connector, so connections lead from the node on the other slot
+			if (buffer.getInt(offset + 4) != 0) {
+				graph.addEdge(node1, node2);
+			}
+			
+			if (buffer.getInt(offset + 12) != 0) {
+				graph.addEdge(node2, node1);
+			}
+		}
+		
+		return toProject(graph.findReachable());
+	}
+	
+	/**
+	 * @param include - which nodes to decode, or null for all of them. Connections to nodes that aren't decoded are left out.
+	 */
+	private Project toProject(boolean[] include) throws InvalidProjectFileException {
+		Project project = new Project(getVersion(), getName(), getViewportX(), getViewportY(), getViewportScale());
+		
+		//The index of each node in the Project, or -1 if it wasn't decoded
+		int[] projectIndices = new int[numNodes];
+		
+		for (int i = 0; i < numNodes; i++) {
+			if (include != null && !include[i]) {
+				projectIndices[i] = -1;
+				continue;
+			}
+			
+			projectIndices[i] = project.getNumDialogue();
+			
+			int offset = nodeOffset(i);
+			
+			String uid = getUID(i);
+			String name = getTitle(i);
+			String tag = getTags(i);
+			float nodeX = getX(i);
+			float nodeY = getY(i);
+			boolean expanded = isExpanded(i);
+			
+			Dialogue node;
+			
+			if (isText(i)) {
+				node = new DialogueText(project, uid, name, tag, nodeX, nodeY, expanded, getChoiceText(i, 0));
+				((DialogueText) node).setOutConnector(new DialogueConnector(project, node, getOutConnectorUID(i, 0)));
+				
+			} else if (isResponse(i)) {
+				DialogueResponse responseNode = new DialogueResponse(project, uid, name, tag, nodeX, nodeY, expanded);
+				node = responseNode;
+				
+				for (int j = 0; j < getNumChoices(i); j++) {
+					responseNode.addResponse(getChoiceText(i, j), getOutConnectorUID(i, j));
+				}
+				
+			} else {
+				throw new InvalidProjectFileException("unknown node type " + buffer.get(offset + NODE_TYPE) + " for node \"" + name + "\"");
+			}
+			
+			node.setInConnector(new DialogueConnector(project, node, getString(buffer.getInt(offset + NODE_IN_CONNECTOR_UID))));
+			
+			if (project.getDialogue(uid) != null) {
+				throw new InvalidProjectFileException("more than one node has the UID \"" + uid + "\"");
+			}
+			
+			project.addDialogue(node);
+		}
+		
+		for (int i = 0; i < numConnections; i++) {
+			int offset = connectionsOffset + i * CONNECTION_SIZE;
+			
+			int node1 = buffer.getInt(offset);
+			int node2 = buffer.getInt(offset + 8);
+			
+			if (node1 < 0 || node1 >= numNodes || node2 < 0 || node2 >= numNodes) {
+				throw new InvalidProjectFileException("connection " + i + " is out of range");
+			}
+			
+			if (include != null && (!include[node1] || !include[node2])) {
+				continue;
+			}
+			
+			DialogueConnector connector1 = getConnector(project, projectIndices[node1], buffer.getInt(offset + 4));
+			DialogueConnector connector2 = getConnector(project, projectIndices[node2], buffer.getInt(offset + 12));
+			
+			project.addConnection(new Connection(connector1, connector2));
+		}
+		
+		return project;
+	}
+	
+	private static byte[][] encodeAll(Set<String> strings) {
+		byte[][] encoded = new byte[strings.size()][];
+		int i = 0;
+		
+		for (String s : strings) {
+			encoded[i++] = s.getBytes(StandardCharsets.UTF_8);
+		}
+		
+		return encoded;
+	}
+	
+	/**
+	 * Compares a string in the string table against UTF-8 encoded strings without decoding it. Most strings can be ruled out by their length alone.
+	 */
+	private boolean stringEqualsAny(int index, byte[][] candidates) {
+		if (index < 0 || candidates.length == 0) {
+			return false;
+		}
+		
+		int offset = buffer.getInt(stringTableOffset + index * 4);
+		int length = buffer.getInt(offset);
+		
+		for (int i = 0; i < candidates.length; i++) {
+			byte[] candidate = candidates[i];
+			
+			if (candidate.length != length) {
+				continue;
+			}
+			
+			boolean equal = true;
+			
+			for (int j = 0; j < length && equal; j++) {
+				equal = (buffer.get(offset + 4 + j) == candidate[j]);
+			}
+			
+			if (equal) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private String getOutConnectorUID(int node, int choice) {
+		return getString(buffer.getInt(choiceOffset(node, choice) + CHOICE_OUT_CONNECTOR_UID));
+	}
+	
+	private static DialogueConnector getConnector(Project project, int node, int slot) throws InvalidProjectFileException {
+		if (node >= 0 && node < project.getNumDialogue()) {
+			ArrayList<DialogueConnector> connectors = project.getDialogue(node).getAllConnectors();
+			
+			if (slot >= 0 && slot < connectors.size()) {
+				return connectors.get(slot);
+			}
+		}
+		
+		throw new InvalidProjectFileException("connection to node " + node + " slot " + slot + " is out of range");
+	}
+}
@@ -0,0 +1,228 @@
+package nokori.clear_dialogue.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * An on-disk cache of parsed Projects, so that project files that haven't changed since the last launch don't have to be parsed again.
+ *
+ * <br><br>The first time a file is imported through the cache, it's parsed as usual and a ClearDialogueBinaryIO copy of the Project is written to the
+ * cache directory. Later imports load that copy instead, which is mostly a sequential read. An entry is used if the file's size and modification time
+ * still match, or if only the modification time changed but the content hash (SHA-256) is the same (I.E. after a checkout touched the file).
+ *
+ * <br><br>Entries that were written by a different Project.CURRENT_VERSION or binary format version, or that are damaged, are ignored and replaced.
+ * Failing to write an entry never fails the import, and is reported through <code>getLastError()</code> instead.
+ *
+ * <pre>
+ * magic                 4 bytes ("CDLC")
+ * cache format version  int
+ * project format        int Project.CURRENT_VERSION, int ClearDialogueBinaryIO.FORMAT_VERSION
+ * project version       int (the version of the file the Project was parsed from)
+ * source file           long size, long modification time, 32 bytes SHA-256 of the content
+ * project               ClearDialogueBinaryIO project
+ * </pre>
+ */
+public class ProjectCache {
+
+	public static final String FILE_EXTENSION = "cdcache";
+
+	public static final int MAGIC = 0x43444C43; //"CDLC"
+	public static final int FORMAT_VERSION = 1;
+
+	private static final int HEADER_CACHE_VERSION = 4;
+	private static final int HEADER_PROJECT_FORMAT = 8;
+	private static final int HEADER_BINARY_FORMAT = 12;
+	private static final int HEADER_PROJECT_VERSION = 16;
+	private static final int HEADER_SOURCE_LENGTH = 20;
+	private static final int HEADER_SOURCE_MODIFIED = 28;
+	private static final int HEADER_SOURCE_HASH = 36;
+	private static final int HASH_SIZE = 32;
+	private static final int HEADER_SIZE = HEADER_SOURCE_HASH + HASH_SIZE;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File directory;
+
+	private volatile Exception lastError;
+
+	/**
+	 * @param directory - where the cache entries are stored. It's created when the first entry is written.
+	 */
+	public ProjectCache(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Loads the Project from the cache if the file hasn't changed since it was cached, otherwise imports it with the given ClearDialogueIO and caches the result.
+	 */
+	public Project importProject(File f, ClearDialogueIO io) throws Exception {
+		return importProject(f, io, new IOProgress());
+	}
+	
+	/**
+	 * Same as <code>importProject(File, ClearDialogueIO)</code>, reporting progress as the Project is loaded from the cache or imported.
+	 */
+	public Project importProject(File f, ClearDialogueIO io, IOProgress progress) throws Exception {
+		File source = f.getAbsoluteFile();
+		File entry = getEntryFile(source);
+
+		long length = source.length();
+		long lastModified = source.lastModified();
+
+		if (entry.isFile()) {
+			Project cached = readEntry(entry, source, length, lastModified, progress);
+
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		Project project = io.importProject(f, progress);
+
+		//Only cache the result if the file didn't change while it was being parsed
+		if (source.length() == length && source.lastModified() == lastModified) {
+			try {
+				writeEntry(entry, project, length, lastModified, hash(source));
+				lastError = null;
+			} catch (Exception e) {
+				lastError = e;
+			}
+		}
+
+		return project;
+	}
+
+	/**
+	 * @return the exception that writing the last cache entry failed with, or null if it succeeded. The import itself still succeeded.
+	 */
+	public Exception getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Deletes the cache entry for the given file, if there is one.
+	 */
+	public void invalidate(File f) throws IOException {
+		Files.deleteIfExists(getEntryFile(f.getAbsoluteFile()).toPath());
+	}
+
+	/**
+	 * @return the location of the cache entry for the given file. Entries are named after the file and a hash of its absolute path.
+	 */
+	public File getEntryFile(File f) {
+		String path = f.getAbsoluteFile().toPath().normalize().toString();
+		byte[] pathHash = sha256().digest(path.getBytes(StandardCharsets.UTF_8));
+
+		StringBuilder name = new StringBuilder(f.getName()).append('-');
+
+		for (int i = 0; i < 8; i++) {
+			name.append(String.format("%02x", pathHash[i]));
+		}
+
+		return new File(directory, name.append('.').append(FILE_EXTENSION).toString());
+	}
+
+	/**
+	 * @return the cached Project, or null if the entry can't be used.
+	 */
+	private static Project readEntry(File entry, File source, long length, long lastModified, IOProgress progress) {
+		try {
+			byte[] bytes = Files.readAllBytes(entry.toPath());
+			ByteBuffer header = ByteBuffer.wrap(bytes);
+
+			if (bytes.length < HEADER_SIZE
+					|| header.getInt(0) != MAGIC
+					|| header.getInt(HEADER_CACHE_VERSION) != FORMAT_VERSION
+					|| header.getInt(HEADER_PROJECT_FORMAT) != Project.CURRENT_VERSION
+					|| header.getInt(HEADER_BINARY_FORMAT) != ClearDialogueBinaryIO.FORMAT_VERSION
+					|| header.getLong(HEADER_SOURCE_LENGTH) != length) {
+				return null;
+			}
+
+			if (header.getLong(HEADER_SOURCE_MODIFIED) != lastModified) {
+				byte[] cachedHash = Arrays.copyOfRange(bytes, HEADER_SOURCE_HASH, HEADER_SOURCE_HASH + HASH_SIZE);
+
+				if (!Arrays.equals(cachedHash, hash(source))) {
+					return null;
+				}
+			}
+
+			Project project = new ClearDialogueBinaryIO().importProject(new ByteArrayInputStream(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE), progress);
+			project.setVersion(header.getInt(HEADER_PROJECT_VERSION));
+
+			return project;
+		} catch (CancellationException e) {
+			throw e;
+		} catch (Exception e) {
+			//A damaged entry is treated like a missing one, and gets replaced
+			return null;
+		}
+	}
+
+	private void writeEntry(File entry, Project project, long length, long lastModified, byte[] contentHash) throws Exception {
+		Files.createDirectories(directory.toPath());
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream(HEADER_SIZE);
+		DataOutputStream out = new DataOutputStream(header);
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(Project.CURRENT_VERSION);
+		out.writeInt(ClearDialogueBinaryIO.FORMAT_VERSION);
+		out.writeInt(project.getVersion());
+		out.writeLong(length);
+		out.writeLong(lastModified);
+		out.write(contentHash);
+
+		AtomicFileWriter.write(entry, 0, new AtomicFileWriter.WriteAction() {
+
+			@Override
+			public void write(OutputStream out) throws Exception {
+				header.writeTo(out);
+				new ClearDialogueBinaryIO().exportProject(project, out);
+			}
+		});
+	}
+
+	private static byte[] hash(File f) throws IOException {
+		MessageDigest digest = sha256();
+		byte[] buffer = new byte[BUFFER_SIZE];
+
+		try (InputStream in = Files.newInputStream(f.toPath())) {
+			int read;
+
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+
+		return digest.digest();
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			//Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+}
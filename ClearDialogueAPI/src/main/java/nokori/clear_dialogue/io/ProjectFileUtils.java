@@ -0,0 +1,101 @@
+package nokori.clear_dialogue.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.regex.Pattern;
+
+/**
+ * Utilities for working with directories full of project files (I.E. the dialogue library of a game).
+ */
+public class ProjectFileUtils {
+	
+	//Autosave files are named after their project file, I.E. Shopkeeper.autosave.json or Shopkeeper.autosave-20240101-120000.json
+	private static final String AUTOSAVE_MARKER = ".autosave";
+	private static final Pattern AUTOSAVE_NAME = Pattern.compile(".*" + Pattern.quote(AUTOSAVE_MARKER) + "(-[0-9-]+)?");
+	
+	/**
+	 * Finds every project file (anything ClearDialogueAutoIO supports) in the directory and its sub-directories. Autosave files (see 
+	 * <code>getAutosaveFile()</code>) are skipped. The files are returned in a consistent (sorted) order.
+	 */
+	public static ArrayList<File> findProjectFiles(File directory) {
+		ArrayList<File> files = new ArrayList<File>();
+		findProjectFiles(directory, files);
+		return files;
+	}
+	
+	private static void findProjectFiles(File directory, ArrayList<File> files) {
+		File[] children = directory.listFiles();
+		
+		if (children == null) {
+			return;
+		}
+		
+		Arrays.sort(children);
+		
+		for (int i = 0; i < children.length; i++) {
+			File f = children[i];
+			
+			if (f.isDirectory()) {
+				findProjectFiles(f, files);
+			} else if (ClearDialogueAutoIO.isSupportedFile(f) && !isAutosaveFile(f)) {
+				files.add(f);
+			}
+		}
+	}
+	
+	/**
+	 * Names a project file after its path relative to the directory, using / as the separator and without the file extension 
+	 * (I.E. <code>general/Shopkeeper</code>). This is used instead of the Project name, since those aren't guaranteed to be unique.
+	 */
+	public static String getProjectFileName(File directory, File f) {
+		String name = directory.toPath().relativize(f.toPath()).toString().replace(File.separatorChar, '/');
+		int extension = name.lastIndexOf('.');
+		
+		return (extension > name.lastIndexOf('/') ? name.substring(0, extension) : name);
+	}
+	
+	/**
+	 * Names the file that an editor autosaves a project file to. It's kept next to the project file in the same format (I.E. 
+	 * <code>Shopkeeper.autosave.json</code> for <code>Shopkeeper.json</code>), so that the project file itself is only written when the user saves it.
+	 */
+	public static File getAutosaveFile(File f) {
+		return getAutosaveFile(f, AUTOSAVE_MARKER);
+	}
+	
+	/**
+	 * Same as <code>getAutosaveFile()</code>, but stamped with the current time (I.E. <code>Shopkeeper.autosave-20240101-120000.json</code>), so 
+	 * that it isn't overwritten by later autosaves. Used to keep work that would otherwise be replaced (I.E. when the project file is changed by 
+	 * something else).
+	 */
+	public static File getTimestampedAutosaveFile(File f) {
+		String marker = AUTOSAVE_MARKER + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		File autosave = getAutosaveFile(f, marker);
+		
+		for (int i = 2; autosave.exists(); i++) {
+			autosave = getAutosaveFile(f, marker + "-" + i);
+		}
+		
+		return autosave;
+	}
+	
+	private static File getAutosaveFile(File f, String marker) {
+		String name = f.getName();
+		int extension = name.lastIndexOf('.');
+		
+		String autosaveName = (extension > 0 ? name.substring(0, extension) + marker + name.substring(extension) : name + marker);
+		return new File(f.getAbsoluteFile().getParentFile(), autosaveName);
+	}
+	
+	/**
+	 * @return true if the file is named like one of the files returned by <code>getAutosaveFile()</code> or <code>getTimestampedAutosaveFile()</code>
+	 */
+	public static boolean isAutosaveFile(File f) {
+		String name = f.getName();
+		int extension = name.lastIndexOf('.');
+		
+		return AUTOSAVE_NAME.matcher(extension > 0 ? name.substring(0, extension) : name).matches();
+	}
+}
@@ -0,0 +1,145 @@
+package nokori.clear_dialogue.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * Holds a Project loaded from a file and swaps in a freshly loaded copy whenever the file changes (I.E. while a writer edits it, or a build regenerates it).
+ *
+ * <br><br>The new Project is fully loaded before it replaces the old one, so <code>get()</code> always returns a complete Project. If a reload fails
+ * (I.E. the file is broken part way through an edit), the old Project is kept.
+ *
+ * <br><br>Projects are swapped in as a whole, so hold on to the Project returned by <code>get()</code> for as long as it needs to stay consistent
+ * (I.E. for a whole conversation), and call <code>get()</code> again for the next one.
+ */
+public class ReloadableProject {
+
+	private final File file;
+	private final ClearDialogueIO io;
+
+	private volatile Project project;
+	private volatile Exception lastError;
+
+	private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private FileWatcher watcher;
+	private FileWatcher.Listener watchListener;
+
+	/**
+	 * Loads the project file using ClearDialogueAutoIO.
+	 */
+	public ReloadableProject(File file) throws Exception {
+		this(file, new ClearDialogueAutoIO());
+	}
+
+	/**
+	 * Loads the project file using the given ClearDialogueIO.
+	 */
+	public ReloadableProject(File file, ClearDialogueIO io) throws Exception {
+		this.file = file;
+		this.io = io;
+
+		project = io.importProject(file);
+	}
+
+	/**
+	 * @return the most recently loaded Project.
+	 */
+	public Project get() {
+		return project;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the exception that the last reload failed with, or null if it succeeded.
+	 */
+	public Exception getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Loads the file again and swaps the new Project in. If it fails to load, the current Project is kept and the listeners are told about the failure.
+	 *
+	 * @return true if the Project was reloaded
+	 */
+	public boolean reload() {
+		Project reloaded;
+
+		try {
+			reloaded = io.importProject(file);
+		} catch (Exception e) {
+			lastError = e;
+
+			for (Listener listener : listeners) {
+				listener.reloadFailed(this, e);
+			}
+
+			return false;
+		}
+
+		project = reloaded;
+		lastError = null;
+
+		for (Listener listener : listeners) {
+			listener.projectReloaded(this, reloaded);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reloads the Project automatically whenever the file changes. Reloads happen on the FileWatcher's thread.
+	 */
+	public synchronized void watch(FileWatcher watcher) throws IOException {
+		unwatch();
+
+		this.watcher = watcher;
+
+		watchListener = new FileWatcher.Listener() {
+
+			@Override
+			public void fileChanged(File f) {
+				reload();
+			}
+		};
+
+		watcher.watch(file, watchListener);
+	}
+
+	/**
+	 * Stops reloading the Project when the file changes.
+	 */
+	public synchronized void unwatch() {
+		if (watcher != null) {
+			watcher.unwatch(file, watchListener);
+			watcher = null;
+			watchListener = null;
+		}
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	public interface Listener {
+		/**
+		 * Called after a new Project has been swapped in.
+		 */
+		public void projectReloaded(ReloadableProject source, Project project);
+
+		/**
+		 * Called when the file changed but couldn't be loaded. The previous Project is still in use.
+		 */
+		public void reloadFailed(ReloadableProject source, Exception e);
+	}
+}
@@ -0,0 +1,406 @@
+package nokori.clear_dialogue.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueResponse.Response;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+import nokori.clear_dialogue.throwable.InvalidProjectFileException;
+
+/**
+ * Exports the translatable text of a Project to a spreadsheet (CSV or TSV) and applies translated sheets back onto a Project, so that text can be
+ * round-tripped through localization vendors.
+ *
+ * <br><br>Every row is one string, keyed by the UID of its node and (for responses) the index of the response:
+ *
+ * <pre>
+ * UID, Field, Response, Text
+ * &lt;uid&gt;, title, , ...
+ * &lt;uid&gt;, tags, , ...
+ * &lt;uid&gt;, text, , ...        (DialogueText)
+ * &lt;uid&gt;, response, 0, ...   (DialogueResponse, one row per response)
+ * </pre>
+ *
+ * Fields are quoted as in RFC 4180 when they contain the delimiter, quotes, or line breaks, for both CSV and TSV. Files are written as UTF-8 with a
+ * byte order mark so that spreadsheet programs detect the encoding.
+ *
+ * <br><br>Both directions stream one row at a time. Applying a sheet looks each row's node up by UID in the Project's UID index (a hash join against
+ * the Project), so the only memory used beyond the Project itself is the current row.
+ */
+public class TranslationSheet {
+
+	public static final String FIELD_TITLE = "title";
+	public static final String FIELD_TAGS = "tags";
+	public static final String FIELD_TEXT = "text";
+	public static final String FIELD_RESPONSE = "response";
+
+	private static final String[] HEADER = { "UID", "Field", "Response", "Text" };
+
+	private static final char BYTE_ORDER_MARK = '\uFEFF';
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public enum Format {
+		CSV(','),
+		TSV('\t');
+
+		private final char delimiter;
+
+		private Format(char delimiter) {
+			this.delimiter = delimiter;
+		}
+
+		public char getDelimiter() {
+			return delimiter;
+		}
+
+		/**
+		 * @return TSV for .tsv and .tab files, otherwise CSV
+		 */
+		public static Format of(File f) {
+			String name = f.getName().toLowerCase(Locale.ENGLISH);
+			return (name.endsWith(".tsv") || name.endsWith(".tab") ? TSV : CSV);
+		}
+	}
+
+	/*
+	 *
+	 * Exporting
+	 *
+	 */
+
+	/**
+	 * Writes the sheet to the given file, in the format that matches its extension (see <code>Format.of()</code>).
+	 */
+	public static void exportSheet(Project project, File f) throws Exception {
+		Format format = Format.of(f);
+
+		AtomicFileWriter.write(f, new AtomicFileWriter.WriteAction() {
+
+			@Override
+			public void write(OutputStream out) throws Exception {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+				exportSheet(project, writer, format);
+				writer.flush();
+			}
+		});
+	}
+
+	/**
+	 * Writes the sheet to the given Writer. The Writer isn't flushed or closed.
+	 */
+	public static void exportSheet(Project project, Writer out, Format format) throws IOException {
+		char delimiter = format.getDelimiter();
+
+		out.write(BYTE_ORDER_MARK);
+		writeRow(out, delimiter, HEADER[0], HEADER[1], HEADER[2], HEADER[3]);
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+			String uid = node.getUID();
+
+			writeRow(out, delimiter, uid, FIELD_TITLE, "", node.getTitle());
+			writeRow(out, delimiter, uid, FIELD_TAGS, "", node.getTags());
+
+			if (node instanceof DialogueText) {
+				writeRow(out, delimiter, uid, FIELD_TEXT, "", ((DialogueText) node).getText());
+			}
+
+			if (node instanceof DialogueResponse) {
+				ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+
+				for (int j = 0; j < responses.size(); j++) {
+					writeRow(out, delimiter, uid, FIELD_RESPONSE, Integer.toString(j), responses.get(j).getText());
+				}
+			}
+		}
+	}
+
+	private static void writeRow(Writer out, char delimiter, String uid, String field, String response, String text) throws IOException {
+		writeField(out, delimiter, uid);
+		out.write(delimiter);
+		writeField(out, delimiter, field);
+		out.write(delimiter);
+		writeField(out, delimiter, response);
+		out.write(delimiter);
+		writeField(out, delimiter, text);
+		out.write("\r\n");
+	}
+
+	private static void writeField(Writer out, char delimiter, String s) throws IOException {
+		if (s == null) {
+			return;
+		}
+
+		boolean quote = false;
+
+		for (int i = 0; i < s.length() && !quote; i++) {
+			char c = s.charAt(i);
+			quote = (c == delimiter || c == '"' || c == '\n' || c == '\r');
+		}
+
+		if (!quote) {
+			out.write(s);
+			return;
+		}
+
+		out.write('"');
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			if (c == '"') {
+				out.write('"');
+			}
+
+			out.write(c);
+		}
+
+		out.write('"');
+	}
+
+	/*
+	 *
+	 * Applying
+	 *
+	 */
+
+	/**
+	 * Applies the sheet in the given file to the Project, in the format that matches its extension (see <code>Format.of()</code>).
+	 */
+	public static Result applySheet(Project project, File f) throws Exception {
+		try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			return applySheet(project, in, Format.of(f));
+		}
+	}
+
+	/**
+	 * Applies the sheet read from the given Reader to the Project. Rows with an empty Text are treated as untranslated and leave the Project's text
+	 * as it is. Rows for nodes or responses that aren't in the Project are counted and skipped.
+	 *
+	 * @throws InvalidProjectFileException if the sheet doesn't have the expected columns, or a row is malformed
+	 */
+	public static Result applySheet(Project project, Reader in, Format format) throws IOException, InvalidProjectFileException {
+		RowReader reader = new RowReader(in, format.getDelimiter());
+		Result result = new Result();
+
+		if (!reader.next() || reader.size() < HEADER.length || !HEADER[0].equals(reader.get(0))) {
+			throw new InvalidProjectFileException("translation sheet is missing its header row");
+		}
+
+		while (reader.next()) {
+			//Blank lines (I.E. at the end of the file) are skipped
+			if (reader.size() == 1 && reader.get(0).isEmpty()) {
+				continue;
+			}
+
+			result.rows++;
+
+			if (reader.size() < HEADER.length) {
+				throw new InvalidProjectFileException("row " + reader.getRowNumber() + " has " + reader.size() + " columns, expected " + HEADER.length);
+			}
+
+			String text = reader.get(3);
+
+			if (text.isEmpty()) {
+				result.untranslated++;
+				continue;
+			}
+
+			Dialogue node = project.getDialogue(reader.get(0));
+
+			if (node == null || !apply(node, reader.get(1), reader.get(2), text)) {
+				result.unmatched++;
+				continue;
+			}
+
+			result.applied++;
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return false if the node doesn't have the field the row refers to
+	 */
+	private static boolean apply(Dialogue node, String field, String response, String text) throws InvalidProjectFileException {
+		switch (field) {
+		case FIELD_TITLE:
+			node.setTitle(text);
+			return true;
+		case FIELD_TAGS:
+			node.setTags(text);
+			return true;
+		case FIELD_TEXT:
+			if (node instanceof DialogueText) {
+				((DialogueText) node).setText(text);
+				return true;
+			}
+
+			return false;
+		case FIELD_RESPONSE:
+			if (node instanceof DialogueResponse) {
+				ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+				int index;
+
+				try {
+					index = Integer.parseInt(response.trim());
+				} catch (NumberFormatException e) {
+					throw new InvalidProjectFileException("invalid response index \"" + response + "\" for node " + node.getUID());
+				}
+
+				if (index >= 0 && index < responses.size()) {
+					responses.get(index).setText(text);
+					return true;
+				}
+			}
+
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * How many rows of a sheet were applied to the Project.
+	 */
+	public static class Result {
+		private int rows, applied, untranslated, unmatched;
+
+		public int getNumRows() {
+			return rows;
+		}
+
+		/**
+		 * @return the number of rows whose text was written into the Project
+		 */
+		public int getNumApplied() {
+			return applied;
+		}
+
+		/**
+		 * @return the number of rows with an empty Text, which were left as they were
+		 */
+		public int getNumUntranslated() {
+			return untranslated;
+		}
+
+		/**
+		 * @return the number of rows for nodes, fields, or responses that aren't in the Project
+		 */
+		public int getNumUnmatched() {
+			return unmatched;
+		}
+
+		@Override
+		public String toString() {
+			return rows + " rows: " + applied + " applied, " + untranslated + " untranslated, " + unmatched + " unmatched";
+		}
+	}
+
+	/**
+	 * Reads RFC 4180 style rows one at a time. The fields of the current row are reused for the next one.
+	 */
+	private static class RowReader {
+		private final Reader in;
+		private final char delimiter;
+
+		private final ArrayList<String> fields = new ArrayList<String>();
+		private final StringBuilder field = new StringBuilder();
+
+		private int rowNumber = 0;
+		private boolean first = true;
+
+		private RowReader(Reader in, char delimiter) {
+			this.in = in;
+			this.delimiter = delimiter;
+		}
+
+		/**
+		 * @return false once the end of the input has been reached
+		 */
+		private boolean next() throws IOException, InvalidProjectFileException {
+			fields.clear();
+			field.setLength(0);
+
+			int c = in.read();
+
+			if (first && c == BYTE_ORDER_MARK) {
+				c = in.read();
+			}
+
+			first = false;
+
+			if (c == -1) {
+				return false;
+			}
+
+			rowNumber++;
+
+			boolean quoted = false;
+			boolean fieldStart = true;
+
+			while (true) {
+				if (quoted) {
+					if (c == -1) {
+						throw new InvalidProjectFileException("row " + rowNumber + " has an unclosed quote");
+					}
+
+					if (c == '"') {
+						c = in.read();
+
+						if (c != '"') {
+							quoted = false;
+							continue;
+						}
+					}
+
+					field.append((char) c);
+				} else if (c == '"' && fieldStart) {
+					quoted = true;
+				} else if (c == delimiter) {
+					fields.add(field.toString());
+					field.setLength(0);
+					fieldStart = true;
+					c = in.read();
+					continue;
+				} else if (c == '\n' || c == -1) {
+					break;
+				} else if (c != '\r') {
+					field.append((char) c);
+				}
+
+				fieldStart = false;
+				c = in.read();
+			}
+
+			fields.add(field.toString());
+			return true;
+		}
+
+		private int size() {
+			return fields.size();
+		}
+
+		private String get(int index) {
+			return fields.get(index);
+		}
+
+		private int getRowNumber() {
+			return rowNumber;
+		}
+	}
+}
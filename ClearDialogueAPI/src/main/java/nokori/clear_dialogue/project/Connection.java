@@ -1,5 +1,6 @@
 package nokori.clear_dialogue.project;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 /**
@@ -62,4 +63,11 @@ public class Connection implements Serializable {
 	public boolean matches(Connection connection) {
 		return (connection.connector1 == connector1 && connection.connector2 == connector2 || connection.connector1 == connector2 && connection.connector2 == connector1);
 	}
+	
+	/**
+	 * A Connection is serialized as its Project and its index in it (see ProjectSerialization).
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return new ProjectSerialization.ConnectionForm(this);
+	}
 }
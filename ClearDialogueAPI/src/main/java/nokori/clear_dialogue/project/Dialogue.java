@@ -1,5 +1,6 @@
 package nokori.clear_dialogue.project;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.rmi.server.UID;
 import java.util.ArrayList;
@@ -16,8 +17,8 @@ public abstract class Dialogue implements Serializable {
 	//Store the Project object for reference (I.E. seeing if a DialogueNode is a part of Project X when loaded into a game)
 	private Project project;
 	
-	//Give every node a unique ID for potential saving/loading/usage purposes
-	private String uid = new UID().toString();
+	//Give every node a unique ID for potential saving/loading/usage purposes (generated by the constructor if one isn't given)
+	private String uid;
 	
 	//Basic user-settable information
 	private String title;
@@ -27,6 +28,10 @@ public abstract class Dialogue implements Serializable {
 	
 	//Connector so that other nodes can input into this one
 	private DialogueConnector inConnector;
+	
+	//Cached by getContentHash() until the node is next changed (see markModified())
+	private transient long contentHash;
+	private transient boolean contentHashValid = false;
 
 	/**
 	 * This constructor allows you to input the UID as well, for in cases where you're trying to load a copy of a dialogue node from a file.
@@ -78,6 +83,23 @@ public abstract class Dialogue implements Serializable {
 	public Project getProject() {
 		return project;
 	}
+	
+	/**
+	 * Moves this Dialogue and its connectors over to the given Project (I.E. when Projects are merged).
+	 */
+	void setProject(Project project) {
+		this.project = project;
+		
+		ArrayList<DialogueConnector> connectors = getAllConnectors();
+		
+		for (int i = 0; i < connectors.size(); i++) {
+			DialogueConnector connector = connectors.get(i);
+			
+			if (connector != null) {
+				connector.setProject(project);
+			}
+		}
+	}
 
 	public String getUID() {
 		return uid;
@@ -89,6 +111,7 @@ public abstract class Dialogue implements Serializable {
 
 	public void setTitle(String title) {
 		this.title = title;
+		markModified();
 	}
 
 	public String getTags() {
@@ -97,6 +120,7 @@ public abstract class Dialogue implements Serializable {
 
 	public void setTags(String tags) {
 		this.tags = tags;
+		markModified();
 	}
 	
 	public void setPosition(float x, float y) {
@@ -110,6 +134,7 @@ public abstract class Dialogue implements Serializable {
 
 	public void setX(float x) {
 		this.x = x;
+		markModified();
 	}
 
 	public float getY() {
@@ -118,6 +143,7 @@ public abstract class Dialogue implements Serializable {
 	
 	public void setY(float y) {
 		this.y = y;
+		markModified();
 	}
 
 	public boolean isExpanded() {
@@ -126,9 +152,11 @@ public abstract class Dialogue implements Serializable {
 
 	public void setExpanded(boolean expanded) {
 		this.expanded = expanded;
+		markModified();
 	}
 
 	public void setInConnector(DialogueConnector inConnector) {
+		notifyConnectorChanged(this.inConnector, inConnector);
 		this.inConnector = inConnector;
 	}
 
@@ -136,6 +164,116 @@ public abstract class Dialogue implements Serializable {
 		return inConnector;
 	}
 	
+	/**
+	 * Implementations must call this whenever one of their connectors is added, replaced, or removed, so that the Project's UID index stays in sync. 
+	 * Either connector can be null.
+	 */
+	void notifyConnectorChanged(DialogueConnector oldConnector, DialogueConnector newConnector) {
+		if (project != null && project.containsDialogue(this)) {
+			project.unregisterConnector(oldConnector);
+			project.registerConnector(newConnector);
+		}
+		
+		markModified();
+	}
+	
+	/**
+	 * Gives this Dialogue and its connectors new UIDs, I.E. when it's merged into a Project that already uses them. Only valid while the Dialogue isn't
+	 * indexed by a Project.
+	 */
+	void assignNewUIDs() {
+		uid = new UID().toString();
+		
+		ArrayList<DialogueConnector> connectors = getAllConnectors();
+		
+		for (int i = 0; i < connectors.size(); i++) {
+			if (connectors.get(i) != null) {
+				connectors.get(i).assignNewUID();
+			}
+		}
+		
+		contentHashValid = false;
+	}
+	
+	/**
+	 * Implementations must call this whenever their content changes, so that the Project knows it has unsaved changes and the content hash is recomputed.
+	 */
+	protected void markModified() {
+		contentHashValid = false;
+		
+		if (project != null) {
+			project.markModified(this);
+		}
+	}
+	
+	/**
+	 * Computes a 64-bit fingerprint of everything that gets saved for this Dialogue: its type, UID, title, tags, position, expanded state,
+	 * connector UIDs, and content. Two nodes with the same hash can be treated as unchanged (I.E. when working out what to write in an incremental save).
+	 * <br><br>
+	 * Connections aren't included, since those belong to the Project.
+	 * <br><br>
+	 * The hash is cached until the next <code>markModified()</code>, so comparing an unchanged node again (I.E. in ProjectDiff) is O(1).
+	 *
+	 * @return the content hash of this Dialogue
+	 */
+	public long getContentHash() {
+		if (contentHashValid) {
+			return contentHash;
+		}
+		
+		long h = FNV_OFFSET_BASIS;
+		h = hash(h, getClass().getName());
+		h = hash(h, uid);
+		h = hash(h, title);
+		h = hash(h, tags);
+		h = hash(h, Float.floatToIntBits(x));
+		h = hash(h, Float.floatToIntBits(y));
+		h = hash(h, expanded ? 1 : 0);
+
+		ArrayList<DialogueConnector> connectors = getAllConnectors();
+
+		for (int i = 0; i < connectors.size(); i++) {
+			DialogueConnector connector = connectors.get(i);
+			h = hash(h, (connector != null ? connector.getUID() : null));
+		}
+
+		contentHash = hash(h, getRenderableContent());
+		contentHashValid = true;
+
+		return contentHash;
+	}
+
+	/*
+	 *
+	 * 64-bit FNV-1a, fed one char (or int) at a time. Strings are terminated with a
+	 * separator so that "ab" + "c" and "a" + "bc" don't hash the same.
+	 *
+	 */
+
+	private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	private static long hash(long h, String s) {
+		if (s == null) {
+			return hash(h, -1);
+		}
+
+		for (int i = 0; i < s.length(); i++) {
+			h = (h ^ s.charAt(i)) * FNV_PRIME;
+		}
+
+		return (h ^ 0xFFFF) * FNV_PRIME;
+	}
+
+	private static long hash(long h, int value) {
+		for (int i = 0; i < 4; i++) {
+			h = (h ^ (value & 0xFF)) * FNV_PRIME;
+			value >>>= 8;
+		}
+
+		return h;
+	}
+
 	/**
 	 * Utility function for getting all DialogueNodeConnectors that this DialogueNode has.
 	 */
@@ -154,4 +292,22 @@ public abstract class Dialogue implements Serializable {
 	 * @return the duplicated node.
 	 */
 	public abstract Dialogue duplicate();
+	
+	/**
+	 * Makes an exact copy of this Dialogue for the given Project, keeping the UIDs of the node and its connectors. Unlike <code>duplicate()</code>, this is
+	 * meant for copying a whole Project (see <code>Project.copy()</code>), where the copy stands in for the original. The copy isn't added to the Project.
+	 * 
+	 * Project.copy() is used by autosaving, background exports, partial imports, and merging, so every implementation has to support it.
+	 * 
+	 * @return the copied node.
+	 */
+	public abstract Dialogue copy(Project project);
+	
+	/**
+	 * A Dialogue is serialized as its Project and its index in it, so that serializing one node doesn't copy the Project's object graph field by field
+	 * (see ProjectSerialization).
+	 */
+	protected Object writeReplace() throws ObjectStreamException {
+		return new ProjectSerialization.DialogueForm(this);
+	}
 }
@@ -1,5 +1,6 @@
 package nokori.clear_dialogue.project;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.rmi.server.UID;
 
@@ -41,11 +42,22 @@ public class DialogueConnector implements Serializable {
 	public String getUID() {
 		return uid;
 	}
+	
+	/**
+	 * Only called through <code>Dialogue.assignNewUIDs()</code>, while the connector isn't indexed by a Project.
+	 */
+	void assignNewUID() {
+		uid = new UID().toString();
+	}
 
 	public Dialogue getParent() {
 		return parent;
 	}
 	
+	void setProject(Project project) {
+		this.project = project;
+	}
+	
 	/*
 	 * 
 	 * Various shortcut functions for managing connections so that the user
@@ -79,18 +91,14 @@ public class DialogueConnector implements Serializable {
 	 * Get the DialogueNodeConnector that this one is connected to. 
 	 * 
 	 * Note: it finds the first instance of a connection with this connector and returns that. 
-	 * If you're scanning an In-Connector (can have multiple connections), then use the Project and 
-	 * iterate through the Connections manually.
+	 * If you're scanning an In-Connector (can have multiple connections), then use 
+	 * Project.getNumConnections(connector) and Project.getConnection(connector, index) instead.
 	 * 
 	 * @return
 	 */
 	public DialogueConnector getConnectedTo() {
-		for (int i = 0; i < project.getNumConnections(); i++) {
-			Connection c = project.getConnection(i);
-			
-			if (c.contains(this)) {
-				return c.getOther(this);
-			}
+		if (project.getNumConnections(this) > 0) {
+			return project.getConnection(this, 0).getOther(this);
 		}
 		
 		return null;
@@ -105,4 +113,11 @@ public class DialogueConnector implements Serializable {
 		DialogueConnector connector = getConnectedTo();
 		return (connector != null ? connector.getParent() : null);
 	} 
+	
+	/**
+	 * A DialogueConnector is serialized as its parent and its index in it (see ProjectSerialization).
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return new ProjectSerialization.ConnectorForm(this);
+	}
 }
@@ -0,0 +1,127 @@
+package nokori.clear_dialogue.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Looks Dialogue up by dense integer IDs instead of by string, so that finding a node is an array access rather than a scan over every node.
+ *
+ * <br><br>The IDs are the indices of the keys (tags or titles) the index was created with. They're meant to be used with the constants generated by
+ * DialogueConstantsGenerator, I.E. <code>project.createTagIndex(IntroDialogue.TAGS).get(IntroDialogue.TAG_DIALOGUE_START)</code>, so that typos
+ * in keys are caught by the compiler. Keys are matched exactly.
+ *
+ * <br><br>Create an index once and keep it. It rebuilds itself on its next lookup whenever the Project has been modified since it was last built.
+ */
+public class DialogueIndex {
+
+	private static final Dialogue[] NO_DIALOGUE = new Dialogue[0];
+
+	private final Project project;
+	private final String[] keys;
+	private final boolean tags;
+
+	//The ID of each key, for looking IDs up by key
+	private final HashMap<String, Integer> ids;
+
+	//The nodes found for each ID, in the order they're in the Project
+	private Dialogue[][] dialogue;
+	private long modificationCount;
+
+	DialogueIndex(Project project, String[] keys, boolean tags) {
+		this.project = project;
+		this.keys = keys.clone();
+		this.tags = tags;
+
+		ids = new HashMap<String, Integer>(Math.max(16, (int) (keys.length / 0.75f) + 1));
+
+		for (int i = 0; i < keys.length; i++) {
+			ids.putIfAbsent(keys[i], i);
+		}
+	}
+
+	/**
+	 * @return the first Dialogue with the key of the given ID, or null if the Project doesn't have one
+	 */
+	public Dialogue get(int id) {
+		Dialogue[] found = getDialogue()[id];
+		return (found.length > 0 ? found[0] : null);
+	}
+
+	/**
+	 * @return all of the Dialogue with the key of the given ID, in the order they're in the Project
+	 */
+	public List<Dialogue> getAll(int id) {
+		List<Dialogue> found = new ArrayList<Dialogue>(getDialogue()[id].length);
+		Collections.addAll(found, getDialogue()[id]);
+		return found;
+	}
+
+	public boolean contains(int id) {
+		return (getDialogue()[id].length > 0);
+	}
+
+	/**
+	 * @return the ID of the given key, or -1 if this index wasn't created with it
+	 */
+	public int getID(String key) {
+		Integer id = ids.get(key);
+		return (id != null ? id : -1);
+	}
+
+	public String getKey(int id) {
+		return keys[id];
+	}
+
+	public int getNumKeys() {
+		return keys.length;
+	}
+
+	/**
+	 * @return true if this index looks Dialogue up by tag, false if it looks them up by title
+	 */
+	public boolean isTagIndex() {
+		return tags;
+	}
+
+	private Dialogue[][] getDialogue() {
+		if (dialogue == null || modificationCount != project.getModificationCount()) {
+			rebuild();
+		}
+
+		return dialogue;
+	}
+
+	private void rebuild() {
+		ArrayList<ArrayList<Dialogue>> found = new ArrayList<ArrayList<Dialogue>>(keys.length);
+
+		for (int i = 0; i < keys.length; i++) {
+			found.add(null);
+		}
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+			Integer id = ids.get(tags ? node.getTags() : node.getTitle());
+
+			if (id != null) {
+				if (found.get(id) == null) {
+					found.set(id, new ArrayList<Dialogue>(1));
+				}
+
+				found.get(id).add(node);
+			}
+		}
+
+		Dialogue[][] dialogue = new Dialogue[keys.length][];
+
+		for (int i = 0; i < keys.length; i++) {
+			//Duplicate keys share the nodes of their first occurrence
+			ArrayList<Dialogue> nodes = found.get(ids.get(keys[i]));
+			dialogue[i] = (nodes != null ? nodes.toArray(new Dialogue[nodes.size()]) : NO_DIALOGUE);
+		}
+
+		this.dialogue = dialogue;
+		this.modificationCount = project.getModificationCount();
+	}
+}
@@ -1,5 +1,6 @@
 package nokori.clear_dialogue.project;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -50,7 +51,7 @@ public class DialogueResponse extends Dialogue {
 		
 		//Add the new content (overwriting text on existing responses in matching indices so that connections can be reused)
 		for (int i = 0; i < s.length; i++) {
-			if (responses.size() < i) {
+			if (i < responses.size()) {
 				responses.get(i).setText(s[i]);
 			} else {
 				addResponse(s[i]);
@@ -60,7 +61,11 @@ public class DialogueResponse extends Dialogue {
 		//Remove responses outside the range of the new content
 		if (s.length < responses.size()) {
 			for (int i = s.length; i < responses.size(); i++) {
-				responses.get(i).getOutConnector().disconnectAll();
+				DialogueConnector outConnector = responses.get(i).getOutConnector();
+				
+				outConnector.disconnectAll();
+				notifyConnectorChanged(outConnector, null);
+				
 				responses.remove(i);
 				i--;
 			}
@@ -101,11 +106,16 @@ public class DialogueResponse extends Dialogue {
 	 * Shortcut function for adding a new response to this node.
 	 */
 	public void addResponse(String text) {
-		responses.add(new Response(text, new DialogueConnector(getProject(), this)));
+		addResponse(new Response(text, new DialogueConnector(getProject(), this)));
 	}
 	
 	public void addResponse(String text, String outConnectorUID) {
-		responses.add(new Response(text, new DialogueConnector(getProject(), this, outConnectorUID)));
+		addResponse(new Response(text, new DialogueConnector(getProject(), this, outConnectorUID)));
+	}
+	
+	private void addResponse(Response response) {
+		responses.add(response);
+		notifyConnectorChanged(null, response.getOutConnector());
 	}
 
 	public void addResponses(String[] text) {
@@ -136,6 +146,7 @@ public class DialogueResponse extends Dialogue {
 
 		public void setText(String text) {
 			this.text = text;
+			markModified();
 		}
 
 		public DialogueConnector getOutConnector() {
@@ -143,8 +154,16 @@ public class DialogueResponse extends Dialogue {
 		}
 
 		public void setOutConnector(DialogueConnector outConnector) {
+			notifyConnectorChanged(this.outConnector, outConnector);
 			this.outConnector = outConnector;
 		}
+		
+		/**
+		 * A Response is serialized as its DialogueResponse and its index in it (see ProjectSerialization).
+		 */
+		private Object writeReplace() throws ObjectStreamException {
+			return new ProjectSerialization.ResponseForm(DialogueResponse.this, this);
+		}
 	}
 
 	@Override
@@ -153,4 +172,17 @@ public class DialogueResponse extends Dialogue {
 		node.responses.addAll(responses);
 		return node;
 	}
+	
+	@Override
+	public Dialogue copy(Project project) {
+		DialogueResponse node = new DialogueResponse(project, getUID(), getTitle(), getTags(), getX(), getY(), isExpanded());
+		node.setInConnector(new DialogueConnector(project, node, getInConnector().getUID()));
+		node.responses.ensureCapacity(responses.size());
+		
+		for (int i = 0; i < responses.size(); i++) {
+			node.addResponse(responses.get(i).getText(), responses.get(i).getOutConnector().getUID());
+		}
+		
+		return node;
+	}
 }
\ No newline at end of file
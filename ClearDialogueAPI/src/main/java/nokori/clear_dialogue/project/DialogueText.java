@@ -35,11 +35,13 @@ public class DialogueText extends Dialogue {
 	@Override
 	public void parseAndSetContent(String content) {
 		text = content;
+		markModified();
 	}
 	
 	@Override
 	public void parseAndAddContent(String content) {
 		text += content;
+		markModified();
 	}
 	
 	public String getText() {
@@ -48,9 +50,11 @@ public class DialogueText extends Dialogue {
 
 	public void setText(String text) {
 		this.text = text;
+		markModified();
 	}
 
 	public void setOutConnector(DialogueConnector outConnector) {
+		notifyConnectorChanged(this.outConnector, outConnector);
 		this.outConnector = outConnector;
 	}
 
@@ -79,4 +83,12 @@ public class DialogueText extends Dialogue {
 		node.text = text;
 		return node;
 	}
+	
+	@Override
+	public Dialogue copy(Project project) {
+		DialogueText node = new DialogueText(project, getUID(), getTitle(), getTags(), getX(), getY(), isExpanded(), text);
+		node.setInConnector(new DialogueConnector(project, node, getInConnector().getUID()));
+		node.setOutConnector(new DialogueConnector(project, node, outConnector.getUID()));
+		return node;
+	}
 }
@@ -1,11 +1,16 @@
 package nokori.clear_dialogue.project;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Stack;
 
+import nokori.clear_dialogue.runtime.CompiledProject;
+
 /**
  * This class represents the Project, containing a list of all the nodes that the user has made, along with the project name.
  *
@@ -30,6 +35,23 @@ public class Project implements Serializable {
 	//All connections between the various nodes are stored here
 	private ArrayList<Connection> connections = new ArrayList<Connection>();
 	
+	//The position of each Connection in the list above and in the adjacency lists of its connectors (see below), so that a Connection can be removed
+	//by swapping the last one into each of its places instead of shifting the lists
+	private HashMap<Connection, ConnectionSlot> connectionSlots = new HashMap<Connection, ConnectionSlot>();
+	
+	//UID lookup tables for the nodes and connectors in this project, so that they can be fetched without scanning every node
+	private HashMap<String, Dialogue> dialogueIndex = new HashMap<String, Dialogue>();
+	private HashMap<String, DialogueConnector> connectorIndex = new HashMap<String, DialogueConnector>();
+	
+	//The connections attached to each connector, so that a node's links (in either direction) can be found without scanning every connection
+	private HashMap<DialogueConnector, ArrayList<Connection>> adjacency = new HashMap<DialogueConnector, ArrayList<Connection>>();
+	
+	//Incremented on every change to the project or its nodes, so that editors can tell when there's unsaved work
+	private transient long modificationCount;
+	
+	//Records which nodes and connections changed, for incremental saves (see trackChanges()). Full copies share it with the Project they came from.
+	private transient ProjectChangeLog changeLog;
+	
 	public Project(int version, String name, float viewportX, float viewportY, float viewportScale) {
 		this.version = version;
 		this.name = name;
@@ -45,6 +67,13 @@ public class Project implements Serializable {
 	public int getVersion() {
 		return version;
 	}
+	
+	/**
+	 * Used by importers to record the version of the file that the Project was loaded from.
+	 */
+	public void setVersion(int version) {
+		this.version = version;
+	}
 
 	public String getName() {
 		return name;
@@ -52,6 +81,7 @@ public class Project implements Serializable {
 
 	public void setName(String name) {
 		this.name = name;
+		countModification();
 	}
 	
 	public void setViewportPosition(float viewportX, float viewportY) {
@@ -65,6 +95,7 @@ public class Project implements Serializable {
 
 	public void setViewportX(float viewportX) {
 		this.viewportX = viewportX;
+		countModification();
 	}
 
 	public float getViewportY() {
@@ -73,6 +104,7 @@ public class Project implements Serializable {
 
 	public void setViewportY(float viewportY) {
 		this.viewportY = viewportY;
+		countModification();
 	}
 	
 	public float getViewportScale() {
@@ -81,6 +113,84 @@ public class Project implements Serializable {
 
 	public void setViewportScale(float viewportScale) {
 		this.viewportScale = viewportScale;
+		countModification();
+	}
+	
+	/**
+	 * Records that something in this Project has changed. This is called automatically by the setters of the Project and its nodes, but it can be called
+	 * manually for changes made outside of them (I.E. editing the list returned by <code>DialogueResponse.getResponses()</code> directly).
+	 * 
+	 * If changes are being tracked (see <code>trackChanges()</code>), a manual call can't say what changed, so the next incremental save writes the whole Project.
+	 */
+	public void markModified() {
+		countModification();
+		
+		if (isRecordingChanges()) {
+			changeLog.unlistedChange(modificationCount);
+		}
+	}
+	
+	/**
+	 * Records that the given node was added, changed or removed.
+	 */
+	void markModified(Dialogue dialogue) {
+		countModification();
+		
+		if (isRecordingChanges()) {
+			changeLog.nodeChanged(dialogue, modificationCount);
+		}
+	}
+	
+	private void markModified(Connection connection) {
+		countModification();
+		
+		if (isRecordingChanges()) {
+			changeLog.connectionChanged(connection, modificationCount);
+		}
+	}
+	
+	private void countModification() {
+		modificationCount++;
+	}
+	
+	private boolean isRecordingChanges() {
+		return (changeLog != null && changeLog.project == this);
+	}
+	
+	/**
+	 * Returns a counter that goes up every time this Project or one of its nodes is changed. If it differs from the value recorded at the last save, 
+	 * the Project has unsaved changes.
+	 */
+	public long getModificationCount() {
+		return modificationCount;
+	}
+	
+	/**
+	 * Starts recording which nodes and connections are added, changed or removed, so that incremental savers (I.E. ClearDialogueJournalIO) only have to
+	 * look at those. Changes made before this call aren't recorded.
+	 * 
+	 * @return the ProjectChangeLog the changes are recorded in. Calling this again returns the same one.
+	 */
+	public ProjectChangeLog trackChanges() {
+		if (!isRecordingChanges()) {
+			changeLog = new ProjectChangeLog(this);
+		}
+		
+		return changeLog;
+	}
+	
+	/**
+	 * @return the ProjectChangeLog of this Project, or of the Project this one was copied from, or null if changes aren't being tracked
+	 */
+	public ProjectChangeLog getChangeLog() {
+		return changeLog;
+	}
+	
+	/**
+	 * Projects are serialized in the compact ClearDialogueBinaryIO format instead of field by field (see ProjectSerialization).
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return new ProjectSerialization.ProjectForm(this);
 	}
 	
 	/*
@@ -90,15 +200,94 @@ public class Project implements Serializable {
 	 * references
 	 */
 	
+	/**
+	 * Adds the Dialogue to this Project.
+	 * 
+	 * @throws IllegalArgumentException if the Project already has a node with the same UID, since it couldn't be looked up by its UID
+	 */
 	public void addDialogue(Dialogue dialogue) {
+		checkUIDAvailable(dialogue, null);
+		
 		dialogueList.add(dialogue);
+		indexDialogue(dialogue);
+		markModified(dialogue);
 	}
 	
 	public void removeDialogue(Dialogue dialogue) {
 		dialogue.disconnectAllConnectors();
-		dialogueList.remove(dialogue);
+		
+		if (dialogueList.remove(dialogue)) {
+			unindexDialogue(dialogue);
+			markModified(dialogue);
+		}
 	}
-	
+
+	/**
+	 * Swaps a Dialogue in this Project for another one, keeping its place in the node list.
+	 *
+	 * Connections to the old Dialogue are moved over to the connectors of the new one that have the same UIDs. Connections to connectors
+	 * that the new Dialogue doesn't have are dropped. If the old Dialogue isn't a part of this Project, the new one is simply added.
+	 */
+	public void replaceDialogue(Dialogue oldDialogue, Dialogue newDialogue) {
+		int index = dialogueList.indexOf(oldDialogue);
+
+		if (index < 0) {
+			addDialogue(newDialogue);
+			return;
+		}
+		
+		checkUIDAvailable(newDialogue, oldDialogue);
+
+		//Detach the old node's connections, remembering them so that they can be rebuilt on the new node. A connection between two of its own 
+		//connectors is only remembered once.
+		LinkedHashSet<Connection> attached = new LinkedHashSet<Connection>();
+		ArrayList<DialogueConnector> oldConnectors = oldDialogue.getAllConnectors();
+
+		for (int i = 0; i < oldConnectors.size(); i++) {
+			ArrayList<Connection> adjacent = adjacency.get(oldConnectors.get(i));
+
+			if (adjacent == null) {
+				continue;
+			}
+
+			attached.addAll(adjacent);
+		}
+
+		for (Connection c : attached) {
+			removeConnection(c);
+		}
+
+		unindexDialogue(oldDialogue);
+		dialogueList.set(index, newDialogue);
+		indexDialogue(newDialogue);
+		markModified(oldDialogue);
+		markModified(newDialogue);
+
+		HashMap<String, DialogueConnector> newConnectors = new HashMap<String, DialogueConnector>();
+		ArrayList<DialogueConnector> connectors = newDialogue.getAllConnectors();
+
+		for (int i = 0; i < connectors.size(); i++) {
+			DialogueConnector connector = connectors.get(i);
+
+			if (connector != null) {
+				newConnectors.put(connector.getUID(), connector);
+			}
+		}
+
+		for (Connection c : attached) {
+			DialogueConnector connector1 = remapConnector(c.getConnector1(), oldDialogue, newConnectors);
+			DialogueConnector connector2 = remapConnector(c.getConnector2(), oldDialogue, newConnectors);
+
+			if (connector1 != null && connector2 != null && !isConnected(connector1, connector2)) {
+				addConnection(new Connection(connector1, connector2));
+			}
+		}
+	}
+
+	private static DialogueConnector remapConnector(DialogueConnector connector, Dialogue oldDialogue, HashMap<String, DialogueConnector> newConnectors) {
+		return (connector.getParent() == oldDialogue ? newConnectors.get(connector.getUID()) : connector);
+	}
+
 	public Dialogue getDialogue(int index) {
 		return dialogueList.get(index);
 	}
@@ -137,12 +326,92 @@ public class Project implements Serializable {
 		for (Dialogue d : project.dialogueList) {
 			d.setX(minX);
 			d.setY(minY);
+			
+			//Merging the same project twice would otherwise add nodes that are already here
+			if (hasAnyUID(d)) {
+				d.assignNewUIDs();
+			}
+			
+			//The merged nodes now belong to this project, so any new connections they make need to be registered here
+			d.setProject(this);
+			
+			dialogueList.add(d);
+			indexDialogue(d);
+			markModified(d);
 		}
 		
-		dialogueList.addAll(project.dialogueList);
-		connections.addAll(project.connections);
+		for (int i = 0; i < project.connections.size(); i++) {
+			addConnection(project.connections.get(i));
+		}
 	}
 
+	/**
+	 * Makes a deep copy of this Project, keeping all of the UIDs. Strings are shared between the two, since they can't be changed. 
+	 * 
+	 * This is quick compared to exporting the Project, so it's useful for taking a snapshot that can be saved on another thread while this one is still being edited.
+	 */
+	public Project copy() {
+		return copy(null);
+	}
+	
+	/**
+	 * Same as <code>copy()</code>, but only the Dialogue that pass the given SearchRule are copied, along with the connections between them.
+	 * 
+	 * @param rule - the rule that decides which Dialogue to copy, or null to copy all of them
+	 */
+	public Project copy(SearchRule rule) {
+		Project copy = new Project(version, name, viewportX, viewportY, viewportScale);
+		
+		if (rule == null) {
+			copy.dialogueList.ensureCapacity(dialogueList.size());
+			copy.connections.ensureCapacity(connections.size());
+		}
+		
+		for (int i = 0; i < dialogueList.size(); i++) {
+			Dialogue dialogue = dialogueList.get(i);
+			
+			if (rule == null || rule.check(dialogue)) {
+				copy.addDialogue(dialogue.copy(copy));
+			}
+		}
+		
+		for (int i = 0; i < connections.size(); i++) {
+			Connection c = connections.get(i);
+			
+			DialogueConnector connector1 = copy.getDialogueConnector(c.getConnector1().getUID());
+			DialogueConnector connector2 = copy.getDialogueConnector(c.getConnector2().getUID());
+			
+			//Connections that lead to a Dialogue that wasn't copied are left out
+			if (connector1 != null && connector2 != null) {
+				copy.addConnection(new Connection(connector1, connector2));
+			}
+		}
+		
+		//A full copy is the same revision as this Project, so it can be saved incrementally with the same change log
+		if (rule == null) {
+			copy.changeLog = changeLog;
+			copy.modificationCount = modificationCount;
+		}
+		
+		return copy;
+	}
+	
+	/**
+	 * Freezes the current state of this Project into a read-only CompiledProject, which is faster and lighter to traverse in-game.
+	 * 
+	 * Changes made to this Project afterwards won't be reflected in the CompiledProject.
+	 */
+	public CompiledProject compile() {
+		return new CompiledProject(this);
+	}
+	
+	/**
+	 * Same as <code>compile()</code>, but the text can be left out so that it only comes from a LocaleTable (see <code>CompiledProject.setLocaleTable()</code>).
+	 */
+	public CompiledProject compile(boolean includeText) {
+		return new CompiledProject(this, includeText);
+	}
+	
 	/**
 	 * Find Dialogues in the Project with the given tag.
 	 * 
@@ -193,6 +462,22 @@ public class Project implements Serializable {
 		});
 	}
 	
+	/**
+	 * Creates an index that finds Dialogue by the ID (array index) of their exact tags in the given array, I.E. the <code>TAGS</code> and <code>TAG_</code>
+	 * constants generated by DialogueConstantsGenerator. Unlike findNodeWithTag(), lookups don't scan the Project.
+	 */
+	public DialogueIndex createTagIndex(String... tags) {
+		return new DialogueIndex(this, tags, true);
+	}
+	
+	/**
+	 * Creates an index that finds Dialogue by the ID (array index) of their exact titles in the given array, I.E. the <code>TITLES</code> and <code>TITLE_</code>
+	 * constants generated by DialogueConstantsGenerator. Unlike findNodeWithTitle(), lookups don't scan the Project.
+	 */
+	public DialogueIndex createTitleIndex(String... titles) {
+		return new DialogueIndex(this, titles, false);
+	}
+	
 	/**
 	 * This a general function for finding Nodes with specific conditions, used by findNodeWithTag() and findNodeWithName(). 
 	 * To make your own, simply pass in a custom SearchRule. 
@@ -238,7 +523,44 @@ public class Project implements Serializable {
 	 */
 	
 	public void addConnection(Connection connection) {
+		ConnectionSlot slot = new ConnectionSlot(connections.size());
+		connectionSlots.put(connection, slot);
 		connections.add(connection);
+		
+		slot.adjacentIndex1 = addAdjacency(connection.getConnector1(), connection);
+		
+		if (connection.getConnector2() != connection.getConnector1()) {
+			slot.adjacentIndex2 = addAdjacency(connection.getConnector2(), connection);
+		}
+		
+		markModified(connection);
+	}
+	
+	/**
+	 * Removes the given Connection from this Project's registry. The last Connection takes its place, so the order of the remaining Connections 
+	 * (see <code>getConnection(int)</code>) can change.
+	 */
+	public void removeConnection(Connection connection) {
+		ConnectionSlot slot = connectionSlots.remove(connection);
+		
+		if (slot == null) {
+			return;
+		}
+		
+		Connection last = connections.remove(connections.size() - 1);
+		
+		if (last != connection) {
+			connections.set(slot.index, last);
+			connectionSlots.get(last).index = slot.index;
+		}
+		
+		removeAdjacency(connection.getConnector1(), slot.adjacentIndex1);
+		
+		if (connection.getConnector2() != connection.getConnector1()) {
+			removeAdjacency(connection.getConnector2(), slot.adjacentIndex2);
+		}
+		
+		markModified(connection);
 	}
 	
 	public Connection getConnection(int index) {
@@ -249,15 +571,55 @@ public class Project implements Serializable {
 		return connections.size();
 	}
 	
+	/**
+	 * @return the index of the given Connection (see <code>getConnection(int)</code>), or -1 if it isn't in this Project
+	 */
+	public int indexOfConnection(Connection connection) {
+		ConnectionSlot slot = connectionSlots.get(connection);
+		return (slot != null ? slot.index : -1);
+	}
+	
+	/**
+	 * Gets one of the Connections attached to the given connector. Connections are kept in the order they were made, except that removing one 
+	 * moves the connector's last Connection into its place (like <code>getConnection(int)</code>).
+	 * 
+	 * For an In-Connector these are the incoming Connections, and for an Out-Connector these are the outgoing ones.
+	 * 
+	 * @throws IndexOutOfBoundsException if the index isn't below <code>getNumConnections(connector)</code>
+	 */
+	public Connection getConnection(DialogueConnector connector, int index) {
+		ArrayList<Connection> adjacent = adjacency.get(connector);
+		
+		if (adjacent == null) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+		}
+		
+		return adjacent.get(index);
+	}
+	
+	/**
+	 * @return the number of Connections attached to the given connector.
+	 */
+	public int getNumConnections(DialogueConnector connector) {
+		ArrayList<Connection> adjacent = adjacency.get(connector);
+		return (adjacent != null ? adjacent.size() : 0);
+	}
+	
 	/**
 	 * Disconnects all connections between the two connectors.
 	 */
 	public void disconnect(DialogueConnector connector1, DialogueConnector connector2) {
-		for (int i = 0; i < connections.size(); i++) {
-			Connection c = connections.get(i);
+		ArrayList<Connection> adjacent = adjacency.get(connector1);
+		
+		if (adjacent == null) {
+			return;
+		}
+		
+		for (int i = 0; i < adjacent.size(); i++) {
+			Connection c = adjacent.get(i);
 			
 			if (c.represents(connector1, connector2)) {
-				connections.remove(i);
+				removeConnection(c);
 				i--;
 			}
 		}
@@ -267,13 +629,10 @@ public class Project implements Serializable {
 	 * Delete all Connections to this connector.
 	 */
 	public void disconnectAll(DialogueConnector connector) {
-		for (int i = 0; i < connections.size(); i++) {
-			Connection c = connections.get(i);
-			
-			if (c.contains(connector)) {
-				connections.remove(i);
-				i--;
-			}
+		ArrayList<Connection> adjacent = adjacency.get(connector);
+		
+		while (adjacent != null && !adjacent.isEmpty()) {
+			removeConnection(adjacent.get(adjacent.size() - 1));
 		}
 	}
 	
@@ -283,19 +642,53 @@ public class Project implements Serializable {
 	 * @param connector
 	 */
 	public ArrayList<Connection> getAllConnections(DialogueConnector connector){
-		ArrayList<Connection> found = new ArrayList<>();
+		ArrayList<Connection> adjacent = adjacency.get(connector);
+		return (adjacent != null ? new ArrayList<>(adjacent) : new ArrayList<>());
+	}
+	
+	/**
+	 * Returns all of the Dialogue that link into the In-Connector of the given Dialogue (I.E. backlinks).
+	 */
+	public ArrayList<Dialogue> getIncomingDialogue(Dialogue dialogue) {
+		ArrayList<Dialogue> found = new ArrayList<>();
+		addConnectedDialogue(dialogue.getInConnector(), found);
+		return found;
+	}
+	
+	/**
+	 * Returns all of the Dialogue that the Out-Connectors of the given Dialogue link into.
+	 */
+	public ArrayList<Dialogue> getOutgoingDialogue(Dialogue dialogue) {
+		ArrayList<Dialogue> found = new ArrayList<>();
+		ArrayList<DialogueConnector> connectors = dialogue.getAllConnectors();
 		
-		for (int i = 0; i < connections.size(); i++) {
-			Connection c = connections.get(i);
+		for (int i = 0; i < connectors.size(); i++) {
+			DialogueConnector connector = connectors.get(i);
 			
-			if (c.contains(connector)) {
-				found.add(c);
+			if (connector != dialogue.getInConnector()) {
+				addConnectedDialogue(connector, found);
 			}
 		}
 		
 		return found;
 	}
 	
+	private void addConnectedDialogue(DialogueConnector connector, ArrayList<Dialogue> found) {
+		ArrayList<Connection> adjacent = adjacency.get(connector);
+		
+		if (adjacent == null) {
+			return;
+		}
+		
+		for (int i = 0; i < adjacent.size(); i++) {
+			DialogueConnector other = adjacent.get(i).getOther(connector);
+			
+			if (other != null) {
+				found.add(other.getParent());
+			}
+		}
+	}
+	
 	/**
 	 * Adds all of the connections to this Project's registry.
 	 * 
@@ -306,7 +699,7 @@ public class Project implements Serializable {
 			Connection c = connections.get(i);
 			
 			if (!connectionExists(c.getConnector1(), c.getConnector2())) {
-				connections.add(c);
+				addConnection(c);
 			}
 		}
 	}
@@ -315,10 +708,14 @@ public class Project implements Serializable {
 	 * Checks if the two connectors have a Connection.
 	 */
 	public boolean isConnected(DialogueConnector connector1, DialogueConnector connector2) {
-		for (int i = 0; i < connections.size(); i++) {
-			Connection c = connections.get(i);
-			
-			if (c.represents(connector1, connector2)) {
+		ArrayList<Connection> adjacent = adjacency.get(connector1);
+		
+		if (adjacent == null) {
+			return false;
+		}
+		
+		for (int i = 0; i < adjacent.size(); i++) {
+			if (adjacent.get(i).represents(connector1, connector2)) {
 				return true;
 			}
 		}
@@ -330,33 +727,155 @@ public class Project implements Serializable {
 	 * Checks if a similar Connection already exists.
 	 */
 	public boolean connectionExists(DialogueConnector connector1, DialogueConnector connector2) {
-		for (int i = 0; i < connections.size(); i++) {
-			Connection c = connections.get(i);
-			
-			if (c.represents(connector1, connector2)) {
-				return true;
-			}
+		return isConnected(connector1, connector2);
+	}
+	
+	/**
+	 * @return the index the Connection was added at in the connector's adjacency list
+	 */
+	private int addAdjacency(DialogueConnector connector, Connection connection) {
+		ArrayList<Connection> adjacent = adjacency.get(connector);
+		
+		if (adjacent == null) {
+			adjacent = new ArrayList<Connection>(1);
+			adjacency.put(connector, adjacent);
 		}
 		
-		return false;
+		adjacent.add(connection);
+		return adjacent.size() - 1;
+	}
+	
+	/**
+	 * Removes the Connection at the given index of the connector's adjacency list by moving the last one into its place.
+	 */
+	private void removeAdjacency(DialogueConnector connector, int index) {
+		ArrayList<Connection> adjacent = adjacency.get(connector);
+		Connection last = adjacent.remove(adjacent.size() - 1);
+		
+		if (index < adjacent.size()) {
+			adjacent.set(index, last);
+			connectionSlots.get(last).setAdjacentIndex(last, connector, index);
+		}
+		
+		if (adjacent.isEmpty()) {
+			adjacency.remove(connector);
+		}
+	}
+	
+	/**
+	 * Where a Connection is stored in this Project.
+	 */
+	private static class ConnectionSlot {
+		//Index in the connections list
+		private int index;
+		
+		//Indices in the adjacency lists of connector1 and connector2. A Connection from a connector to itself only uses the first one.
+		private int adjacentIndex1, adjacentIndex2;
+		
+		private ConnectionSlot(int index) {
+			this.index = index;
+		}
+		
+		private void setAdjacentIndex(Connection connection, DialogueConnector connector, int adjacentIndex) {
+			if (connection.getConnector1() == connector) {
+				adjacentIndex1 = adjacentIndex;
+			} else {
+				adjacentIndex2 = adjacentIndex;
+			}
+		}
 	}
 	
 	/**
 	 * Utility function for fetching a DialogueConnector with its UID.
+	 * 
+	 * @return the DialogueConnector with the given UID, or null if no node in this Project has it
 	 */
 	public DialogueConnector getDialogueConnector(String uid) {
-		for (int i = 0; i < dialogueList.size(); i++) {
-			ArrayList<DialogueConnector> connectors = dialogueList.get(i).getAllConnectors();
-			
-			for (int j = 0; j < connectors.size(); j++) {
-				DialogueConnector connector = connectors.get(j);
-				
-				if (connector.getUID().equals(uid)) {
-					return connector;
-				}
+		return connectorIndex.get(uid);
+	}
+	
+	/**
+	 * Utility function for fetching a Dialogue with its UID.
+	 * 
+	 * @return the Dialogue with the given UID, or null if it isn't a part of this Project
+	 */
+	public Dialogue getDialogue(String uid) {
+		return dialogueIndex.get(uid);
+	}
+	
+	/**
+	 * Checks if the given Dialogue has been added to this Project.
+	 */
+	public boolean containsDialogue(Dialogue dialogue) {
+		return (dialogueIndex.get(dialogue.getUID()) == dialogue);
+	}
+	
+	/*
+	 * 
+	 * The UID indices are kept up to date by the add/remove functions above, and by the Dialogue 
+	 * implementations whenever they gain or lose a connector (I.E. adding a new response).
+	 * 
+	 */
+	
+	/**
+	 * @param replaced - the node that the Dialogue is replacing, which is allowed to have the same UID, or null
+	 */
+	private void checkUIDAvailable(Dialogue dialogue, Dialogue replaced) {
+		Dialogue existing = dialogueIndex.get(dialogue.getUID());
+		
+		if (existing != null && existing != replaced) {
+			throw new IllegalArgumentException("The project already contains a node with the UID \"" + dialogue.getUID() + "\"");
+		}
+	}
+	
+	/**
+	 * @return true if the Dialogue or any of its connectors has a UID that's already used in this Project
+	 */
+	private boolean hasAnyUID(Dialogue dialogue) {
+		if (dialogueIndex.containsKey(dialogue.getUID())) {
+			return true;
+		}
+		
+		ArrayList<DialogueConnector> connectors = dialogue.getAllConnectors();
+		
+		for (int i = 0; i < connectors.size(); i++) {
+			if (connectors.get(i) != null && connectorIndex.containsKey(connectors.get(i).getUID())) {
+				return true;
 			}
 		}
 		
-		return null;
+		return false;
+	}
+	
+	private void indexDialogue(Dialogue dialogue) {
+		dialogueIndex.putIfAbsent(dialogue.getUID(), dialogue);
+		
+		ArrayList<DialogueConnector> connectors = dialogue.getAllConnectors();
+		
+		for (int i = 0; i < connectors.size(); i++) {
+			registerConnector(connectors.get(i));
+		}
+	}
+	
+	private void unindexDialogue(Dialogue dialogue) {
+		dialogueIndex.remove(dialogue.getUID(), dialogue);
+		
+		ArrayList<DialogueConnector> connectors = dialogue.getAllConnectors();
+		
+		for (int i = 0; i < connectors.size(); i++) {
+			unregisterConnector(connectors.get(i));
+		}
+	}
+	
+	void registerConnector(DialogueConnector connector) {
+		if (connector != null) {
+			connectorIndex.putIfAbsent(connector.getUID(), connector);
+		}
+	}
+	
+	void unregisterConnector(DialogueConnector connector) {
+		if (connector != null) {
+			connectorIndex.remove(connector.getUID(), connector);
+		}
 	}
 }
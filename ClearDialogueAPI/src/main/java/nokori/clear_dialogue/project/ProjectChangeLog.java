@@ -0,0 +1,165 @@
+package nokori.clear_dialogue.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records which nodes and connections of a Project were added, changed or removed, so that incremental savers (I.E. ClearDialogueJournalIO) can
+ * look at just those instead of comparing the whole Project against what they last saved. Recording is started with <code>Project.trackChanges()</code>.
+ *
+ * <br><br>Every change is stamped with the Project's modification count. A saver remembers the count it saved up to, asks for the changes made since
+ * then, and calls <code>discard()</code> once they're safely written so that the log doesn't keep growing.
+ *
+ * <br><br>A copy made with <code>Project.copy()</code> shares the log of the Project it was copied from (without recording into it) and has the same
+ * modification count, so the copy can be saved on another thread while the original is still being edited. Changes made after the copy are left in
+ * the log for the next save.
+ */
+public class ProjectChangeLog {
+
+	//The Project that records into this log. Its copies only read it.
+	final Project project;
+
+	//Keyed by node UID, and by the two connector UIDs for connections
+	private final ConcurrentHashMap<String, Change> nodeChanges = new ConcurrentHashMap<String, Change>();
+	private final ConcurrentHashMap<String, Change> connectionChanges = new ConcurrentHashMap<String, Change>();
+
+	//Changes at or before this modification count can't be listed, either because they were discarded or because they weren't recorded
+	private volatile long incompleteUpTo;
+
+	ProjectChangeLog(Project project) {
+		this.project = project;
+		incompleteUpTo = project.getModificationCount();
+	}
+
+	void nodeChanged(Dialogue node, long modificationCount) {
+		String uid = node.getUID();
+
+		if (uid == null) {
+			unlistedChange(modificationCount);
+			return;
+		}
+
+		record(nodeChanges, uid, uid, null, modificationCount);
+	}
+
+	void connectionChanged(Connection connection, long modificationCount) {
+		String uid1 = connection.getConnector1().getUID();
+		String uid2 = connection.getConnector2().getUID();
+
+		if (uid1 == null || uid2 == null) {
+			unlistedChange(modificationCount);
+			return;
+		}
+
+		record(connectionChanges, uid1 + '\u0000' + uid2, uid1, uid2, modificationCount);
+	}
+
+	/**
+	 * Records a change that can't be pinned to a node or connection (see <code>Project.markModified()</code>). Savers have to fall back to a full save.
+	 */
+	synchronized void unlistedChange(long modificationCount) {
+		incompleteUpTo = Math.max(incompleteUpTo, modificationCount);
+	}
+
+	private static void record(ConcurrentHashMap<String, Change> changes, String key, String uid1, String uid2, long modificationCount) {
+		Change previous = changes.get(key);
+		long firstModification = (previous != null ? previous.firstModification : modificationCount);
+
+		changes.put(key, new Change(uid1, uid2, firstModification, modificationCount));
+	}
+
+	public Project getProject() {
+		return project;
+	}
+
+	/**
+	 * @return true if every change made after the given modification count is still in the log
+	 */
+	public boolean isCompleteSince(long modificationCount) {
+		return (modificationCount >= incompleteUpTo);
+	}
+
+	/**
+	 * @return the UIDs of the nodes that were last added, changed or removed after <code>since</code> and up to <code>upTo</code>, in the order they
+	 * were first changed. Whether a node was removed can be checked with <code>Project.getDialogue(uid)</code>.
+	 */
+	public ArrayList<String> getNodeChanges(long since, long upTo) {
+		ArrayList<Change> changes = getChanges(nodeChanges, since, upTo);
+		ArrayList<String> uids = new ArrayList<String>(changes.size());
+
+		for (int i = 0; i < changes.size(); i++) {
+			uids.add(changes.get(i).uid1);
+		}
+
+		return uids;
+	}
+
+	/**
+	 * @return the connector UID pairs of the connections that were last made or removed after <code>since</code> and up to <code>upTo</code>, in the
+	 * order they were first changed. Whether a pair is connected can be checked with <code>Project.isConnected()</code>.
+	 */
+	public ArrayList<String[]> getConnectionChanges(long since, long upTo) {
+		ArrayList<Change> changes = getChanges(connectionChanges, since, upTo);
+		ArrayList<String[]> pairs = new ArrayList<String[]>(changes.size());
+
+		for (int i = 0; i < changes.size(); i++) {
+			pairs.add(new String[] { changes.get(i).uid1, changes.get(i).uid2 });
+		}
+
+		return pairs;
+	}
+
+	private static ArrayList<Change> getChanges(ConcurrentHashMap<String, Change> changes, long since, long upTo) {
+		ArrayList<Change> found = new ArrayList<Change>();
+
+		for (Change change : changes.values()) {
+			if (change.lastModification > since && change.lastModification <= upTo) {
+				found.add(change);
+			}
+		}
+
+		Collections.sort(found, new Comparator<Change>() {
+
+			@Override
+			public int compare(Change c1, Change c2) {
+				return Long.compare(c1.firstModification, c2.firstModification);
+			}
+		});
+
+		return found;
+	}
+
+	/**
+	 * Drops the changes made up to the given modification count (I.E. once they've been saved). Afterwards the log is only complete since that count.
+	 */
+	public synchronized void discard(long upTo) {
+		discard(nodeChanges, upTo);
+		discard(connectionChanges, upTo);
+
+		incompleteUpTo = Math.max(incompleteUpTo, upTo);
+	}
+
+	private static void discard(ConcurrentHashMap<String, Change> changes, long upTo) {
+		for (Map.Entry<String, Change> e : changes.entrySet()) {
+			if (e.getValue().lastModification <= upTo) {
+				//Only removed if it hasn't been changed again in the meantime
+				changes.remove(e.getKey(), e.getValue());
+			}
+		}
+	}
+
+	private static class Change {
+		private final String uid1, uid2;
+		private final long firstModification, lastModification;
+
+		private Change(String uid1, String uid2, long firstModification, long lastModification) {
+			this.uid1 = uid1;
+			this.uid2 = uid2;
+			this.firstModification = firstModification;
+			this.lastModification = lastModification;
+		}
+	}
+}
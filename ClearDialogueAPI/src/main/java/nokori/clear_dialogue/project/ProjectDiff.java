@@ -0,0 +1,210 @@
+package nokori.clear_dialogue.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The structural differences between two revisions of a Project (I.E. two commits of the same project file), for reviewing and merging changes
+ * without diffing the exported text.
+ *
+ * <br><br>Nodes are matched by their UID and compared by their content hash (see <code>Dialogue.getContentHash()</code>), so a node only counts as changed
+ * if something that gets saved for it changed. Connections are matched by the UIDs of their two connectors, in either order. Node positions are part of
+ * the content hash, so moving a node counts as changing it.
+ *
+ * <br><br>Both Projects are only read, so they can be diffed while neither is being edited.
+ */
+public class ProjectDiff {
+
+	public enum Change {
+		ADDED,
+		REMOVED,
+		CHANGED
+	}
+
+	private final Project oldProject, newProject;
+
+	//Nodes are kept in their own Project's order: added and changed nodes are from the new Project, removed ones from the old
+	private final ArrayList<Dialogue> addedNodes = new ArrayList<Dialogue>();
+	private final ArrayList<Dialogue> removedNodes = new ArrayList<Dialogue>();
+	private final ArrayList<Dialogue> changedNodes = new ArrayList<Dialogue>();
+	private final HashMap<String, Change> nodeChanges = new HashMap<String, Change>();
+
+	private final ArrayList<Connection> addedConnections = new ArrayList<Connection>();
+	private final ArrayList<Connection> removedConnections = new ArrayList<Connection>();
+
+	private final boolean projectDataChanged;
+
+	private ProjectDiff(Project oldProject, Project newProject) {
+		this.oldProject = oldProject;
+		this.newProject = newProject;
+
+		projectDataChanged = !(equals(oldProject.getName(), newProject.getName())
+				&& Float.floatToIntBits(oldProject.getViewportX()) == Float.floatToIntBits(newProject.getViewportX())
+				&& Float.floatToIntBits(oldProject.getViewportY()) == Float.floatToIntBits(newProject.getViewportY())
+				&& Float.floatToIntBits(oldProject.getViewportScale()) == Float.floatToIntBits(newProject.getViewportScale()));
+	}
+
+	/**
+	 * Works out what changed between the two Projects.
+	 *
+	 * @param oldProject - the earlier revision (I.E. the common ancestor when merging)
+	 * @param newProject - the later revision
+	 */
+	public static ProjectDiff diff(Project oldProject, Project newProject) {
+		ProjectDiff diff = new ProjectDiff(oldProject, newProject);
+
+		diff.diffNodes();
+		diff.diffConnections();
+
+		return diff;
+	}
+
+	private void diffNodes() {
+		for (int i = 0; i < oldProject.getNumDialogue(); i++) {
+			Dialogue oldNode = oldProject.getDialogue(i);
+
+			if (oldProject.containsDialogue(oldNode) && newProject.getDialogue(oldNode.getUID()) == null) {
+				removedNodes.add(oldNode);
+				nodeChanges.put(oldNode.getUID(), Change.REMOVED);
+			}
+		}
+
+		for (int i = 0; i < newProject.getNumDialogue(); i++) {
+			Dialogue newNode = newProject.getDialogue(i);
+
+			if (!newProject.containsDialogue(newNode)) {
+				continue;
+			}
+
+			Dialogue oldNode = oldProject.getDialogue(newNode.getUID());
+
+			if (oldNode == null) {
+				addedNodes.add(newNode);
+				nodeChanges.put(newNode.getUID(), Change.ADDED);
+			} else if (oldNode != newNode && oldNode.getContentHash() != newNode.getContentHash()) {
+				changedNodes.add(newNode);
+				nodeChanges.put(newNode.getUID(), Change.CHANGED);
+			}
+		}
+	}
+
+	private void diffConnections() {
+		for (int i = 0; i < oldProject.getNumConnections(); i++) {
+			Connection c = oldProject.getConnection(i);
+
+			if (!hasConnection(newProject, c)) {
+				removedConnections.add(c);
+			}
+		}
+
+		for (int i = 0; i < newProject.getNumConnections(); i++) {
+			Connection c = newProject.getConnection(i);
+
+			if (!hasConnection(oldProject, c)) {
+				addedConnections.add(c);
+			}
+		}
+	}
+
+	/**
+	 * Checks if the Project has a Connection between connectors with the same UIDs as the given one's, using the Project's UID index and connection
+	 * registry instead of comparing against every Connection.
+	 */
+	static boolean hasConnection(Project project, Connection connection) {
+		DialogueConnector connector1 = project.getDialogueConnector(connection.getConnector1().getUID());
+		DialogueConnector connector2 = project.getDialogueConnector(connection.getConnector2().getUID());
+
+		if (connector1 == null || connector2 == null) {
+			return false;
+		}
+
+		//Searched from the side with fewer Connections, since In-Connectors can have a lot of them
+		if (project.getNumConnections(connector1) <= project.getNumConnections(connector2)) {
+			return project.isConnected(connector1, connector2);
+		} else {
+			return project.isConnected(connector2, connector1);
+		}
+	}
+
+	private static boolean equals(String s1, String s2) {
+		return (s1 != null ? s1.equals(s2) : s2 == null);
+	}
+
+	/*
+	 *
+	 * Results
+	 *
+	 */
+
+	public Project getOldProject() {
+		return oldProject;
+	}
+
+	public Project getNewProject() {
+		return newProject;
+	}
+
+	/**
+	 * @return the nodes of the new Project that aren't in the old one
+	 */
+	public List<Dialogue> getAddedNodes() {
+		return Collections.unmodifiableList(addedNodes);
+	}
+
+	/**
+	 * @return the nodes of the old Project that aren't in the new one
+	 */
+	public List<Dialogue> getRemovedNodes() {
+		return Collections.unmodifiableList(removedNodes);
+	}
+
+	/**
+	 * @return the nodes of the new Project that are different in the old one. The old versions can be found with <code>getOldProject().getDialogue(uid)</code>.
+	 */
+	public List<Dialogue> getChangedNodes() {
+		return Collections.unmodifiableList(changedNodes);
+	}
+
+	/**
+	 * @return how the node with the given UID changed, or null if it's the same in both Projects (or in neither)
+	 */
+	public Change getNodeChange(String uid) {
+		return nodeChanges.get(uid);
+	}
+
+	/**
+	 * @return the Connections of the new Project that aren't in the old one
+	 */
+	public List<Connection> getAddedConnections() {
+		return Collections.unmodifiableList(addedConnections);
+	}
+
+	/**
+	 * @return the Connections of the old Project that aren't in the new one
+	 */
+	public List<Connection> getRemovedConnections() {
+		return Collections.unmodifiableList(removedConnections);
+	}
+
+	/**
+	 * @return true if the name or viewport of the Project changed
+	 */
+	public boolean isProjectDataChanged() {
+		return projectDataChanged;
+	}
+
+	/**
+	 * @return true if the two Projects have the same nodes and connections (the project data isn't counted)
+	 */
+	public boolean isEmpty() {
+		return (nodeChanges.isEmpty() && addedConnections.isEmpty() && removedConnections.isEmpty());
+	}
+
+	@Override
+	public String toString() {
+		return addedNodes.size() + " nodes added, " + removedNodes.size() + " removed, " + changedNodes.size() + " changed, " + addedConnections.size()
+				+ " connections added, " + removedConnections.size() + " removed";
+	}
+}
@@ -0,0 +1,381 @@
+package nokori.clear_dialogue.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import nokori.clear_dialogue.project.ProjectDiff.Change;
+
+/**
+ * A three-way merge of two revisions of a Project that were edited separately from the same base (I.E. two git branches of a project file).
+ *
+ * <br><br>The merged Project starts as a copy of ours, and the changes that theirs made to the base (see ProjectDiff) are applied on top of it:
+ * <br>- Nodes that only theirs added, changed, or removed are added, replaced, or removed.
+ * <br>- Connections that only theirs made or removed are made or removed, matched by connector UID.
+ * <br>- Changes that both sides made the same way are taken once.
+ *
+ * <br><br>Changes that clash are recorded as Conflicts instead, and the merged Project keeps our side of them:
+ * <br>- BOTH_ADDED/BOTH_CHANGED: both sides added or changed the same node differently.
+ * <br>- CHANGED_AND_REMOVED: one side removed a node that the other changed (or made a new connection to).
+ * <br>- CONNECTION: theirs made a connection to a node that isn't in the merged Project, or from an Out-Connector that ours connected elsewhere.
+ * <br>- NAME: both sides renamed the Project differently.
+ *
+ * <br><br>A conflict can be settled in their favour with <code>useTheirs()</code>. None of the three Projects are changed by the merge.
+ */
+public class ProjectMerge {
+
+	public enum ConflictType {
+		BOTH_ADDED,
+		BOTH_CHANGED,
+		CHANGED_AND_REMOVED,
+		CONNECTION,
+		NAME
+	}
+
+	private final Project base, ours, theirs;
+	private final Project merged;
+
+	private final ArrayList<Conflict> conflicts = new ArrayList<Conflict>();
+
+	//The UIDs of the nodes with conflicts, so that their connections don't get reported again
+	private final HashSet<String> conflictedNodes = new HashSet<String>();
+
+	private ProjectMerge(Project base, Project ours, Project theirs) {
+		this.base = base;
+		this.ours = ours;
+		this.theirs = theirs;
+		this.merged = ours.copy();
+	}
+
+	/**
+	 * Merges the changes that ours and theirs made to the base into a new Project.
+	 *
+	 * @param base - the common ancestor of the two revisions
+	 * @param ours - the revision whose side is kept when there's a conflict
+	 * @param theirs - the revision whose changes are merged into ours
+	 */
+	public static ProjectMerge merge(Project base, Project ours, Project theirs) {
+		ProjectMerge merge = new ProjectMerge(base, ours, theirs);
+
+		ProjectDiff oursDiff = ProjectDiff.diff(base, ours);
+		ProjectDiff theirsDiff = ProjectDiff.diff(base, theirs);
+
+		merge.mergeProjectData();
+		merge.mergeNodes(oursDiff, theirsDiff);
+		merge.mergeConnections(theirsDiff);
+
+		return merge;
+	}
+
+	/*
+	 *
+	 * Merging
+	 *
+	 */
+
+	private void mergeProjectData() {
+		if (!equals(theirs.getName(), base.getName())) {
+			if (equals(ours.getName(), base.getName())) {
+				merged.setName(theirs.getName());
+			} else if (!equals(ours.getName(), theirs.getName())) {
+				conflicts.add(new Conflict(ConflictType.NAME, null, null, null, null, "the project was renamed to \"" + ours.getName() + "\" in ours and \""
+						+ theirs.getName() + "\" in theirs"));
+			}
+		}
+
+		//The viewport is only editor state, so it's taken from theirs if ours didn't move it and isn't a conflict otherwise
+		boolean oursMoved = (ours.getViewportX() != base.getViewportX() || ours.getViewportY() != base.getViewportY() || ours.getViewportScale() != base.getViewportScale());
+
+		if (!oursMoved) {
+			merged.setViewportPosition(theirs.getViewportX(), theirs.getViewportY());
+			merged.setViewportScale(theirs.getViewportScale());
+		}
+	}
+
+	private void mergeNodes(ProjectDiff oursDiff, ProjectDiff theirsDiff) {
+		HashSet<String> oursConnectedUIDs = new HashSet<String>();
+		List<Connection> oursAddedConnections = oursDiff.getAddedConnections();
+
+		for (int i = 0; i < oursAddedConnections.size(); i++) {
+			oursConnectedUIDs.add(oursAddedConnections.get(i).getConnector1().getUID());
+			oursConnectedUIDs.add(oursAddedConnections.get(i).getConnector2().getUID());
+		}
+
+		List<Dialogue> removed = theirsDiff.getRemovedNodes();
+
+		for (int i = 0; i < removed.size(); i++) {
+			Dialogue baseNode = removed.get(i);
+			String uid = baseNode.getUID();
+			Change oursChange = oursDiff.getNodeChange(uid);
+
+			if (oursChange == Change.REMOVED) {
+				continue;
+			}
+
+			Dialogue mergedNode = merged.getDialogue(uid);
+
+			if (oursChange == Change.CHANGED || hasConnectorIn(mergedNode, oursConnectedUIDs)) {
+				addNodeConflict(ConflictType.CHANGED_AND_REMOVED, uid, baseNode, ours.getDialogue(uid), null, "node \"" + baseNode.getTitle()
+						+ "\" was changed in ours and removed in theirs");
+			} else {
+				merged.removeDialogue(mergedNode);
+			}
+		}
+
+		List<Dialogue> added = theirsDiff.getAddedNodes();
+
+		for (int i = 0; i < added.size(); i++) {
+			Dialogue theirsNode = added.get(i);
+			Dialogue oursNode = ours.getDialogue(theirsNode.getUID());
+
+			if (oursNode == null) {
+				merged.addDialogue(theirsNode.copy(merged));
+			} else if (oursNode.getContentHash() != theirsNode.getContentHash()) {
+				addNodeConflict(ConflictType.BOTH_ADDED, theirsNode.getUID(), null, oursNode, theirsNode, "node \"" + theirsNode.getTitle()
+						+ "\" was added differently in ours and theirs");
+			}
+		}
+
+		List<Dialogue> changed = theirsDiff.getChangedNodes();
+
+		for (int i = 0; i < changed.size(); i++) {
+			Dialogue theirsNode = changed.get(i);
+			String uid = theirsNode.getUID();
+			Change oursChange = oursDiff.getNodeChange(uid);
+
+			if (oursChange == null) {
+				merged.replaceDialogue(merged.getDialogue(uid), theirsNode.copy(merged));
+			} else if (oursChange == Change.REMOVED) {
+				addNodeConflict(ConflictType.CHANGED_AND_REMOVED, uid, base.getDialogue(uid), null, theirsNode, "node \"" + theirsNode.getTitle()
+						+ "\" was removed in ours and changed in theirs");
+			} else if (ours.getDialogue(uid).getContentHash() != theirsNode.getContentHash()) {
+				addNodeConflict(ConflictType.BOTH_CHANGED, uid, base.getDialogue(uid), ours.getDialogue(uid), theirsNode, "node \"" + theirsNode.getTitle()
+						+ "\" was changed differently in ours and theirs");
+			}
+		}
+	}
+
+	private static boolean hasConnectorIn(Dialogue node, HashSet<String> connectorUIDs) {
+		ArrayList<DialogueConnector> connectors = node.getAllConnectors();
+
+		for (int i = 0; i < connectors.size(); i++) {
+			if (connectors.get(i) != null && connectorUIDs.contains(connectors.get(i).getUID())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void addNodeConflict(ConflictType type, String uid, Dialogue baseNode, Dialogue oursNode, Dialogue theirsNode, String message) {
+		conflicts.add(new Conflict(type, uid, baseNode, oursNode, theirsNode, message));
+		conflictedNodes.add(uid);
+	}
+
+	private void mergeConnections(ProjectDiff theirsDiff) {
+		//Removals go first, so that an Out-Connector that theirs moved is free again before its new connection is made
+		List<Connection> removed = theirsDiff.getRemovedConnections();
+
+		for (int i = 0; i < removed.size(); i++) {
+			DialogueConnector connector1 = merged.getDialogueConnector(removed.get(i).getConnector1().getUID());
+			DialogueConnector connector2 = merged.getDialogueConnector(removed.get(i).getConnector2().getUID());
+
+			if (connector1 != null && connector2 != null) {
+				merged.disconnect(connector1, connector2);
+			}
+		}
+
+		List<Connection> added = theirsDiff.getAddedConnections();
+
+		for (int i = 0; i < added.size(); i++) {
+			Connection c = added.get(i);
+			DialogueConnector connector1 = merged.getDialogueConnector(c.getConnector1().getUID());
+			DialogueConnector connector2 = merged.getDialogueConnector(c.getConnector2().getUID());
+
+			if (isConflicted(c.getConnector1()) || isConflicted(c.getConnector2())) {
+				continue;
+			}
+
+			if (connector1 == null || connector2 == null) {
+				DialogueConnector missing = (connector1 == null ? c.getConnector1() : c.getConnector2());
+
+				conflicts.add(new Conflict(ConflictType.CONNECTION, missing.getUID(), null, null, null, "a connection in theirs leads to node \""
+						+ missing.getParent().getTitle() + "\", which was removed in ours"));
+			} else if (!merged.isConnected(connector1, connector2)) {
+				DialogueConnector taken = (isTaken(connector1) ? connector1 : isTaken(connector2) ? connector2 : null);
+
+				if (taken != null) {
+					conflicts.add(new Conflict(ConflictType.CONNECTION, taken.getUID(), null, null, null, "an out-connector of node \""
+							+ taken.getParent().getTitle() + "\" was connected to different nodes in ours and theirs"));
+				} else {
+					merged.addConnection(new Connection(connector1, connector2));
+				}
+			}
+		}
+	}
+
+	private boolean isConflicted(DialogueConnector connector) {
+		return conflictedNodes.contains(connector.getParent().getUID());
+	}
+
+	/**
+	 * @return true if the connector is an Out-Connector that's already connected (Out-Connectors can only lead to one node)
+	 */
+	private boolean isTaken(DialogueConnector connector) {
+		return (connector != connector.getParent().getInConnector() && merged.getNumConnections(connector) > 0);
+	}
+
+	private static boolean equals(String s1, String s2) {
+		return (s1 != null ? s1.equals(s2) : s2 == null);
+	}
+
+	/*
+	 *
+	 * Results
+	 *
+	 */
+
+	/**
+	 * @return the merged Project, which keeps our side of any conflicts
+	 */
+	public Project getProject() {
+		return merged;
+	}
+
+	public List<Conflict> getConflicts() {
+		return Collections.unmodifiableList(conflicts);
+	}
+
+	public boolean hasConflicts() {
+		return !conflicts.isEmpty();
+	}
+
+	/**
+	 * Settles a conflict in their favour: their version of the node (or its removal) replaces ours in the merged Project, along with their connections
+	 * to it, and the conflict is removed from the list. A NAME conflict takes their name.
+	 *
+	 * @throws IllegalArgumentException if the conflict is a CONNECTION conflict, since their connection can't be made without changing another node
+	 */
+	public void useTheirs(Conflict conflict) {
+		if (conflict.getType() == ConflictType.CONNECTION) {
+			throw new IllegalArgumentException("CONNECTION conflicts have to be settled by hand");
+		}
+
+		if (!conflicts.remove(conflict)) {
+			return;
+		}
+
+		if (conflict.getType() == ConflictType.NAME) {
+			merged.setName(theirs.getName());
+			return;
+		}
+
+		Dialogue mergedNode = merged.getDialogue(conflict.getUID());
+
+		if (conflict.getTheirs() == null) {
+			if (mergedNode != null) {
+				merged.removeDialogue(mergedNode);
+			}
+
+			return;
+		}
+
+		Dialogue copy = conflict.getTheirs().copy(merged);
+
+		if (mergedNode != null) {
+			merged.replaceDialogue(mergedNode, copy);
+		} else {
+			merged.addDialogue(copy);
+		}
+
+		ArrayList<DialogueConnector> connectors = conflict.getTheirs().getAllConnectors();
+
+		for (int i = 0; i < connectors.size(); i++) {
+			DialogueConnector connector = connectors.get(i);
+			DialogueConnector mergedConnector = (connector != null ? merged.getDialogueConnector(connector.getUID()) : null);
+
+			if (mergedConnector == null) {
+				continue;
+			}
+
+			//Their node's Out-Connectors lead where theirs does, instead of where ours did
+			if (connector != conflict.getTheirs().getInConnector()) {
+				merged.disconnectAll(mergedConnector);
+			}
+
+			ArrayList<Connection> connections = theirs.getAllConnections(connector);
+
+			for (int j = 0; j < connections.size(); j++) {
+				DialogueConnector other = merged.getDialogueConnector(connections.get(j).getOther(connector).getUID());
+
+				if (other != null && !merged.isConnected(mergedConnector, other) && !isTaken(other)) {
+					merged.addConnection(new Connection(mergedConnector, other));
+				}
+			}
+		}
+	}
+
+	/*
+	 *
+	 * Conflicts
+	 *
+	 */
+
+	public static class Conflict {
+		private final ConflictType type;
+		private final String uid;
+		private final Dialogue base, ours, theirs;
+		private final String message;
+
+		private Conflict(ConflictType type, String uid, Dialogue base, Dialogue ours, Dialogue theirs, String message) {
+			this.type = type;
+			this.uid = uid;
+			this.base = base;
+			this.ours = ours;
+			this.theirs = theirs;
+			this.message = message;
+		}
+
+		public ConflictType getType() {
+			return type;
+		}
+
+		/**
+		 * @return the UID of the node (or for CONNECTION conflicts, the connector) in conflict, or null for NAME conflicts
+		 */
+		public String getUID() {
+			return uid;
+		}
+
+		/**
+		 * @return the node as it was in the base, or null if it wasn't in it
+		 */
+		public Dialogue getBase() {
+			return base;
+		}
+
+		/**
+		 * @return our version of the node, or null if ours removed it
+		 */
+		public Dialogue getOurs() {
+			return ours;
+		}
+
+		/**
+		 * @return their version of the node, or null if theirs removed it
+		 */
+		public Dialogue getTheirs() {
+			return theirs;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return type + ": " + message + (uid != null ? " (" + uid + ")" : "");
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package nokori.clear_dialogue.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import nokori.clear_dialogue.io.ClearDialogueBinaryIO;
+
+/**
+ * The serialized forms of the model classes, used for Java serialization (I.E. snapshots and the clipboard).
+ *
+ * <br><br>Each class replaces itself with one of these when it's serialized (see <code>writeReplace()</code>), and the form turns back into the object when it's
+ * read (see <code>readResolve()</code>):
+ * <br>- A Project is written once per stream in the ClearDialogueBinaryIO format, where every string and connector is written once and connections refer
+ * to connectors by index. Its lookup tables are rebuilt when it's read, instead of being written out.
+ * <br>- A Dialogue, DialogueConnector, Connection, or Response is written as its Project plus its index in it, so it comes back as part of the same
+ * deserialized Project (the Project itself is only written once no matter how many of its parts are).
+ * <br>- A Dialogue that isn't in its Project (I.E. one made with <code>duplicate()</code>) is written as a copy in a Project of its own.
+ */
+class ProjectSerialization {
+
+	//Written first in every form, so that the encoding can change without breaking older snapshots
+	private static final byte FORM_VERSION = 1;
+
+	private static void writeVersion(ObjectOutput out) throws IOException {
+		out.writeByte(FORM_VERSION);
+	}
+
+	private static void readVersion(ObjectInput in) throws IOException {
+		byte version = in.readByte();
+
+		if (version != FORM_VERSION) {
+			throw new InvalidObjectException("Unsupported serialized form version " + version + " (expected " + FORM_VERSION + ")");
+		}
+	}
+
+	/*
+	 *
+	 * Project
+	 *
+	 */
+
+	static final class ProjectForm implements Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		private Project project;
+
+		public ProjectForm() {
+		}
+
+		ProjectForm(Project project) {
+			this.project = project;
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024 + project.getNumDialogue() * 64);
+			new ClearDialogueBinaryIO().exportProject(project, bytes);
+
+			writeVersion(out);
+			out.writeInt(bytes.size());
+			bytes.writeTo(new ObjectOutputAdapter(out));
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException {
+			readVersion(in);
+
+			//The binary format is read from a copy, since its reader buffers ahead of what it needs
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+
+			try {
+				project = new ClearDialogueBinaryIO().importProject(new ByteArrayInputStream(bytes));
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException("Failed to read serialized Project", e);
+			}
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			return project;
+		}
+	}
+
+	/**
+	 * Lets the binary format write straight into the object stream.
+	 */
+	private static class ObjectOutputAdapter extends OutputStream {
+		private final ObjectOutput out;
+
+		private ObjectOutputAdapter(ObjectOutput out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+	}
+
+	/*
+	 *
+	 * Dialogue
+	 *
+	 */
+
+	static final class DialogueForm implements Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		private Project project;
+		private int index;
+
+		public DialogueForm() {
+		}
+
+		DialogueForm(Dialogue dialogue) {
+			Project project = dialogue.getProject();
+
+			if (project == null || !project.containsDialogue(dialogue)) {
+				project = new Project();
+				project.addDialogue(dialogue.copy(project));
+				index = 0;
+			} else {
+				index = indexOf(project, dialogue);
+			}
+
+			this.project = project;
+		}
+
+		private static int indexOf(Project project, Dialogue dialogue) {
+			for (int i = 0; i < project.getNumDialogue(); i++) {
+				if (project.getDialogue(i) == dialogue) {
+					return i;
+				}
+			}
+
+			return -1;
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			writeVersion(out);
+			out.writeObject(project);
+			out.writeInt(index);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			readVersion(in);
+			project = (Project) in.readObject();
+			index = in.readInt();
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			if (index < 0 || index >= project.getNumDialogue()) {
+				throw new InvalidObjectException("Serialized Dialogue index " + index + " is out of range");
+			}
+
+			return project.getDialogue(index);
+		}
+	}
+
+	/*
+	 *
+	 * DialogueConnector
+	 *
+	 */
+
+	static final class ConnectorForm implements Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		private Dialogue parent;
+		private int index;
+
+		public ConnectorForm() {
+		}
+
+		ConnectorForm(DialogueConnector connector) {
+			parent = connector.getParent();
+			index = parent.getAllConnectors().indexOf(connector);
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			writeVersion(out);
+			out.writeObject(parent);
+			out.writeInt(index);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			readVersion(in);
+			parent = (Dialogue) in.readObject();
+			index = in.readInt();
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			ArrayList<DialogueConnector> connectors = parent.getAllConnectors();
+
+			if (index < 0 || index >= connectors.size()) {
+				throw new InvalidObjectException("Serialized DialogueConnector index " + index + " is out of range");
+			}
+
+			return connectors.get(index);
+		}
+	}
+
+	/*
+	 *
+	 * Connection
+	 *
+	 */
+
+	static final class ConnectionForm implements Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		//Connections that are in a Project are written as their index in it, otherwise as their two connectors
+		private Project project;
+		private int index = -1;
+		private DialogueConnector connector1, connector2;
+
+		public ConnectionForm() {
+		}
+
+		ConnectionForm(Connection connection) {
+			Project project = connection.getConnector1().getParent().getProject();
+
+			if (project != null) {
+				index = project.indexOfConnection(connection);
+
+				if (index >= 0) {
+					this.project = project;
+					return;
+				}
+			}
+
+			connector1 = connection.getConnector1();
+			connector2 = connection.getConnector2();
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			writeVersion(out);
+			out.writeInt(index);
+
+			if (index >= 0) {
+				out.writeObject(project);
+			} else {
+				out.writeObject(connector1);
+				out.writeObject(connector2);
+			}
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			readVersion(in);
+			index = in.readInt();
+
+			if (index >= 0) {
+				project = (Project) in.readObject();
+			} else {
+				connector1 = (DialogueConnector) in.readObject();
+				connector2 = (DialogueConnector) in.readObject();
+			}
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			if (index < 0) {
+				return new Connection(connector1, connector2);
+			}
+
+			if (index >= project.getNumConnections()) {
+				throw new InvalidObjectException("Serialized Connection index " + index + " is out of range");
+			}
+
+			return project.getConnection(index);
+		}
+	}
+
+	/*
+	 *
+	 * DialogueResponse.Response
+	 *
+	 */
+
+	static final class ResponseForm implements Externalizable {
+		private static final long serialVersionUID = 1L;
+
+		private DialogueResponse parent;
+		private int index;
+
+		public ResponseForm() {
+		}
+
+		ResponseForm(DialogueResponse parent, DialogueResponse.Response response) {
+			this.parent = parent;
+			this.index = parent.getResponses().indexOf(response);
+		}
+
+		@Override
+		public void writeExternal(ObjectOutput out) throws IOException {
+			writeVersion(out);
+			out.writeObject(parent);
+			out.writeInt(index);
+		}
+
+		@Override
+		public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+			readVersion(in);
+			parent = (DialogueResponse) in.readObject();
+			index = in.readInt();
+		}
+
+		private Object readResolve() throws ObjectStreamException {
+			if (index < 0 || index >= parent.getResponses().size()) {
+				throw new InvalidObjectException("Serialized Response index " + index + " is out of range");
+			}
+
+			return parent.getResponses().get(index);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package nokori.clear_dialogue.project;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Checks a Project for problems that the editor doesn't stop writers from saving, so that they can be caught by build pipelines before a game runs into them.
+ *
+ * <br><br>Errors are problems that break the Project at runtime:
+ * <br>- Connections to connectors that don't belong to a node in the Project (dangling connector UIDs)
+ * <br>- Connectors that share a UID with another one (nodes can't, since <code>Project.addDialogue()</code> rejects them, and importers report them as
+ * invalid files)
+ *
+ * <br><br>Warnings are problems that are probably mistakes:
+ * <br>- The Project doesn't have any entry nodes (nodes with one of the entry tags, I.E. <code>$DIALOGUE_START</code>)
+ * <br>- Nodes that can't be reached from any entry node by following out-connectors
+ */
+public class ProjectValidator {
+
+	public static final String DEFAULT_ENTRY_TAG = "$DIALOGUE_START";
+
+	private final ArrayList<String> entryTags = new ArrayList<String>();
+
+	/**
+	 * Creates a validator that treats nodes tagged <code>$DIALOGUE_START</code> as the entries.
+	 */
+	public ProjectValidator() {
+		this(DEFAULT_ENTRY_TAG);
+	}
+
+	/**
+	 * @param entryTags - the tags of the nodes that dialogue is started from. A node is an entry if its tags exactly match one of them.
+	 */
+	public ProjectValidator(String... entryTags) {
+		Collections.addAll(this.entryTags, entryTags);
+	}
+
+	public List<String> getEntryTags() {
+		return Collections.unmodifiableList(entryTags);
+	}
+
+	public List<Problem> validate(Project project) {
+		ArrayList<Problem> problems = new ArrayList<Problem>();
+
+		checkUIDs(project, problems);
+		checkConnections(project, problems);
+		checkReachability(project, problems);
+
+		return problems;
+	}
+
+	private static void checkUIDs(Project project, ArrayList<Problem> problems) {
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue dialogue = project.getDialogue(i);
+			ArrayList<DialogueConnector> connectors = dialogue.getAllConnectors();
+
+			for (int j = 0; j < connectors.size(); j++) {
+				DialogueConnector connector = connectors.get(j);
+
+				if (connector != null && project.getDialogueConnector(connector.getUID()) != connector) {
+					problems.add(new Problem(Severity.ERROR, connector.getUID(), "a connector of node \"" + dialogue.getTitle() + "\" has the same UID as another connector"));
+				}
+			}
+		}
+	}
+
+	private static void checkConnections(Project project, ArrayList<Problem> problems) {
+		for (int i = 0; i < project.getNumConnections(); i++) {
+			Connection connection = project.getConnection(i);
+
+			checkConnector(project, connection.getConnector1(), problems);
+			checkConnector(project, connection.getConnector2(), problems);
+		}
+	}
+
+	private static void checkConnector(Project project, DialogueConnector connector, ArrayList<Problem> problems) {
+		if (connector == null) {
+			problems.add(new Problem(Severity.ERROR, null, "a connection is missing a connector"));
+		} else if (project.getDialogueConnector(connector.getUID()) != connector || !project.containsDialogue(connector.getParent())) {
+			problems.add(new Problem(Severity.ERROR, connector.getUID(), "a connection refers to a connector that isn't in the project"));
+		}
+	}
+
+	private void checkReachability(Project project, ArrayList<Problem> problems) {
+		IdentityHashMap<Dialogue, Boolean> reachable = new IdentityHashMap<Dialogue, Boolean>();
+		ArrayDeque<Dialogue> queue = new ArrayDeque<Dialogue>();
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue dialogue = project.getDialogue(i);
+
+			if (dialogue.getTags() != null && entryTags.contains(dialogue.getTags()) && reachable.put(dialogue, Boolean.TRUE) == null) {
+				queue.add(dialogue);
+			}
+		}
+
+		if (queue.isEmpty()) {
+			if (project.getNumDialogue() > 0) {
+				problems.add(new Problem(Severity.WARNING, null, "the project doesn't have any nodes tagged " + entryTags));
+			}
+
+			return;
+		}
+
+		while (!queue.isEmpty()) {
+			ArrayList<Dialogue> outgoing = project.getOutgoingDialogue(queue.poll());
+
+			for (int i = 0; i < outgoing.size(); i++) {
+				if (reachable.put(outgoing.get(i), Boolean.TRUE) == null) {
+					queue.add(outgoing.get(i));
+				}
+			}
+		}
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue dialogue = project.getDialogue(i);
+
+			if (!reachable.containsKey(dialogue)) {
+				problems.add(new Problem(Severity.WARNING, dialogue.getUID(), "node \"" + dialogue.getTitle() + "\" can't be reached from any entry node"));
+			}
+		}
+	}
+
+	/*
+	 *
+	 * Problems
+	 *
+	 */
+
+	public enum Severity {
+		ERROR,
+		WARNING
+	}
+
+	public static class Problem {
+		private final Severity severity;
+		private final String uid;
+		private final String message;
+
+		public Problem(Severity severity, String uid, String message) {
+			this.severity = severity;
+			this.uid = uid;
+			this.message = message;
+		}
+
+		public Severity getSeverity() {
+			return severity;
+		}
+
+		/**
+		 * @return the UID of the node or connector with the problem, or null if it isn't about one in particular
+		 */
+		public String getUID() {
+			return uid;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return severity + ": " + message + (uid != null ? " (" + uid + ")" : "");
+		}
+	}
+}
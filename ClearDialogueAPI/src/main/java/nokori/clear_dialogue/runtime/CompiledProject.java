@@ -0,0 +1,440 @@
+package nokori.clear_dialogue.runtime;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.DialogueConnector;
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueResponse.Response;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * This is a frozen, read-only version of a Project that's meant for games that only need to traverse the dialogue once it's loaded.
+ * 
+ * <br><br>Nodes are referred to by their index (the same order as the Project they were compiled from), and all of the node data is stored in 
+ * flat arrays. Editor data (positions, viewport settings, etc) and the Connection objects are dropped entirely. Each node has a list of "choices" 
+ * that point to the index of the node they lead to: a DialogueText has a single choice (its out-connector) and a DialogueResponse has one choice per 
+ * response. Following a choice is a single array read, so nothing is allocated while traversing.
+ * 
+ * <br><br>Use <code>Project.compile()</code> to make one.
+ */
+public class CompiledProject implements Serializable {
+	
+	private static final long serialVersionUID = -2917004855930485531L;
+	
+	/*
+	 * Node kinds
+	 */
+	
+	public static final byte KIND_TEXT = 0;
+	public static final byte KIND_RESPONSE = 1;
+	
+	/**
+	 * Returned by the lookup functions and choice targets when there is no node.
+	 */
+	public static final int NO_NODE = -1;
+	
+	private final int version;
+	private final String name;
+	
+	//Every string in the project, deduplicated. Everything else refers to strings by their index in this table (or -1 for null).
+	private final String[] strings;
+	
+	//Node data, indexed by node
+	private final byte[] kinds;
+	private final int[] uids;
+	private final int[] titles;
+	private final int[] tags;
+	private final int[] texts;
+	
+	//The choices of node n are stored from choiceOffsets[n] up to (but not including) choiceOffsets[n + 1]
+	private final int[] choiceOffsets;
+	private final int[] choiceTexts;
+	private final int[] choiceTargets;
+	
+	//The text of the active LocaleTable, swapped in as a whole so that readers on other threads always see one complete language
+	private transient volatile LocalizedText localizedText;
+	
+	public CompiledProject(Project project) {
+		this(project, true);
+	}
+	
+	/**
+	 * @param includeText - if false, the text of the nodes and responses is left out, so that it only comes from the LocaleTable (see <code>setLocaleTable()</code>). 
+	 * This keeps the source language out of memory when the game is running in another one.
+	 */
+	public CompiledProject(Project project, boolean includeText) {
+		int numNodes = project.getNumDialogue();
+		
+		version = project.getVersion();
+		name = project.getName();
+		
+		kinds = new byte[numNodes];
+		uids = new int[numNodes];
+		titles = new int[numNodes];
+		tags = new int[numNodes];
+		texts = new int[numNodes];
+		choiceOffsets = new int[numNodes + 1];
+		
+		/*
+		 * Assign every node its index and count the choices so that the choice arrays can be sized up front
+		 */
+		
+		IdentityHashMap<Dialogue, Integer> nodeIndices = new IdentityHashMap<Dialogue, Integer>(numNodes);
+		int numChoices = 0;
+		
+		for (int i = 0; i < numNodes; i++) {
+			Dialogue node = project.getDialogue(i);
+			nodeIndices.put(node, i);
+			
+			choiceOffsets[i] = numChoices;
+			
+			if (node instanceof DialogueResponse) {
+				numChoices += ((DialogueResponse) node).getResponses().size();
+			} else {
+				numChoices++;
+			}
+		}
+		
+		choiceOffsets[numNodes] = numChoices;
+		
+		choiceTexts = new int[numChoices];
+		choiceTargets = new int[numChoices];
+		
+		/*
+		 * Fill in the node data
+		 */
+		
+		StringTable stringTable = new StringTable();
+		
+		for (int i = 0; i < numNodes; i++) {
+			Dialogue node = project.getDialogue(i);
+			int choice = choiceOffsets[i];
+			
+			uids[i] = stringTable.add(node.getUID());
+			titles[i] = stringTable.add(node.getTitle());
+			tags[i] = stringTable.add(node.getTags());
+			
+			if (node instanceof DialogueResponse) {
+				kinds[i] = KIND_RESPONSE;
+				texts[i] = -1;
+				
+				ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+				
+				for (int j = 0; j < responses.size(); j++) {
+					Response response = responses.get(j);
+					
+					choiceTexts[choice + j] = (includeText ? stringTable.add(response.getText()) : -1);
+					choiceTargets[choice + j] = getTarget(response.getOutConnector(), nodeIndices);
+				}
+			} else {
+				kinds[i] = KIND_TEXT;
+				
+				DialogueConnector outConnector = (node instanceof DialogueText ? ((DialogueText) node).getOutConnector() : null);
+				
+				texts[i] = (includeText ? stringTable.add(node.getRenderableContent()) : -1);
+				choiceTexts[choice] = -1;
+				choiceTargets[choice] = getTarget(outConnector, nodeIndices);
+			}
+		}
+		
+		strings = stringTable.toArray();
+	}
+	
+	private static int getTarget(DialogueConnector outConnector, IdentityHashMap<Dialogue, Integer> nodeIndices) {
+		if (outConnector == null) {
+			return NO_NODE;
+		}
+		
+		Dialogue target = outConnector.getNodeConnectedTo();
+		Integer index = (target != null ? nodeIndices.get(target) : null);
+		
+		return (index != null ? index : NO_NODE);
+	}
+	
+	public int getVersion() {
+		return version;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getNumNodes() {
+		return kinds.length;
+	}
+	
+	/**
+	 * @return KIND_TEXT or KIND_RESPONSE
+	 */
+	public byte getKind(int node) {
+		return kinds[node];
+	}
+	
+	public boolean isText(int node) {
+		return (kinds[node] == KIND_TEXT);
+	}
+	
+	public boolean isResponse(int node) {
+		return (kinds[node] == KIND_RESPONSE);
+	}
+	
+	public String getUID(int node) {
+		return getString(uids[node]);
+	}
+	
+	public String getTitle(int node) {
+		return getString(titles[node]);
+	}
+	
+	public String getTags(int node) {
+		return getString(tags[node]);
+	}
+	
+	/**
+	 * @return the text of a DialogueText node, or null if the node is a response node. If a LocaleTable is set, its text is used when it has it.
+	 */
+	public String getText(int node) {
+		LocalizedText localizedText = this.localizedText;
+		
+		if (localizedText != null && localizedText.texts[node] != null) {
+			return localizedText.texts[node];
+		}
+		
+		return getString(texts[node]);
+	}
+	
+	/**
+	 * @return the index of the node that the given DialogueText node leads into, or NO_NODE if it's the end of the dialogue.
+	 */
+	public int getNext(int node) {
+		return choiceTargets[choiceOffsets[node]];
+	}
+	
+	/**
+	 * @return the number of choices the node has. A text node always has one.
+	 */
+	public int getNumChoices(int node) {
+		return choiceOffsets[node + 1] - choiceOffsets[node];
+	}
+	
+	/**
+	 * @return the text of the given response, or null if the node is a text node. If a LocaleTable is set, its text is used when it has it.
+	 */
+	public String getChoiceText(int node, int choice) {
+		int index = checkChoice(node, choice);
+		LocalizedText localizedText = this.localizedText;
+		
+		if (localizedText != null && localizedText.choiceTexts[index] != null) {
+			return localizedText.choiceTexts[index];
+		}
+		
+		return getString(choiceTexts[index]);
+	}
+	
+	/**
+	 * @return the index of the node that the given choice leads into, or NO_NODE if it's not connected to anything.
+	 */
+	public int getChoiceTarget(int node, int choice) {
+		return choiceTargets[checkChoice(node, choice)];
+	}
+	
+	private int checkChoice(int node, int choice) {
+		if (choice < 0 || choice >= getNumChoices(node)) {
+			throw new IndexOutOfBoundsException("Choice " + choice + " is out of range for node " + node + " (" + getNumChoices(node) + " choices)");
+		}
+		
+		return choiceOffsets[node] + choice;
+	}
+	
+	private String getString(int index) {
+		return (index >= 0 ? strings[index] : null);
+	}
+	
+	/*
+	 * 
+	 * Localization
+	 * 
+	 */
+	
+	/**
+	 * Switches the text over to the given LocaleTable. The table's strings are looked up once here, so reading text afterwards costs the same as before. 
+	 * Text that the table doesn't have falls back to the compiled-in text (if it was included).
+	 * 
+	 * @param table - the LocaleTable to use, or null to go back to the compiled-in text
+	 */
+	public void setLocaleTable(LocaleTable table) {
+		if (table == null) {
+			localizedText = null;
+			return;
+		}
+		
+		int numNodes = getNumNodes();
+		
+		String[] localizedTexts = new String[numNodes];
+		String[] localizedChoiceTexts = new String[choiceTexts.length];
+		
+		for (int i = 0; i < numNodes; i++) {
+			String uid = getUID(i);
+			
+			if (kinds[i] == KIND_TEXT) {
+				localizedTexts[i] = table.get(LocaleTable.getTextID(uid));
+			} else {
+				for (int j = choiceOffsets[i]; j < choiceOffsets[i + 1]; j++) {
+					localizedChoiceTexts[j] = table.get(LocaleTable.getResponseID(uid, j - choiceOffsets[i]));
+				}
+			}
+		}
+		
+		localizedText = new LocalizedText(table, localizedTexts, localizedChoiceTexts);
+	}
+	
+	/**
+	 * @return the LocaleTable the text currently comes from, or null if it's the compiled-in text.
+	 */
+	public LocaleTable getLocaleTable() {
+		LocalizedText localizedText = this.localizedText;
+		return (localizedText != null ? localizedText.table : null);
+	}
+	
+	private static class LocalizedText {
+		private final LocaleTable table;
+		private final String[] texts;
+		private final String[] choiceTexts;
+		
+		private LocalizedText(LocaleTable table, String[] texts, String[] choiceTexts) {
+			this.table = table;
+			this.texts = texts;
+			this.choiceTexts = choiceTexts;
+		}
+	}
+	
+	/*
+	 * 
+	 * Lookups
+	 * 
+	 */
+	
+	/**
+	 * Finds the first node with the given tag.
+	 * 
+	 * @param tag - the tag to search for
+	 * @param exactMatch - if true, it will only return a node that equals() the input. Otherwise, contains() will be used.
+	 * @return the index of the node, or NO_NODE if a match isn't found
+	 */
+	public int findNodeWithTag(String tag, boolean exactMatch) {
+		return findString(tags, tag, exactMatch);
+	}
+	
+	/**
+	 * Finds the first node with the given title.
+	 * 
+	 * @param title - the title to search for
+	 * @param exactMatch - if true, it will only return a node that equals() the input. Otherwise, contains() will be used.
+	 * @return the index of the node, or NO_NODE if a match isn't found
+	 */
+	public int findNodeWithTitle(String title, boolean exactMatch) {
+		return findString(titles, title, exactMatch);
+	}
+	
+	/**
+	 * @return the index of the node with the given UID, or NO_NODE if it isn't in this project.
+	 */
+	public int findNodeWithUID(String uid) {
+		return findString(uids, uid, true);
+	}
+	
+	/**
+	 * Finds the first node with each of the given exact tags, I.E. the <code>TAGS</code> constant generated by DialogueConstantsGenerator.
+	 * The result can be kept and indexed with the matching <code>TAG_</code> constants instead of searching for the tags by string.
+	 *
+	 * @return the index of the node with each tag, or NO_NODE for the tags no node has
+	 */
+	public int[] indexTags(String... tags) {
+		return indexStrings(this.tags, tags);
+	}
+	
+	/**
+	 * Finds the first node with each of the given exact titles, I.E. the <code>TITLES</code> constant generated by DialogueConstantsGenerator.
+	 * The result can be kept and indexed with the matching <code>TITLE_</code> constants instead of searching for the titles by string.
+	 *
+	 * @return the index of the node with each title, or NO_NODE for the titles no node has
+	 */
+	public int[] indexTitles(String... titles) {
+		return indexStrings(this.titles, titles);
+	}
+	
+	/**
+	 * Resolves every key with one pass over the nodes, instead of one search per key.
+	 */
+	private int[] indexStrings(int[] references, String[] keys) {
+		HashMap<String, Integer> ids = new HashMap<String, Integer>(Math.max(16, (int) (keys.length / 0.75f) + 1));
+		
+		for (int i = 0; i < keys.length; i++) {
+			ids.putIfAbsent(keys[i], i);
+		}
+		
+		int[] nodes = new int[keys.length];
+		Arrays.fill(nodes, NO_NODE);
+		
+		for (int i = 0; i < references.length; i++) {
+			Integer id = ids.get(getString(references[i]));
+			
+			if (id != null && nodes[id] == NO_NODE) {
+				nodes[id] = i;
+			}
+		}
+		
+		//Duplicate keys resolve to the same node as their first occurrence
+		for (int i = 0; i < keys.length; i++) {
+			nodes[i] = nodes[ids.get(keys[i])];
+		}
+		
+		return nodes;
+	}
+	
+	private int findString(int[] references, String search, boolean exactMatch) {
+		for (int i = 0; i < references.length; i++) {
+			String s = getString(references[i]);
+			
+			if (s != null && (exactMatch ? s.equals(search) : s.contains(search))) {
+				return i;
+			}
+		}
+		
+		return NO_NODE;
+	}
+	
+	/**
+	 * Deduplicates strings while compiling.
+	 */
+	private static class StringTable {
+		private HashMap<String, Integer> indices = new HashMap<String, Integer>();
+		private ArrayList<String> strings = new ArrayList<String>();
+		
+		public int add(String s) {
+			if (s == null) {
+				return -1;
+			}
+			
+			Integer index = indices.get(s);
+			
+			if (index == null) {
+				index = strings.size();
+				indices.put(s, index);
+				strings.add(s);
+			}
+			
+			return index;
+		}
+		
+		public String[] toArray() {
+			return strings.toArray(new String[strings.size()]);
+		}
+	}
+}
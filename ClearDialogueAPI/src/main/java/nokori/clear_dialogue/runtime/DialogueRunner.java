@@ -0,0 +1,154 @@
+package nokori.clear_dialogue.runtime;
+
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.DialogueConnector;
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * A cursor for stepping through the conversations in a Project, meant to be used directly by games.
+ * 
+ * <br><br>Start it on a node (or a tag like <code>$DIALOGUE_START</code>), read the current DialogueText or DialogueResponse, then call 
+ * <code>advance()</code> for text nodes or <code>choose()</code> for response nodes until <code>isFinished()</code> returns true.
+ * 
+ * <br><br>Once started, stepping doesn't allocate anything, so runners can be ticked every frame by as many NPCs as needed. A runner can be 
+ * reused for any number of conversations in the same Project.
+ */
+public class DialogueRunner {
+	
+	private Project project;
+	private Dialogue current;
+	
+	public DialogueRunner(Project project) {
+		this.project = project;
+	}
+	
+	public Project getProject() {
+		return project;
+	}
+	
+	/**
+	 * Starts the dialogue at the given node.
+	 * 
+	 * @return false if the node is null (I.E. the dialogue is already finished)
+	 */
+	public boolean start(Dialogue node) {
+		current = node;
+		return !isFinished();
+	}
+	
+	/**
+	 * Starts the dialogue at the first node that has the exact given tag (I.E. <code>$DIALOGUE_START</code>).
+	 * 
+	 * @return false if no node in the Project has the tag
+	 */
+	public boolean start(String tag) {
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+			
+			if (tag.equals(node.getTags())) {
+				return start(node);
+			}
+		}
+		
+		return start((Dialogue) null);
+	}
+	
+	/**
+	 * Stops the current dialogue. isFinished() will return true afterwards.
+	 */
+	public void stop() {
+		current = null;
+	}
+	
+	/**
+	 * @return true if there's no current node, either because the runner hasn't been started or because the last node wasn't connected to anything.
+	 */
+	public boolean isFinished() {
+		return (current == null);
+	}
+	
+	/**
+	 * @return the node the runner is currently on, or null if the dialogue is finished.
+	 */
+	public Dialogue getCurrent() {
+		return current;
+	}
+	
+	public boolean isOnText() {
+		return (current instanceof DialogueText);
+	}
+	
+	public boolean isOnResponse() {
+		return (current instanceof DialogueResponse);
+	}
+	
+	/**
+	 * @return the current node if it's a DialogueText, otherwise null.
+	 */
+	public DialogueText getCurrentText() {
+		return (isOnText() ? (DialogueText) current : null);
+	}
+	
+	/**
+	 * @return the current node if it's a DialogueResponse, otherwise null.
+	 */
+	public DialogueResponse getCurrentResponse() {
+		return (isOnResponse() ? (DialogueResponse) current : null);
+	}
+	
+	/**
+	 * @return the number of responses available on the current node, or 0 if it isn't a DialogueResponse.
+	 */
+	public int getNumChoices() {
+		return (isOnResponse() ? ((DialogueResponse) current).getResponses().size() : 0);
+	}
+	
+	/**
+	 * @return the text of the given response on the current DialogueResponse.
+	 */
+	public String getChoiceText(int index) {
+		return requireResponse().getResponses().get(index).getText();
+	}
+	
+	/**
+	 * Moves on from the current DialogueText to the node it's connected to.
+	 * 
+	 * @return false if the dialogue has finished
+	 */
+	public boolean advance() {
+		if (!isOnText()) {
+			throw new IllegalStateException("advance() can only be used on a DialogueText node (current node: " + describeCurrent() + ")");
+		}
+		
+		return follow(((DialogueText) current).getOutConnector());
+	}
+	
+	/**
+	 * Picks a response on the current DialogueResponse and moves on to the node it's connected to.
+	 * 
+	 * @param index - the index of the response
+	 * @return false if the dialogue has finished
+	 */
+	public boolean choose(int index) {
+		return follow(requireResponse().getResponses().get(index).getOutConnector());
+	}
+	
+	private boolean follow(DialogueConnector outConnector) {
+		current = (outConnector != null ? outConnector.getNodeConnectedTo() : null);
+		return !isFinished();
+	}
+	
+	private DialogueResponse requireResponse() {
+		if (!isOnResponse()) {
+			throw new IllegalStateException("Responses can only be chosen on a DialogueResponse node (current node: " + describeCurrent() + ")");
+		}
+		
+		return (DialogueResponse) current;
+	}
+	
+	private String describeCurrent() {
+		return (current != null ? "\"" + current.getTitle() + "\"" : "none");
+	}
+}
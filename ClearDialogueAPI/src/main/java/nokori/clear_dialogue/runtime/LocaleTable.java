@@ -0,0 +1,306 @@
+package nokori.clear_dialogue.runtime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
+import javax.json.stream.JsonParsingException;
+
+import nokori.clear_dialogue.io.AtomicFileWriter;
+import nokori.clear_dialogue.project.Dialogue;
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueResponse.Response;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+
+/**
+ * The text of a Project in one language, kept apart from the dialogue graph so that one graph can be shared by every language.
+ *
+ * <br><br>Every translatable string has an ID made from the UID of its node: the text of a DialogueText is <code>getTextID(uid)</code> and each
+ * response of a DialogueResponse is <code>getResponseID(uid, index)</code>. Since the IDs only depend on UIDs, a table can be extracted from any copy
+ * of the Project that kept its UIDs (I.E. the existing per-language copies of a Project).
+ *
+ * <br><br>In-game, compile the Project once (without its text, see <code>Project.compile(boolean)</code>) and swap tables in with
+ * <code>CompiledProject.setLocaleTable()</code>, so that only the graph and the active language are in memory. In the editor,
+ * <code>apply()</code> writes a table's text into a Project.
+ *
+ * <br><br>Tables are saved as UTF-8 JSON:
+ *
+ * <pre>
+ * { "locale": "fr", "strings": { "&lt;id&gt;": "&lt;text&gt;", ... } }
+ * </pre>
+ */
+public class LocaleTable {
+
+	public static final String IOKEY_LOCALE = "locale";
+	public static final String IOKEY_STRINGS = "strings";
+
+	//Separates the node UID from the response index in response IDs
+	public static final char RESPONSE_SEPARATOR = '#';
+
+	//The factories are cached since looking up the JSON provider is expensive
+	private static final JsonParserFactory PARSER_FACTORY = Json.createParserFactory(null);
+	private static final JsonGeneratorFactory GENERATOR_FACTORY = Json.createGeneratorFactory(Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true));
+
+	private final String locale;
+	private final HashMap<String, String> strings;
+
+	public LocaleTable(String locale) {
+		this(locale, 16);
+	}
+
+	/**
+	 * @param expectedSize - the number of strings the table is expected to hold, so that it doesn't have to grow while it's filled
+	 */
+	public LocaleTable(String locale, int expectedSize) {
+		this(locale, new HashMap<String, String>(Math.max(16, (int) (expectedSize / 0.75f) + 1)));
+	}
+
+	private LocaleTable(String locale, HashMap<String, String> strings) {
+		this.locale = locale;
+		this.strings = strings;
+	}
+
+	/*
+	 *
+	 * String IDs
+	 *
+	 */
+
+	/**
+	 * @return the ID of the text of the DialogueText with the given UID
+	 */
+	public static String getTextID(String uid) {
+		return uid;
+	}
+
+	/**
+	 * @return the ID of the text of a response (by its index) of the DialogueResponse with the given UID
+	 */
+	public static String getResponseID(String uid, int response) {
+		return uid + RESPONSE_SEPARATOR + response;
+	}
+
+	/*
+	 *
+	 * Strings
+	 *
+	 */
+
+	public String getLocale() {
+		return locale;
+	}
+
+	/**
+	 * @return the text with the given ID, or null if this table doesn't have it
+	 */
+	public String get(String id) {
+		return strings.get(id);
+	}
+
+	public void put(String id, String text) {
+		strings.put(id, text);
+	}
+
+	public void remove(String id) {
+		strings.remove(id);
+	}
+
+	public int size() {
+		return strings.size();
+	}
+
+	public Set<String> getIDs() {
+		return Collections.unmodifiableSet(strings.keySet());
+	}
+
+	/**
+	 * Makes a table out of the text currently in the Project.
+	 */
+	public static LocaleTable extract(Project project, String locale) {
+		LocaleTable table = new LocaleTable(locale, project.getNumDialogue() * 2);
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+
+			if (node instanceof DialogueText) {
+				table.put(getTextID(node.getUID()), ((DialogueText) node).getText());
+			}
+
+			if (node instanceof DialogueResponse) {
+				ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+
+				for (int j = 0; j < responses.size(); j++) {
+					table.put(getResponseID(node.getUID(), j), responses.get(j).getText());
+				}
+			}
+		}
+
+		return table;
+	}
+
+	/**
+	 * Writes the text in this table into the Project. Strings that this table doesn't have are left as they are.
+	 *
+	 * @return the number of strings in the Project that this table doesn't have
+	 */
+	public int apply(Project project) {
+		int missing = 0;
+
+		for (int i = 0; i < project.getNumDialogue(); i++) {
+			Dialogue node = project.getDialogue(i);
+
+			if (node instanceof DialogueText) {
+				String text = get(getTextID(node.getUID()));
+
+				if (text != null) {
+					((DialogueText) node).setText(text);
+				} else {
+					missing++;
+				}
+			}
+
+			if (node instanceof DialogueResponse) {
+				ArrayList<Response> responses = ((DialogueResponse) node).getResponses();
+
+				for (int j = 0; j < responses.size(); j++) {
+					String text = get(getResponseID(node.getUID(), j));
+
+					if (text != null) {
+						responses.get(j).setText(text);
+					} else {
+						missing++;
+					}
+				}
+			}
+		}
+
+		return missing;
+	}
+
+	/*
+	 *
+	 * Saving and loading
+	 *
+	 */
+
+	public void save(File f) throws Exception {
+		AtomicFileWriter.write(f, new AtomicFileWriter.WriteAction() {
+
+			@Override
+			public void write(OutputStream out) throws Exception {
+				save(new BufferedOutputStream(out));
+			}
+		});
+	}
+
+	/**
+	 * Writes this table to the given stream as UTF-8 JSON, sorted by ID so that changes to the file are easy to compare. The stream is flushed, but not closed.
+	 */
+	public void save(OutputStream out) {
+		JsonGenerator generator = GENERATOR_FACTORY.createGenerator(out, StandardCharsets.UTF_8);
+
+		generator.writeStartObject();
+		generator.write(IOKEY_LOCALE, locale);
+		generator.writeStartObject(IOKEY_STRINGS);
+
+		for (Map.Entry<String, String> e : new TreeMap<String, String>(strings).entrySet()) {
+			if (e.getValue() != null) {
+				generator.write(e.getKey(), e.getValue());
+			} else {
+				generator.writeNull(e.getKey());
+			}
+		}
+
+		generator.writeEnd();
+		generator.writeEnd();
+
+		//Closing the generator would also close the stream, so it's only flushed here
+		generator.flush();
+	}
+
+	public static LocaleTable load(File f) throws Exception {
+		try (JsonParser parser = PARSER_FACTORY.createParser(new BufferedInputStream(new FileInputStream(f)))) {
+			return load(parser);
+		}
+	}
+
+	/**
+	 * Reads a table from a JsonParser positioned before the table's object. The strings are read straight into the table as they're parsed.
+	 */
+	public static LocaleTable load(JsonParser parser) {
+		expect(parser, Event.START_OBJECT);
+
+		String locale = null;
+		HashMap<String, String> strings = null;
+
+		while (next(parser) == Event.KEY_NAME) {
+			String key = parser.getString();
+
+			if (key.equals(IOKEY_LOCALE)) {
+				expect(parser, Event.VALUE_STRING);
+				locale = parser.getString();
+			} else if (key.equals(IOKEY_STRINGS)) {
+				expect(parser, Event.START_OBJECT);
+				strings = new HashMap<String, String>();
+
+				while (next(parser) == Event.KEY_NAME) {
+					String id = parser.getString();
+					Event value = next(parser);
+
+					if (value == Event.VALUE_STRING) {
+						strings.put(id, parser.getString());
+					} else if (value == Event.VALUE_NULL) {
+						strings.put(id, null);
+					} else {
+						throw new JsonParsingException("Unexpected JSON event " + value, parser.getLocation());
+					}
+				}
+			} else {
+				throw new JsonParsingException("Unexpected key \"" + key + "\"", parser.getLocation());
+			}
+		}
+
+		if (locale == null) {
+			throw new JsonException("Missing required key \"" + IOKEY_LOCALE + "\"");
+		}
+
+		if (strings == null) {
+			throw new JsonException("Missing required key \"" + IOKEY_STRINGS + "\"");
+		}
+
+		return new LocaleTable(locale, strings);
+	}
+
+	private static void expect(JsonParser parser, Event type) {
+		Event event = next(parser);
+
+		if (event != type) {
+			throw new JsonParsingException("Unexpected JSON event " + event, parser.getLocation());
+		}
+	}
+
+	private static Event next(JsonParser parser) {
+		if (!parser.hasNext()) {
+			throw new JsonParsingException("Unexpected end of JSON", parser.getLocation());
+		}
+
+		return parser.next();
+	}
+}
@@ -0,0 +1,10 @@
+package nokori.clear_dialogue.throwable;
+
+public class InvalidProjectFileException extends Exception {
+
+	private static final long serialVersionUID = -3315046093151278416L;
+
+	public InvalidProjectFileException(String reason){
+        super("Invalid project file: " + reason);
+    }
+}
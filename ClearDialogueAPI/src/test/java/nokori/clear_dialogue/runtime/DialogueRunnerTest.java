@@ -0,0 +1,127 @@
+package nokori.clear_dialogue.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import nokori.clear_dialogue.project.DialogueResponse;
+import nokori.clear_dialogue.project.DialogueText;
+import nokori.clear_dialogue.project.Project;
+
+public class DialogueRunnerTest {
+
+	private static final int WARMUP_STEPS = 200000;
+	private static final int MEASURED_STEPS = 100000;
+
+	//Reading the counter can allocate a little by itself, so a few bytes are allowed for it. One allocation per step would be far more than this.
+	private static final long ALLOWED_BYTES = 1024;
+
+	private Project project;
+	private DialogueText start, end;
+	private DialogueResponse choice;
+
+	/**
+	 * Builds a conversation that loops forever: start -> choice -> (either response) -> end -> start
+	 */
+	private void createLoop() {
+		project = new Project();
+
+		start = new DialogueText(project, "Start", "$DIALOGUE_START", 0, 0);
+		choice = new DialogueResponse(project, "Choice", "", 100, 0);
+		end = new DialogueText(project, "End", "", 200, 0);
+
+		//A new DialogueResponse already has one response
+		choice.getResponses().get(0).setText("First");
+		choice.addResponse("Second");
+
+		project.addDialogue(start);
+		project.addDialogue(choice);
+		project.addDialogue(end);
+
+		start.getOutConnector().connect(choice.getInConnector());
+		choice.getResponses().get(0).getOutConnector().connect(end.getInConnector());
+		choice.getResponses().get(1).getOutConnector().connect(end.getInConnector());
+		end.getOutConnector().connect(start.getInConnector());
+	}
+
+	private static void step(DialogueRunner runner, int i) {
+		if (runner.isOnText()) {
+			runner.advance();
+		} else {
+			runner.choose(i & 1);
+		}
+	}
+
+	@Test
+	public void followsConnections() {
+		createLoop();
+
+		DialogueRunner runner = new DialogueRunner(project);
+
+		assertTrue(runner.start("$DIALOGUE_START"));
+		assertSame(start, runner.getCurrentText());
+
+		assertTrue(runner.advance());
+		assertSame(choice, runner.getCurrentResponse());
+		assertEquals(2, runner.getNumChoices());
+		assertEquals("Second", runner.getChoiceText(1));
+
+		assertTrue(runner.choose(1));
+		assertSame(end, runner.getCurrentText());
+
+		end.getOutConnector().disconnectAll();
+
+		assertFalse(runner.advance());
+		assertTrue(runner.isFinished());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void advanceOnResponseFails() {
+		createLoop();
+
+		DialogueRunner runner = new DialogueRunner(project);
+		runner.start(choice);
+		runner.advance();
+	}
+
+	@Test
+	public void steppingDoesNotAllocate() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		assumeTrue("The JVM doesn't count allocated bytes per thread", bean instanceof com.sun.management.ThreadMXBean);
+
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+
+		assumeTrue("The JVM doesn't count allocated bytes per thread", threadBean.isThreadAllocatedMemorySupported());
+
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		createLoop();
+
+		DialogueRunner runner = new DialogueRunner(project);
+		runner.start(start);
+
+		//Lets the JIT compile the stepping code, so that only its own allocations are counted
+		for (int i = 0; i < WARMUP_STEPS; i++) {
+			step(runner, i);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+
+		for (int i = 0; i < MEASURED_STEPS; i++) {
+			step(runner, i);
+		}
+
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+		assertFalse(runner.isFinished());
+		assertTrue(allocated + " bytes were allocated over " + MEASURED_STEPS + " steps", allocated <= ALLOWED_BYTES);
+	}
+}
@@ -103,6 +103,20 @@ public class ClearDialogueCanvas extends DraggableWidgetAssembly {
 		addChild(connectionRenderer);
 	}
 	
+	@Override
+	public void tick(NanoVGContext context, WidgetAssembly rootWidgetAssembly) {
+		super.tick(context, rootWidgetAssembly);
+		
+		//Autosaves are snapshotted here (on the same thread as the edits) and then written out in the background
+		sharedResources.getAutosaveService().tick();
+		
+		//Swap in any projects or syntax files that were changed outside of the IDE
+		sharedResources.applyFileChanges();
+		
+		//Apply any imports/exports that finished in the background
+		sharedResources.runMainThreadTasks();
+	}
+	
 	@Override
 	public void renderChildren(NanoVGContext context, WidgetAssembly rootWidgetAssembly) {
 		NanoVGScaler scaler = sharedResources.getScaler();
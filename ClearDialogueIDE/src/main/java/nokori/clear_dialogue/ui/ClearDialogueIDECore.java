@@ -22,6 +22,8 @@ public class ClearDialogueIDECore extends ClearApp {
 	
 	public static final int DEFAULT_WINDOW_WIDTH = 1280;
 	public static final int DEFAULT_WINDOW_HEIGHT = 720;
+	
+	private SharedResources sharedResources;
 
 	public static void main(String args[]) {
 		launch(new ClearDialogueIDECore(), args);
@@ -33,13 +35,16 @@ public class ClearDialogueIDECore extends ClearApp {
 	
 	@Override
 	public void init(WindowManager windowManager, Window window, NanoVGContext context, WidgetAssembly rootWidgetAssembly, String[] args) {
-		SharedResources sharedResources = new SharedResources();
+		sharedResources = new SharedResources();
 		sharedResources.init(this, window, context, (ClearDialogueRootWidgetAssembly) rootWidgetAssembly);
 	}
 
 	@Override
 	protected void endOfNanoVGApplicationCallback() {
 		WindowMemory.save();
+		
+		//Write out any unsaved changes before closing
+		sharedResources.dispose();
 	}
 
 	@Override
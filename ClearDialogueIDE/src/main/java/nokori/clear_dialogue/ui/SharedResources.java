@@ -2,7 +2,11 @@ package nokori.clear_dialogue.ui;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import nokori.clear.vg.ClearColor;
 import nokori.clear.vg.NanoVGContext;
@@ -13,6 +17,13 @@ import nokori.clear.vg.widget.text.ClearEscapeSequences;
 import nokori.clear.vg.widget.text.TextAreaAutoFormatterWidget;
 import nokori.clear.vg.widget.text.TextAreaAutoFormatterWidget.Syntax;
 import nokori.clear.windows.Window;
+import nokori.clear.windows.util.TinyFileDialog;
+import nokori.clear.windows.util.TinyFileDialog.Icon;
+import nokori.clear_dialogue.io.AutosaveService;
+import nokori.clear_dialogue.io.ClearDialogueAutoIO;
+import nokori.clear_dialogue.io.FileWatcher;
+import nokori.clear_dialogue.io.IOProgress;
+import nokori.clear_dialogue.io.ProjectFileUtils;
 import nokori.clear_dialogue.project.Project;
 import nokori.clear_dialogue.ui.util.FileUtils;
 
@@ -36,6 +47,113 @@ public class SharedResources {
 	private Project project = new Project();
 	private File projectFileLocation = null;
 	
+	/*
+	 * Autosave Data
+	 */
+	
+	public static final String AUTOSAVE_SETTINGS_LOCATION = "autosave_settings.ini";
+	
+	//Projects that haven't been saved to or loaded from a file yet are autosaved here instead
+	public static final String AUTOSAVE_FILE_LOCATION = "autosave.json";
+	
+	//How many of the previous saves of a project file are kept next to it in case something goes wrong
+	public static final int NUM_RECOVERY_COPIES = 3;
+	
+	//Periodically saves the project to its autosave file (see getAutosaveFile()), never to the project file itself
+	private AutosaveService autosaveService;
+	
+	//Writes the project file, but only when the user saves (see saveProject())
+	private AutosaveService projectSaveService;
+	
+	//Set while autosaves keep failing, so that the error is only shown once until a save succeeds again
+	private AtomicBoolean autosaveFailing = new AtomicBoolean(false);
+	
+	private AutosaveService.Listener autosaveListener = new AutosaveService.Listener() {
+		
+		@Override
+		public void saved(File f) {
+			autosaveFailing.set(false);
+		}
+		
+		@Override
+		public void saveFailed(File f, Exception e) {
+			if (!autosaveFailing.getAndSet(true)) {
+				runOnMainThread(() -> {
+					TinyFileDialog.showMessageDialog("Autosave Failed", "Couldn't save " + f.getAbsolutePath() + ": " + e 
+							+ "\n\nThe changes are still unsaved and saving will be retried.", Icon.ERROR);
+				});
+			}
+		}
+	};
+	
+	private AutosaveService.Listener projectSaveListener = new AutosaveService.Listener() {
+		
+		@Override
+		public void saved(File f) {
+			runOnMainThread(() -> {
+				showNotice("Saved " + f.getName());
+				discardAutosave(f);
+			});
+		}
+		
+		@Override
+		public void saveFailed(File f, Exception e) {
+			runOnMainThread(() -> {
+				TinyFileDialog.showMessageDialog("Save Failed", "Couldn't save " + f.getAbsolutePath() + ": " + e 
+						+ "\n\nThe changes are still in the autosave file.", Icon.ERROR);
+			});
+		}
+	};
+	
+	/*
+	 * Hot Reload Data
+	 */
+	
+	private FileWatcher fileWatcher;
+	private File watchedProjectFile, watchedSyntaxFile;
+	
+	//Changed files are loaded on the watcher thread, then handed over here to be applied on the main thread by applyFileChanges()
+	private AtomicReference<PendingReload> pendingReload = new AtomicReference<PendingReload>();
+	private AtomicBoolean syntaxChanged = new AtomicBoolean(false);
+	
+	private FileWatcher.Listener projectFileListener = new FileWatcher.Listener() {
+		
+		@Override
+		public void fileChanged(File f) throws Exception {
+			//Ignore the changes made by our own saves
+			if (!projectSaveService.isLastSave(f)) {
+				pendingReload.set(new PendingReload(f, new ClearDialogueAutoIO().importProject(f)));
+			}
+		}
+		
+		@Override
+		public void fileChangeFailed(File f, Throwable t) {
+			runOnMainThread(() -> {
+				TinyFileDialog.showMessageDialog("Reload Failed", "Couldn't reload " + f.getAbsolutePath() + ": " + t 
+						+ "\n\nThe project in the editor was left as it is.", Icon.ERROR);
+			});
+		}
+	};
+	
+	private FileWatcher.Listener syntaxFileListener = new FileWatcher.Listener() {
+		
+		@Override
+		public void fileChanged(File f) {
+			syntaxChanged.set(true);
+		}
+	};
+	
+	/*
+	 * Background Task Data
+	 */
+	
+	//Work finished on background threads (I.E. imports) is queued here to be applied on the main thread by runMainThreadTasks()
+	private ConcurrentLinkedQueue<Runnable> mainThreadTasks = new ConcurrentLinkedQueue<Runnable>();
+	
+	//The import/export currently running in the background (only one runs at a time), shown in the context hints
+	private IOProgress backgroundTaskProgress;
+	private String backgroundTaskName;
+	
 	/*
 	 * GUI Data
 	 */
@@ -71,9 +189,31 @@ public class SharedResources {
 			e.printStackTrace();
 		}
 
+		try {
+			fileWatcher = new FileWatcher();
+		} catch (IOException e) {
+			System.err.println("File watching isn't available, so projects and syntax files won't be reloaded automatically.");
+			e.printStackTrace();
+		}
+		
 		refreshContextHint();
 		loadAndProcessSyntax(false);
 		
+		ClearDialogueAutoIO autosaveIO = new ClearDialogueAutoIO();
+		autosaveIO.setNumRecoveryCopies(NUM_RECOVERY_COPIES);
+		
+		autosaveService = new AutosaveService(autosaveIO, FileUtils.loadAutosaveInterval());
+		autosaveService.setListener(autosaveListener);
+		autosaveService.setTarget(project, getAutosaveFile());
+		
+		ClearDialogueAutoIO projectSaveIO = new ClearDialogueAutoIO();
+		projectSaveIO.setNumRecoveryCopies(NUM_RECOVERY_COPIES);
+		
+		//An interval of 0 means that it only saves when asked to
+		projectSaveService = new AutosaveService(projectSaveIO, 0);
+		projectSaveService.setListener(projectSaveListener);
+		projectSaveService.setTarget(project, projectFileLocation);
+		
 		rootWidgetAssembly.init(this);
 	}
 	
@@ -122,9 +262,20 @@ public class SharedResources {
 	 * @return
 	 */
 	public String getContextHint() {
+		if (backgroundTaskProgress != null) {
+			return backgroundTaskName + ": " + backgroundTaskProgress.getNodesProcessed() + " Nodes, " + backgroundTaskProgress.getConnectionsProcessed() + " Connections";
+		}
+		
 		return contextHint;
 	}
 
+	/**
+	 * Shows a message in the context hints (I.E. where unsaved changes were moved to) until they're next refreshed.
+	 */
+	public void showNotice(String notice) {
+		contextHint = notice;
+	}
+
 	/**
 	 * Resets the context hint back to the general controls for navigating the canvas.
 	 */
@@ -161,12 +312,215 @@ public class SharedResources {
 	 * @param project
 	 */
 	public void setProject(Project project, File projectFileLocation) {
+		//Don't lose any unsaved changes to the outgoing project
+		if (autosaveService.isDirty()) {
+			autosaveService.save();
+		}
+		
 		this.project = project;
 		this.projectFileLocation = projectFileLocation;
 		
+		autosaveService.setTarget(project, getAutosaveFile());
+		projectSaveService.setTarget(project, projectFileLocation);
+		watchProjectFile();
+		
 		canvas.refresh(project);
 		scaler.setScale(project.getViewportScale());
 		rootWidgetAssembly.getProjectNameField().refresh();
+		
+		File autosave = getAutosaveFile();
+		
+		if (projectFileLocation != null && autosave.lastModified() > projectFileLocation.lastModified()) {
+			showNotice("There are newer unsaved changes to this project in " + autosave.getAbsolutePath());
+		}
+	}
+	
+	/**
+	 * Saves the project to the file it was loaded from in the background. Projects without a file are only saved to the autosave file.
+	 */
+	public void saveProject() {
+		if (projectFileLocation != null) {
+			projectSaveService.save();
+		} else {
+			autosaveService.save();
+			showNotice("This project doesn't have a file yet, so it was saved to " + getAutosaveFile().getAbsolutePath() + ". Use EXPORT JSON to give it one.");
+		}
+	}
+
+	/**
+	 * Gets the AutosaveService that periodically saves the current project in the background.
+	 */
+	public AutosaveService getAutosaveService() {
+		return autosaveService;
+	}
+	
+	/**
+	 * Applies any changes made to the project file or syntax file outside of the IDE. This is called every frame by the canvas, so that the new Project 
+	 * is only ever swapped in between frames.
+	 * <br><br>
+	 * If the open project has changes that weren't saved to the project file, they're saved to a new timestamped autosave file before the project is 
+	 * replaced, so that they can still be recovered. Where they went is shown in the context hints.
+	 */
+	public void applyFileChanges() {
+		PendingReload reload = pendingReload.getAndSet(null);
+		
+		if (reload != null && projectFileLocation != null && reload.file.toPath().equals(projectFileLocation.toPath().toAbsolutePath().normalize())) {
+			String notice = null;
+			
+			//The regular autosave file would be overwritten by the next autosave of the reloaded project
+			if (projectSaveService.isDirty()) {
+				File recoveryFile = ProjectFileUtils.getTimestampedAutosaveFile(projectFileLocation);
+				
+				autosaveService.setTarget(project, recoveryFile);
+				autosaveService.save();
+				
+				notice = reload.file.getName() + " was changed outside of the IDE. Unsaved changes were moved to " + recoveryFile.getAbsolutePath();
+				System.err.println(notice);
+			}
+			
+			setProject(reload.project, reload.file);
+			
+			if (notice != null) {
+				showNotice(notice);
+			}
+		}
+		
+		if (syntaxChanged.getAndSet(false)) {
+			loadAndProcessSyntax(true);
+		}
+	}
+	
+	/**
+	 * Queues a task to be run on the main thread at the start of the next frame. This can be called from any thread.
+	 */
+	public void runOnMainThread(Runnable task) {
+		mainThreadTasks.add(task);
+	}
+	
+	/**
+	 * Runs the tasks queued with runOnMainThread(). This is called every frame by the canvas.
+	 */
+	public void runMainThreadTasks() {
+		Runnable task;
+		
+		while ((task = mainThreadTasks.poll()) != null) {
+			task.run();
+		}
+	}
+	
+	/**
+	 * Starts tracking a background import/export so that its progress is shown in the context hints. If another one is still running, it's cancelled, 
+	 * since only the most recently requested one is wanted.
+	 * 
+	 * @param name - what's shown in the context hints (I.E. "Importing dialogue.json")
+	 * @return the IOProgress to pass to the import/export
+	 */
+	public IOProgress startBackgroundTask(String name) {
+		if (backgroundTaskProgress != null) {
+			backgroundTaskProgress.cancel();
+		}
+		
+		backgroundTaskProgress = new IOProgress();
+		backgroundTaskName = name;
+		
+		return backgroundTaskProgress;
+	}
+	
+	/**
+	 * @return true if a background import/export is being shown in the context hints.
+	 */
+	public boolean isBackgroundTaskRunning() {
+		return (backgroundTaskProgress != null);
+	}
+	
+	/**
+	 * Stops showing the given background import/export in the context hints, if it's still the current one.
+	 */
+	public void finishBackgroundTask(IOProgress progress) {
+		if (backgroundTaskProgress == progress) {
+			backgroundTaskProgress = null;
+			backgroundTaskName = null;
+		}
+	}
+	
+	/**
+	 * Closes down the background services (autosaving and file watching), saving any unsaved changes to the autosave file first. The project file 
+	 * is only written if a save was already in progress.
+	 */
+	public void dispose() {
+		autosaveService.close();
+		
+		projectSaveService.setTarget(null, null);
+		projectSaveService.close();
+		
+		if (fileWatcher != null) {
+			try {
+				fileWatcher.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	private void watchProjectFile() {
+		watchedProjectFile = rewatch(watchedProjectFile, projectFileLocation, projectFileListener);
+	}
+	
+	private void watchSyntaxFile() {
+		watchedSyntaxFile = rewatch(watchedSyntaxFile, FileUtils.getActiveSyntaxFile(), syntaxFileListener);
+	}
+	
+	/**
+	 * Moves the listener from the currently watched file over to the new one. 
+	 * 
+	 * @return the file that's now being watched
+	 */
+	private File rewatch(File watched, File f, FileWatcher.Listener listener) {
+		if (fileWatcher == null || (f != null && f.equals(watched))) {
+			return watched;
+		}
+		
+		if (watched != null) {
+			fileWatcher.unwatch(watched, listener);
+		}
+		
+		if (f == null) {
+			return null;
+		}
+		
+		try {
+			fileWatcher.watch(f, listener);
+			return f;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Deletes the autosave file once the project file has caught up with it, so that it isn't mistaken for newer changes when the project is next opened.
+	 */
+	private void discardAutosave(File savedFile) {
+		if (!savedFile.equals(projectFileLocation) || projectSaveService.isDirty() || autosaveService.isSaving()) {
+			return;
+		}
+		
+		//Nothing is left for the autosave to save until the project is edited again
+		autosaveService.setTarget(project, getAutosaveFile());
+		
+		try {
+			Files.deleteIfExists(getAutosaveFile().toPath());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * @return the file that the current project gets autosaved to. This is next to the file it was loaded from, if there is one (see 
+	 * <code>ProjectFileUtils.getAutosaveFile()</code>).
+	 */
+	private File getAutosaveFile() {
+		return (projectFileLocation != null ? ProjectFileUtils.getAutosaveFile(projectFileLocation) : new File(AUTOSAVE_FILE_LOCATION));
 	}
 
 	public Font getNotoSans() {
@@ -182,6 +536,9 @@ public class SharedResources {
 	 * the TextAreaWidget's around the IDE.
 	 */
 	public void loadAndProcessSyntax(boolean refreshCanvas) {
+		//The syntax file may have been changed in the settings, so make sure the right one is being watched
+		watchSyntaxFile();
+		
 		String syntax = FileUtils.loadSyntax();
 		
 		if (syntax != null) {
@@ -212,4 +569,14 @@ public class SharedResources {
 	public ArrayList<Syntax> getSyntaxSettings() {
 		return syntaxWidget.getSyntaxSettings();
 	}
+	
+	private static class PendingReload {
+		private File file;
+		private Project project;
+		
+		private PendingReload(File file, Project project) {
+			this.file = file;
+			this.project = project;
+		}
+	}
 }
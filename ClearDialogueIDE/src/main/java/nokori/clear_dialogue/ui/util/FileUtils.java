@@ -7,10 +7,15 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
 
 import nokori.clear.windows.util.TinyFileDialog;
 import nokori.clear.windows.util.TinyFileDialog.Icon;
+import nokori.clear_dialogue.io.AsyncProjectIO;
+import nokori.clear_dialogue.io.AutosaveService;
 import nokori.clear_dialogue.io.ClearDialogueIO;
+import nokori.clear_dialogue.io.IOProgress;
 import nokori.clear_dialogue.project.Project;
 import nokori.clear_dialogue.ui.SharedResources;
 
@@ -20,11 +25,12 @@ import nokori.clear_dialogue.ui.SharedResources;
 public class FileUtils {
 	
 	/**
-	 * Opens a project import dialogue using the given JDialogue I/O system and returns the loaded project. If the project fails to load, null will be returned instead.
+	 * Opens a project import dialogue using the given JDialogue I/O system and imports the chosen file in the background, so that the IDE stays responsive 
+	 * while large projects load. The progress is shown in the context hints.
 	 * 
-	 * @param sharedResources - if a SharedResources object is inputted, then the project will be auto-loaded upon import
+	 * @param onImported - called on the main thread with the loaded project and its file. If the project fails to load, an error is shown instead.
 	 */
-	public static Project showImportProjectDialog(String title, ClearDialogueIO io, SharedResources sharedResources) {
+	public static void showImportProjectDialog(String title, ClearDialogueIO io, SharedResources sharedResources, BiConsumer<Project, File> onImported) {
 		//Support multiple filetypes
 		String filetypes[] = io.getTypeName().split(", ");
 		
@@ -50,24 +56,25 @@ public class FileUtils {
 		
 		//Import the file as a Project
 		if (f != null) {
-			try {
-				Project project = io.importProject(f);
+			IOProgress progress = sharedResources.startBackgroundTask("Importing " + f.getName());
+			
+			AsyncProjectIO.importProject(io, f, progress).whenComplete((project, t) -> sharedResources.runOnMainThread(() -> {
+				sharedResources.finishBackgroundTask(progress);
 				
-				if (sharedResources != null) {
-					sharedResources.setProject(project, f);
+				if (t == null && project != null) {
+					onImported.accept(project, f);
+				} else {
+					showBackgroundTaskError(t);
 				}
-				
-				return project;
-			} catch(Exception e) {
-				e.printStackTrace();
-				TinyFileDialog.showMessageDialog("Caught " + e.getClass().getName(), e.getMessage(), Icon.ERROR);
-			}
+			}));
 		}
-		
-		return null;
 	}
 	
-	public static void showExportProjectDialog(Project project, File projectFileLocation, ClearDialogueIO io) {
+	/**
+	 * Opens a project export dialogue using the given JDialogue I/O system and exports a copy of the project in the background, so that the IDE stays responsive 
+	 * (and the project stays editable) while it's written. The progress is shown in the context hints.
+	 */
+	public static void showExportProjectDialog(Project project, File projectFileLocation, ClearDialogueIO io, SharedResources sharedResources) {
 		String filetype = io.getTypeName();
 		
 		String title = "Export " + io.getTypeName() + " Project";
@@ -80,13 +87,28 @@ public class FileUtils {
 				f = new File(f.getAbsolutePath() + "." + io.getTypeName());
 			}
 			
-			try {
-				io.exportProject(project, f);
-			} catch (Exception e) {
-				e.printStackTrace();
-				TinyFileDialog.showMessageDialog("Caught " + e.getClass().getName(), e.getMessage(), Icon.ERROR);
-			}
+			IOProgress progress = sharedResources.startBackgroundTask("Exporting " + f.getName());
+			
+			AsyncProjectIO.exportProject(io, project.copy(), f, progress).whenComplete((result, t) -> sharedResources.runOnMainThread(() -> {
+				sharedResources.finishBackgroundTask(progress);
+				
+				if (t != null) {
+					showBackgroundTaskError(t);
+				}
+			}));
+		}
+	}
+	
+	/**
+	 * Shows the error that a background import/export failed with. Nothing is shown if it was cancelled (I.E. by starting another one).
+	 */
+	private static void showBackgroundTaskError(Throwable t) {
+		if (t == null || t instanceof CancellationException) {
+			return;
 		}
+		
+		t.printStackTrace();
+		TinyFileDialog.showMessageDialog("Caught " + t.getClass().getName(), t.getMessage(), Icon.ERROR);
 	}
 	
 	/**
@@ -183,6 +205,35 @@ public class FileUtils {
 		return new File(".");
 	}
 	
+	/**
+	 * @return the autosave interval (in milliseconds) configured in the autosave settings, or the default interval if it hasn't been set. 0 means autosaving is disabled.
+	 */
+	public static long loadAutosaveInterval() {
+		File f = new File(SharedResources.AUTOSAVE_SETTINGS_LOCATION);
+		
+		Properties props = new Properties();
+		
+		if(f.exists()){
+			try (FileReader reader = new FileReader(f)) {
+				props.load(reader);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		String intervalSeconds = props.getProperty("autosaveIntervalSeconds");
+		
+		if (intervalSeconds != null) {
+			try {
+				return Math.max(0L, Long.parseLong(intervalSeconds.trim())) * 1000L;
+			} catch (NumberFormatException e) {
+				System.err.println("Invalid autosave interval: " + intervalSeconds);
+			}
+		}
+		
+		return AutosaveService.DEFAULT_INTERVAL;
+	}
+	
 	/**
 	 * Set the location of the syntax file to load at startup and subsequent refreshes
 	 */
@@ -257,18 +308,22 @@ public class FileUtils {
 		return (projectDirectory != null ? new File(projectDirectory) : null);
 	}
 
+	/**
+	 * @return the syntax file that loadSyntax() reads from: the one configured in the syntax file directory settings, or the example syntax file if there isn't one.
+	 */
+	public static File getActiveSyntaxFile() {
+		File syntaxFile = getSyntaxFile();
+		return (syntaxFile != null ? syntaxFile : new File("example_syntax.txt"));
+	}
+
 	/**
 	 * @return the syntax file using the current syntax directory settings.
 	 */
 	public static String loadSyntax() {
 		
-		File syntaxFile = getSyntaxFile();
-		
-		if (syntaxFile == null) {
-			syntaxFile = new File("example_syntax.txt");
-		}
+		File syntaxFile = getActiveSyntaxFile();
 		
-		if (syntaxFile != null && syntaxFile.exists()) {
+		if (syntaxFile.exists()) {
 			try {
 				
 				//Read the syntax file
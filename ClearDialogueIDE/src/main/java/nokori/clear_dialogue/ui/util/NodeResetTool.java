@@ -3,54 +3,46 @@ package nokori.clear_dialogue.ui.util;
 import java.io.File;
 
 import nokori.clear.windows.util.TinyFileDialog;
-import nokori.clear_dialogue.io.ClearDialogueJsonIO;
+import nokori.clear_dialogue.io.BatchTransform;
+import nokori.clear_dialogue.io.ClearDialogueAutoIO;
 import nokori.clear_dialogue.project.Dialogue;
-import nokori.clear_dialogue.project.Project;
 
 /**
  * This is just a small programmer utility that can be used to recursively edit a large amount of Projects automatically. Only really useful for situations where Projects need to be re-exported
  * into a newer version.
  * 
+ * <br><br>It resets the viewport and node positions of every Project in a folder. See BatchTransform for running other transforms.
  */
 public class NodeResetTool {
-	public void run() {
-		File f = TinyFileDialog.showOpenFolderDialog("Open", new File(""));
-		recursiveLoad(f.listFiles());
-		System.out.println("Finish");
-	}
 	
-	private void recursiveLoad(File[] files) {
-		ClearDialogueJsonIO io = new ClearDialogueJsonIO();
+	public static final BatchTransform.Transform RESET_POSITIONS = p -> {
+		p.setViewportX(0);
+		p.setViewportY(0);
 		
-		for (int i = 0; i < files.length; i++) {
-			File f = files[i];
+		for (int j = 0; j < p.getNumDialogue(); j++) {
+			Dialogue d = p.getDialogue(j);
 			
-			if (f.isDirectory()) {
-				recursiveLoad(f.listFiles());
-			} else {
-				Project p;
-				
-				try {
-					p = io.importProject(f);
-					
-					p.setViewportX(0);
-					p.setViewportY(0);
-					
-					for (int j = 0; j < p.getNumDialogue(); j++) {
-						Dialogue d = p.getDialogue(j);
-						
-						d.setX(0);
-						d.setY(0);
-					}
-					
-					io.exportProject(p, f);
-					
-					System.out.println("Resetted and exported the settings for " + p.getName());
-					
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
-			}
+			d.setX(0);
+			d.setY(0);
+		}
+	};
+	
+	public void run() {
+		File f = TinyFileDialog.showOpenFolderDialog("Open", new File(""));
+		
+		if (f == null) {
+			return;
 		}
+		
+		BatchTransform batch = new BatchTransform(RESET_POSITIONS, new ClearDialogueAutoIO());
+		
+		try {
+			BatchTransform.Report report = batch.run(f);
+			System.out.println(report);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		
+		System.out.println("Finish");
 	}
 }
@@ -30,6 +30,12 @@ public class ContextHintsWidget extends LabelWidget {
 		String contextHint = sharedResources.getContextHint();
 		
 		if (!getText().equals(contextHint)) {
+			//Progress updates change every frame, so they're shown without fading in
+			if (sharedResources.isBackgroundTaskRunning()) {
+				setText(context, contextHint);
+				return;
+			}
+			
 			getFill().alpha(0f);
 			setText(context, sharedResources.getContextHint());
 			
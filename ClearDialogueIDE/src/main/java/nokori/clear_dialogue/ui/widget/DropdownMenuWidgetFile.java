@@ -18,6 +18,7 @@ public class DropdownMenuWidgetFile extends DropdownMenuWidget {
 	private static final String OPTION_NEW_PROJECT = "NEW PROJECT";
 	private static final String OPTION_PROJECT_DIR = "PROJECT DIR...";
 	private static final String OPTION_MERGE_PROJECT = "MERGE PROJECT...";
+	private static final String OPTION_SAVE_PROJECT = "SAVE PROJECT";
 	private static final String OPTION_EXPORT_JSON = "EXPORT JSON...";
 	private static final String OPTION_IMPORT_JSON = "IMPORT JSON...";
 	
@@ -25,6 +26,7 @@ public class DropdownMenuWidgetFile extends DropdownMenuWidget {
 		OPTION_NEW_PROJECT,
 		OPTION_PROJECT_DIR,
 		OPTION_MERGE_PROJECT,
+		OPTION_SAVE_PROJECT,
 		OPTION_EXPORT_JSON,
 		OPTION_IMPORT_JSON
 	};
@@ -51,20 +53,26 @@ public class DropdownMenuWidgetFile extends DropdownMenuWidget {
 			FileUtils.showProjectDirectorySelectDialog();
 			break;
 		case OPTION_MERGE_PROJECT:
-			Project merge = FileUtils.showImportProjectDialog("Merge Project", new ClearDialogueAutoIO(), null);
-			
-			if (merge != null) {
-				project.mergeProject(merge);
-			}
-
-			sharedResources.getCanvas().refresh(project);
+			//The merge happens once the project has loaded, into whichever project is open at that point
+			FileUtils.showImportProjectDialog("Merge Project", new ClearDialogueAutoIO(), sharedResources, (merge, f) -> {
+				Project current = sharedResources.getProject();
+				current.mergeProject(merge);
+				sharedResources.getCanvas().refresh(current);
+			});
 			
+			break;
+		case OPTION_SAVE_PROJECT:
+			//Saves to the file the project was loaded from in the background. Autosaves never write to it.
+			sharedResources.saveProject();
 			break;
 		case OPTION_EXPORT_JSON:
-			FileUtils.showExportProjectDialog(project, projectFileLocation, new ClearDialogueJsonIO());
+			ClearDialogueJsonIO exportIO = new ClearDialogueJsonIO();
+			exportIO.setNumRecoveryCopies(SharedResources.NUM_RECOVERY_COPIES);
+			
+			FileUtils.showExportProjectDialog(project, projectFileLocation, exportIO, sharedResources);
 			break;
 		case OPTION_IMPORT_JSON:
-			FileUtils.showImportProjectDialog("Import JSON Dialogue", new ClearDialogueJsonIO(), sharedResources);
+			FileUtils.showImportProjectDialog("Import JSON Dialogue", new ClearDialogueJsonIO(), sharedResources, (imported, f) -> sharedResources.setProject(imported, f));
 			break;
 		}
 	}
@@ -0,0 +1,16 @@
+File dialogue = new File(basedir, "target/classes/dialogue")
+String log = new File(basedir, "build.log").text
+
+assert log.contains("quests/broken: ")
+assert log.contains("1 of 2 dialogue files failed to compile")
+
+//The broken file isn't compiled, but the one next to it still is
+assert !new File(dialogue, "quests/broken.cdb").exists()
+assert new File(dialogue, "greeting.cdb").isFile()
+
+//Only the file that compiled is remembered, so the broken one is tried again by the next build
+Properties state = new Properties()
+new File(basedir, "target/clear-dialogue/compile-dialogue.properties").withInputStream { state.load(it) }
+
+assert state.getProperty("greeting") != null
+assert state.getProperty("quests/broken") == null
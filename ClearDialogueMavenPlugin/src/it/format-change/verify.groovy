@@ -0,0 +1,6 @@
+File dialogue = new File(basedir, "target/classes/dialogue")
+String log = new File(basedir, "build.log").text
+
+assert new File(dialogue, "greeting.cdi").isFile()
+assert !new File(dialogue, "greeting.cdb").exists()
+assert log.contains("(the configuration changed)")
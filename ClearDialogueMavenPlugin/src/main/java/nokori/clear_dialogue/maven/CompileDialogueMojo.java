@@ -0,0 +1,390 @@
+package nokori.clear_dialogue.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import nokori.clear_dialogue.io.ClearDialogueAutoIO;
+import nokori.clear_dialogue.io.ClearDialogueBinaryIO;
+import nokori.clear_dialogue.io.ClearDialogueIO;
+import nokori.clear_dialogue.io.ClearDialogueIndexedIO;
+import nokori.clear_dialogue.io.ClearDialogueJsonIO;
+import nokori.clear_dialogue.io.ProjectFileUtils;
+import nokori.clear_dialogue.project.Project;
+import nokori.clear_dialogue.project.ProjectValidator;
+
+/**
+ * Compiles the editor's JSON project files into runtime assets while the game is built, so that the game only ever loads the fast binary formats
+ * and broken dialogue fails the build instead of the game.
+ *
+ * <br><br>Every <code>.json</code> file in the source directory is validated (see ProjectValidator) and exported into the output directory with the
+ * same relative path, in ClearDialogueBinaryIO format by default. Any validation errors (I.E. connections to connectors that don't exist) fail the build.
+ *
+ * <br><br>Builds are incremental: the size and modification time of every compiled file are remembered in the state file, and only files that changed
+ * since the last build are compiled again. Outputs of deleted source files are removed. Changing the plugin's configuration removes every output of the
+ * last build (which may be in another format or directory) and compiles everything again.
+ *
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;groupId&gt;nokori.clear-dialogue&lt;/groupId&gt;
+ *   &lt;artifactId&gt;ClearDialogueMavenPlugin&lt;/artifactId&gt;
+ *   &lt;version&gt;2.0.0&lt;/version&gt;
+ *   &lt;executions&gt;
+ *     &lt;execution&gt;
+ *       &lt;goals&gt;&lt;goal&gt;compile-dialogue&lt;/goal&gt;&lt;/goals&gt;
+ *     &lt;/execution&gt;
+ *   &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ */
+@Mojo(name = "compile-dialogue", defaultPhase = LifecyclePhase.PROCESS_RESOURCES, threadSafe = true)
+public class CompileDialogueMojo extends AbstractMojo {
+
+	//Stored in the state file so that a change to the configuration (or to the formats) compiles everything again
+	private static final String STATE_KEY_CONFIGURATION = "$configuration";
+
+	//Where the last build wrote its outputs, so that they can be removed once the configuration changes
+	private static final String STATE_KEY_FORMAT = "$format";
+	private static final String STATE_KEY_OUTPUT_DIRECTORY = "$outputDirectory";
+
+	private static final String SOURCE_EXTENSION = ".json";
+
+	/**
+	 * The directory containing the JSON project files exported by the editor.
+	 */
+	@Parameter(defaultValue = "${project.basedir}/src/main/dialogue", property = "clearDialogue.sourceDirectory", required = true)
+	private File sourceDirectory;
+
+	/**
+	 * The directory the runtime assets are written to. By default they're packaged with the classes, so they can be loaded as resources.
+	 */
+	@Parameter(defaultValue = "${project.build.outputDirectory}/dialogue", property = "clearDialogue.outputDirectory", required = true)
+	private File outputDirectory;
+
+	/**
+	 * The format of the runtime assets: <code>cdb</code> (ClearDialogueBinaryIO) or <code>cdi</code> (ClearDialogueIndexedIO, which supports
+	 * partial imports). <code>json</code> writes minified JSON.
+	 */
+	@Parameter(defaultValue = ClearDialogueBinaryIO.FILE_EXTENSION, property = "clearDialogue.format", required = true)
+	private String format;
+
+	/**
+	 * The tags of the nodes that dialogue is started from. Nodes that can't be reached from one are reported as warnings.
+	 */
+	@Parameter
+	private String[] entryTags = { ProjectValidator.DEFAULT_ENTRY_TAG };
+
+	/**
+	 * Fails the build on validation warnings (I.E. unreachable nodes) as well as errors.
+	 */
+	@Parameter(defaultValue = "false", property = "clearDialogue.failOnWarnings")
+	private boolean failOnWarnings;
+
+	/**
+	 * How many files are compiled at the same time. 0 uses one thread per processor.
+	 */
+	@Parameter(defaultValue = "0", property = "clearDialogue.threads")
+	private int threads;
+
+	/**
+	 * Remembers which files were compiled by the last build.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/clear-dialogue/compile-dialogue.properties", required = true)
+	private File stateFile;
+
+	@Parameter(defaultValue = "false", property = "clearDialogue.skip")
+	private boolean skip;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (skip) {
+			getLog().info("Skipping dialogue compilation");
+			return;
+		}
+
+		if (!sourceDirectory.isDirectory()) {
+			getLog().info("No dialogue to compile, " + sourceDirectory + " doesn't exist");
+			return;
+		}
+
+		ClearDialogueIO outputIO = createOutputIO();
+		String configuration = getConfiguration();
+
+		/*
+		 * Find the files that changed since the last build
+		 */
+
+		Properties oldState = loadState();
+
+		if (!configuration.equals(oldState.getProperty(STATE_KEY_CONFIGURATION))) {
+			//The new outputs wouldn't replace the old ones if the format or the output directory changed
+			removeOutputs(oldState, "the configuration changed");
+			oldState.clear();
+		}
+
+		Properties newState = new Properties();
+		newState.setProperty(STATE_KEY_CONFIGURATION, configuration);
+		newState.setProperty(STATE_KEY_FORMAT, format);
+		newState.setProperty(STATE_KEY_OUTPUT_DIRECTORY, outputDirectory.getAbsolutePath());
+
+		ArrayList<File> files = findSourceFiles();
+		ArrayList<File> staleFiles = new ArrayList<File>();
+
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
+			String name = ProjectFileUtils.getProjectFileName(sourceDirectory, f);
+			String stamp = getStamp(f);
+
+			if (stamp.equals(oldState.getProperty(name)) && getOutputFile(name).isFile()) {
+				newState.setProperty(name, stamp);
+			} else {
+				staleFiles.add(f);
+			}
+
+			oldState.remove(name);
+		}
+
+		/*
+		 * Remove the outputs of source files that were deleted
+		 */
+
+		removeOutputs(oldState, "its source was deleted");
+
+		if (staleFiles.isEmpty()) {
+			getLog().info("Dialogue is up to date");
+			saveState(newState);
+			return;
+		}
+
+		/*
+		 * Compile the stale files in parallel
+		 */
+
+		getLog().info("Compiling " + staleFiles.size() + " of " + files.size() + " dialogue files to " + outputDirectory);
+
+		List<Future<List<ProjectValidator.Problem>>> results = compile(staleFiles, outputIO);
+		int failures = 0;
+
+		for (int i = 0; i < staleFiles.size(); i++) {
+			File f = staleFiles.get(i);
+			String name = ProjectFileUtils.getProjectFileName(sourceDirectory, f);
+
+			try {
+				List<ProjectValidator.Problem> problems = results.get(i).get();
+
+				if (logProblems(name, problems)) {
+					newState.setProperty(name, getStamp(f));
+				} else {
+					failures++;
+				}
+			} catch (ExecutionException e) {
+				failures++;
+				getLog().error(name + ": " + e.getCause().getMessage(), e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException("Dialogue compilation was interrupted", e);
+			}
+		}
+
+		//The files that compiled are saved even if others failed, so that they aren't compiled again once the failures are fixed
+		saveState(newState);
+
+		if (failures > 0) {
+			throw new MojoFailureException(failures + " of " + staleFiles.size() + " dialogue files failed to compile, see the errors above");
+		}
+	}
+
+	/**
+	 * Validates the files and exports the ones without errors. The futures are in the same order as the files, and hold the problems found in each one.
+	 */
+	private List<Future<List<ProjectValidator.Problem>>> compile(ArrayList<File> files, ClearDialogueIO outputIO) throws MojoExecutionException {
+		ClearDialogueIO inputIO = new ClearDialogueJsonIO();
+		ProjectValidator validator = new ProjectValidator(entryTags);
+
+		ArrayList<Callable<List<ProjectValidator.Problem>>> tasks = new ArrayList<Callable<List<ProjectValidator.Problem>>>(files.size());
+
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
+			File output = getOutputFile(ProjectFileUtils.getProjectFileName(sourceDirectory, f));
+
+			tasks.add(new Callable<List<ProjectValidator.Problem>>() {
+				@Override
+				public List<ProjectValidator.Problem> call() throws Exception {
+					Project project = inputIO.importProject(f);
+					List<ProjectValidator.Problem> problems = validator.validate(project);
+
+					if (isSuccessful(problems)) {
+						output.getParentFile().mkdirs();
+						outputIO.exportProject(project, output);
+					}
+
+					return problems;
+				}
+			});
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+
+		try {
+			return pool.invokeAll(tasks);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return true if the problems don't stop the file from compiling
+	 */
+	private boolean isSuccessful(List<ProjectValidator.Problem> problems) {
+		for (int i = 0; i < problems.size(); i++) {
+			if (problems.get(i).getSeverity() == ProjectValidator.Severity.ERROR || failOnWarnings) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Logs the problems of a file (from the main thread, since Maven's Log isn't guaranteed to be thread-safe).
+	 *
+	 * @return true if the file compiled
+	 */
+	private boolean logProblems(String name, List<ProjectValidator.Problem> problems) {
+		for (int i = 0; i < problems.size(); i++) {
+			ProjectValidator.Problem problem = problems.get(i);
+
+			if (problem.getSeverity() == ProjectValidator.Severity.ERROR || failOnWarnings) {
+				getLog().error(name + ": " + problem);
+			} else {
+				getLog().warn(name + ": " + problem);
+			}
+		}
+
+		return isSuccessful(problems);
+	}
+
+	private ClearDialogueIO createOutputIO() throws MojoExecutionException {
+		format = format.toLowerCase(Locale.ENGLISH);
+
+		switch (format) {
+		case ClearDialogueBinaryIO.FILE_EXTENSION:
+			return new ClearDialogueBinaryIO();
+		case ClearDialogueIndexedIO.FILE_EXTENSION:
+			return new ClearDialogueIndexedIO();
+		case "json":
+			return new ClearDialogueJsonIO(false);
+		default:
+			throw new MojoExecutionException("Unsupported dialogue format \"" + format + "\", expected " + ClearDialogueBinaryIO.FILE_EXTENSION + ", "
+					+ ClearDialogueIndexedIO.FILE_EXTENSION + ", or json");
+		}
+	}
+
+	/**
+	 * @return the settings that affect the output, including the versions of the formats
+	 */
+	private String getConfiguration() {
+		return format + ";" + Arrays.toString(entryTags) + ";" + failOnWarnings + ";" + outputDirectory.getAbsolutePath() + ";project=" + Project.CURRENT_VERSION
+				+ ";cdb=" + ClearDialogueBinaryIO.FORMAT_VERSION + ";cdi=" + ClearDialogueIndexedIO.FORMAT_VERSION;
+	}
+
+	private ArrayList<File> findSourceFiles() {
+		ArrayList<File> files = ProjectFileUtils.findProjectFiles(sourceDirectory);
+
+		for (int i = files.size() - 1; i >= 0; i--) {
+			if (!files.get(i).getName().toLowerCase(Locale.ENGLISH).endsWith(SOURCE_EXTENSION) || !ClearDialogueAutoIO.isSupportedFile(files.get(i))) {
+				files.remove(i);
+			}
+		}
+
+		return files;
+	}
+
+	private File getOutputFile(String name) {
+		return getOutputFile(outputDirectory, format, name);
+	}
+
+	private static File getOutputFile(File outputDirectory, String format, String name) {
+		return new File(outputDirectory, name.replace('/', File.separatorChar) + "." + format);
+	}
+
+	/**
+	 * Deletes the outputs of the files in the state, from the directory and in the format they were compiled to.
+	 */
+	private void removeOutputs(Properties state, String reason) {
+		String format = state.getProperty(STATE_KEY_FORMAT);
+		String outputDirectory = state.getProperty(STATE_KEY_OUTPUT_DIRECTORY);
+
+		//Nothing was compiled yet, or the state was written by an older version of the plugin that didn't record where its outputs went
+		if (format == null || outputDirectory == null) {
+			return;
+		}
+
+		for (String name : state.stringPropertyNames()) {
+			if (name.equals(STATE_KEY_CONFIGURATION) || name.equals(STATE_KEY_FORMAT) || name.equals(STATE_KEY_OUTPUT_DIRECTORY)) {
+				continue;
+			}
+
+			File output = getOutputFile(new File(outputDirectory), format, name);
+
+			if (output.delete()) {
+				getLog().info("Removed " + output + " (" + reason + ")");
+			}
+		}
+	}
+
+	private static String getStamp(File f) {
+		return f.length() + ":" + f.lastModified();
+	}
+
+	/*
+	 *
+	 * State file
+	 *
+	 */
+
+	private Properties loadState() {
+		Properties state = new Properties();
+
+		if (stateFile.isFile()) {
+			try (InputStream in = new FileInputStream(stateFile)) {
+				state.load(in);
+			} catch (IOException e) {
+				//Everything is compiled again if the state can't be read
+				getLog().warn("Couldn't read " + stateFile + ", compiling all dialogue: " + e.getMessage());
+				state.clear();
+			}
+		}
+
+		return state;
+	}
+
+	private void saveState(Properties state) throws MojoExecutionException {
+		stateFile.getParentFile().mkdirs();
+
+		try (OutputStream out = new FileOutputStream(stateFile)) {
+			state.store(out, "ClearDialogue compile-dialogue state");
+		} catch (IOException e) {
+			throw new MojoExecutionException("Couldn't write " + stateFile, e);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package nokori.clear_dialogue.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import nokori.clear_dialogue.io.DialogueConstantsGenerator;
+import nokori.clear_dialogue.io.ProjectFileUtils;
+
+/**
+ * Generates a class of tag and title constants for every project file in the source directory (see DialogueConstantsGenerator) and adds them to the
+ * sources being compiled, so that game code can look dialogue up by compiler-checked IDs:
+ *
+ * <pre>
+ * DialogueIndex index = project.createTagIndex(ShopkeeperDialogue.TAGS);
+ * runner.start(index.get(ShopkeeperDialogue.TAG_DIALOGUE_START));
+ * </pre>
+ *
+ * Classes are only rewritten when their content changes, and the classes of deleted project files are removed.
+ */
+@Mojo(name = "generate-constants", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
+public class GenerateConstantsMojo extends AbstractMojo {
+
+	/**
+	 * The directory containing the project files exported by the editor.
+	 */
+	@Parameter(defaultValue = "${project.basedir}/src/main/dialogue", property = "clearDialogue.sourceDirectory", required = true)
+	private File sourceDirectory;
+
+	/**
+	 * The directory the classes are generated in. It's added to the project's compile source roots.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/generated-sources/clear-dialogue", required = true)
+	private File outputDirectory;
+
+	/**
+	 * The package of the generated classes.
+	 */
+	@Parameter(property = "clearDialogue.packageName", required = true)
+	private String packageName;
+
+	/**
+	 * Set to false to only generate tag constants (I.E. for projects with more titles than fit in one class).
+	 */
+	@Parameter(defaultValue = "true")
+	private boolean includeTitles;
+
+	@Parameter(defaultValue = "${project}", readonly = true, required = true)
+	private MavenProject project;
+
+	@Parameter(defaultValue = "false", property = "clearDialogue.skip")
+	private boolean skip;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (skip) {
+			getLog().info("Skipping dialogue constant generation");
+			return;
+		}
+
+		project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
+
+		if (!sourceDirectory.isDirectory()) {
+			getLog().info("No dialogue to generate constants for, " + sourceDirectory + " doesn't exist");
+			return;
+		}
+
+		DialogueConstantsGenerator generator = new DialogueConstantsGenerator();
+		generator.setIncludeTitles(includeTitles);
+
+		ArrayList<File> files = ProjectFileUtils.findProjectFiles(sourceDirectory);
+		int written = 0;
+
+		try {
+			DialogueConstantsGenerator.checkClassNames(sourceDirectory, files);
+		} catch (IllegalArgumentException e) {
+			throw new MojoFailureException("Couldn't generate the dialogue constants: " + e.getMessage(), e);
+		}
+
+		for (int i = 0; i < files.size(); i++) {
+			File f = files.get(i);
+
+			try {
+				if (generator.write(sourceDirectory, f, packageName, outputDirectory)) {
+					written++;
+				}
+			} catch (Exception e) {
+				throw new MojoFailureException("Couldn't generate the dialogue constants of " + f + ": " + e.getMessage(), e);
+			}
+		}
+
+		ArrayList<File> staleFiles = DialogueConstantsGenerator.findStaleFiles(sourceDirectory, files, packageName, outputDirectory);
+
+		for (int i = 0; i < staleFiles.size(); i++) {
+			if (staleFiles.get(i).delete()) {
+				getLog().info("Removed " + staleFiles.get(i) + " (its project file was deleted)");
+			}
+		}
+
+		getLog().info("Generated dialogue constants for " + written + " of " + files.size() + " files (the rest were up to date)");
+	}
+}